@@ -1,5 +1,6 @@
 plugins {
     id("java")
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "org.valoshka.cleverBank"
@@ -22,4 +23,22 @@ dependencies {
 
 tasks.test {
     useJUnitPlatform()
-}
\ No newline at end of file
+}
+
+// ./gradlew jmh -PjmhIncludes=PostingBenchmark -PjmhAccounts=100000 [-PjmhStorage=memory]
+// The database benchmarks need the PostgreSQL from postgreSQL/database.properties to be running,
+// unless they run on the in-memory storage engine.
+jmh {
+    jmhVersion.set("1.37")
+    (project.findProperty("jmhIncludes") as String?)?.let { includes.add(it) }
+    (project.findProperty("jmhAccounts") as String?)?.let {
+        benchmarkParameters.put("accountCount", objects.listProperty<String>().value(listOf(it)))
+    }
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    (project.findProperty("jmhStorage") as String?)?.let { jvmArgsAppend.add("-Ddatabase.storage=$it") }
+    jvmArgsAppend.addAll(
+        "-Dcheck.storage=JOURNAL",
+        "-Dcheck.journal.directory=${layout.buildDirectory.dir("jmh-checks").get().asFile}"
+    )
+}
@@ -0,0 +1,122 @@
+package org.valoshka.cleverBank;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.valoshka.cleverBank.dao.BankAccountDAO;
+import org.valoshka.cleverBank.dao.DaoFactory;
+import org.valoshka.cleverBank.dao.bulk.BulkLoader;
+import org.valoshka.cleverBank.models.BankAccount;
+import org.valoshka.cleverBank.models.Client;
+import org.valoshka.cleverBank.models.Money;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Currency;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Seeds the database from "postgreSQL/database.properties" with benchmark accounts, once per trial.
+ * <p>
+ * The accounts are named {@code BENCH00000000} and up, belong to the client "Benchmark client" and are imported
+ * with the {@link BulkLoader}, or saved through the DAOs on the in-memory storage engine;
+ * accounts left by earlier runs are reused and their balances are reset.
+ * The number of accounts is the {@code accountCount} parameter, {@code -PjmhAccounts=100000} in Gradle.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkDatabase {
+
+    public static final String CLIENT_NAME = "Benchmark client";
+
+    private static final String INITIAL_BALANCE = "1000000000.00";
+
+    private static final String RESET_BALANCES_SQL = "UPDATE BankAccount SET balance = " + INITIAL_BALANCE +
+            " WHERE account_number LIKE 'BENCH%' AND balance <> " + INITIAL_BALANCE;
+
+    @Param({"10000"})
+    public int accountCount;
+
+    private String[] accountNumbers;
+
+    @Setup(Level.Trial)
+    public void seed() throws IOException, SQLException, ClassNotFoundException {
+        accountNumbers = new String[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            accountNumbers[i] = String.format("BENCH%08d", i);
+        }
+        if (DaoFactory.isInMemory()) {
+            seedInMemory();
+            return;
+        }
+
+        Path clients = Files.createTempFile("bench-clients", ".csv");
+        Path accounts = Files.createTempFile("bench-accounts", ".csv");
+        try {
+            Files.writeString(clients, "name\n" + CLIENT_NAME + "\n", StandardCharsets.UTF_8);
+            try (BufferedWriter writer = Files.newBufferedWriter(accounts, StandardCharsets.UTF_8)) {
+                writer.write("account_number,bank_name,created_at,balance,currency,owner_name\n");
+                for (String accountNumber : accountNumbers) {
+                    writer.write(accountNumber + ",Банк 1,," + INITIAL_BALANCE + ",BYN," + CLIENT_NAME + "\n");
+                }
+            }
+
+            BulkLoader bulkLoader = new BulkLoader();
+            if (bulkLoader.importClients(clients) < 0 || bulkLoader.importAccounts(accounts) < 0) {
+                throw new IllegalStateException("Seeding benchmark accounts failed, is PostgreSQL running?");
+            }
+        } finally {
+            Files.deleteIfExists(clients);
+            Files.deleteIfExists(accounts);
+        }
+
+        try (Connection connection = new BankAccountDAO().getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(RESET_BALANCES_SQL)) {
+            preparedStatement.executeUpdate();
+        }
+    }
+
+    private void seedInMemory() {
+        DaoFactory.getClientDAO().save(new Client(CLIENT_NAME));
+        BankAccountDAO bankAccountDAO = DaoFactory.getBankAccountDAO();
+        Currency currency = Currency.getInstance("BYN");
+        Money balance = Money.of(new BigDecimal(INITIAL_BALANCE), currency);
+        for (String accountNumber : accountNumbers) {
+            BankAccount bankAccount = new BankAccount(accountNumber, "Банк 1", currency);
+            bankAccount.setBalance(balance);
+            if (bankAccountDAO.accountExists(accountNumber)) {
+                bankAccountDAO.updateBalance(bankAccount);
+            } else {
+                new Client(CLIENT_NAME).addAccount(bankAccount);
+                bankAccountDAO.save(bankAccount);
+            }
+        }
+    }
+
+    /**
+     * @return A random seeded account number.
+     */
+    public String randomAccount() {
+        return accountNumbers[ThreadLocalRandom.current().nextInt(accountNumbers.length)];
+    }
+
+    /**
+     * @param accountNumber An account number that the result must differ from.
+     * @return A random seeded account number other than the given one.
+     */
+    public String randomAccountOtherThan(String accountNumber) {
+        String other;
+        do {
+            other = randomAccount();
+        } while (other.equals(accountNumber) && accountNumbers.length > 1);
+        return other;
+    }
+}
@@ -0,0 +1,57 @@
+package org.valoshka.cleverBank.dao;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.valoshka.cleverBank.BenchmarkDatabase;
+import org.valoshka.cleverBank.models.BankAccount;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures account reads against the seeded benchmark accounts.
+ * Sample time mode reports the latency percentiles, p0.99 among them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class AccountLookupBenchmark {
+
+    private final BankAccountDAO bankAccountDAO = DaoFactory.getBankAccountDAO();
+
+    @Benchmark
+    public Optional<BankAccount> get(BenchmarkDatabase database) {
+        return bankAccountDAO.get(database.randomAccount());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Optional<BankAccount> getConcurrent(BenchmarkDatabase database) {
+        return bankAccountDAO.get(database.randomAccount());
+    }
+
+    @Benchmark
+    public List<BankAccount> getAll() {
+        return bankAccountDAO.getAll();
+    }
+
+    @Benchmark
+    public long stream() {
+        try (Stream<BankAccount> accounts = bankAccountDAO.stream()) {
+            return accounts.count();
+        }
+    }
+}
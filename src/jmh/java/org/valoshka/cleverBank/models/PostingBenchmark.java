@@ -0,0 +1,57 @@
+package org.valoshka.cleverBank.models;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.valoshka.cleverBank.BenchmarkDatabase;
+import org.valoshka.cleverBank.enums.TransactionType;
+
+import java.util.Currency;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures deposits and transfers between random seeded benchmark accounts, single-threaded and from 8 threads.
+ * Every posting also renders and stores a check; the Gradle jmh task sends them to a journal under build/.
+ * Sample time mode reports the latency percentiles, p0.99 among them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PostingBenchmark {
+
+    private final Money amount = Money.of(100, Currency.getInstance("BYN"));
+
+    @Benchmark
+    public boolean deposit(BenchmarkDatabase database) {
+        return Transaction.depositAndWithdrawal(database.randomAccount(), amount, TransactionType.DEPOSIT);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean depositConcurrent(BenchmarkDatabase database) {
+        return Transaction.depositAndWithdrawal(database.randomAccount(), amount, TransactionType.DEPOSIT);
+    }
+
+    @Benchmark
+    public boolean transfer(BenchmarkDatabase database) {
+        String source = database.randomAccount();
+        return Transaction.transfer(source, database.randomAccountOtherThan(source), amount);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean transferConcurrent(BenchmarkDatabase database) {
+        String source = database.randomAccount();
+        return Transaction.transfer(source, database.randomAccountOtherThan(source), amount);
+    }
+}
@@ -0,0 +1,70 @@
+package org.valoshka.cleverBank.statements;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.valoshka.cleverBank.enums.TransactionStatus;
+import org.valoshka.cleverBank.enums.TransactionType;
+import org.valoshka.cleverBank.models.BankAccount;
+import org.valoshka.cleverBank.models.Money;
+import org.valoshka.cleverBank.models.Transaction;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the AsciiTable check renderer with the precompiled one.
+ * Run with {@code ./gradlew jmh -PjmhIncludes=CheckRenderBenchmark}; the gc profiler reports the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CheckRenderBenchmark {
+
+    @Param({"DEPOSIT", "TRANSFER"})
+    public TransactionType transactionType;
+
+    private final CheckRenderer asciiTableRenderer = new AsciiTableCheckRenderer();
+    private final CheckRenderer compiledRenderer = new CompiledCheckRenderer();
+
+    private Transaction transaction;
+
+    @Setup
+    public void setUp() {
+        Currency currency = Currency.getInstance("BYN");
+        BankAccount source = new BankAccount("BY9503 5768 6686 5952 4058 0120 46", "Банк 1", currency);
+        BankAccount target = new BankAccount("BY9735 5326 7540 9130 5142 9475 33", "Банк 2", currency);
+        transaction = new Transaction(transactionType, source,
+                transactionType == TransactionType.TRANSFER ? target : source, Money.of(15080, currency));
+        transaction.setId(123456);
+        transaction.setDateTimeOfTransaction(LocalDateTime.of(2023, 9, 4, 1, 34, 1, 904_039_000));
+        transaction.setTransactionStatus(TransactionStatus.COMPLETED);
+
+        if (!Arrays.equals(asciiTableRenderer.render(transaction), compiledRenderer.render(transaction))) {
+            throw new IllegalStateException("Renderers produce different checks");
+        }
+    }
+
+    @Benchmark
+    public byte[] asciiTable() {
+        return asciiTableRenderer.render(transaction);
+    }
+
+    @Benchmark
+    public byte[] compiled() {
+        return compiledRenderer.render(transaction);
+    }
+}
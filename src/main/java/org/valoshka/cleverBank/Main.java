@@ -2,16 +2,43 @@ package org.valoshka.cleverBank;
 
 import org.valoshka.cleverBank.dao.BankAccountDAO;
 import org.valoshka.cleverBank.dao.ClientDAO;
+import org.valoshka.cleverBank.dao.ConnectionManager;
+import org.valoshka.cleverBank.dao.DaoFactory;
+import org.valoshka.cleverBank.dao.bulk.BulkLoader;
+import org.valoshka.cleverBank.enums.StatementFormat;
+import org.valoshka.cleverBank.metrics.Metrics;
 import org.valoshka.cleverBank.models.BankAccount;
 import org.valoshka.cleverBank.models.Client;
+import org.valoshka.cleverBank.statements.AccountStatement;
+
+import java.nio.file.Paths;
+import java.time.LocalDate;
 import java.util.*;
 
 
 public class Main {
     public static void main(String[] args) {
+        // bulk import: --import clients.csv accounts.csv
+        if (args.length == 3 && args[0].equals("--import")) {
+            BulkLoader bulkLoader = new BulkLoader();
+            if (bulkLoader.importClients(Paths.get(args[1])) >= 0) {
+                bulkLoader.importAccounts(Paths.get(args[2]));
+            }
+            ConnectionManager.shutdown();
+            return;
+        }
+
+        // account statement: --statement ACCOUNT FROM TO [TEXT|CSV]
+        if ((args.length == 4 || args.length == 5) && args[0].equals("--statement")) {
+            StatementFormat format = args.length == 5 ? StatementFormat.valueOf(args[4].toUpperCase()) : StatementFormat.TEXT;
+            AccountStatement.save(args[1], LocalDate.parse(args[2]), LocalDate.parse(args[3]), format);
+            ConnectionManager.shutdown();
+            return;
+        }
+
         // objects to work with bd
-        ClientDAO clientDAO = new ClientDAO();
-        BankAccountDAO bankAccountDAO = new BankAccountDAO();
+        ClientDAO clientDAO = DaoFactory.getClientDAO();
+        BankAccountDAO bankAccountDAO = DaoFactory.getBankAccountDAO();
 
         //Load some entities to tables
 
@@ -51,6 +78,13 @@ public class Main {
             System.out.println();
         }
 
+        // Статистика пула соединений
+        ConnectionManager.getPoolStats().forEach((pool, stats) -> System.out.println("Пул " + pool + ": " + stats));
+        // Задержки по операциям (при metrics.enabled=true)
+        System.out.print(Metrics.dump());
+        // Самые долгие запросы (при database.trace.enabled=true)
+        System.out.print(ConnectionManager.getTraceReport());
+        ConnectionManager.shutdown();
     }
 
     // Генерируем уникальный номер счета
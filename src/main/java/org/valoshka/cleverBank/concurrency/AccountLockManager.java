@@ -0,0 +1,164 @@
+package org.valoshka.cleverBank.concurrency;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serializes money movements on the same account inside the JVM.
+ * <p>
+ * Accounts are mapped by their number onto a fixed array of {@link ReentrantLock} stripes, so postings
+ * to the same account always share a lock while unrelated accounts almost always use different ones.
+ * Operations on several accounts take the stripes in index order, which rules out lock-order deadlocks
+ * between opposite transfers. Every acquisition that could not take the lock immediately is counted
+ * as contention of its stripe.
+ */
+public class AccountLockManager {
+
+    private static final int DEFAULT_STRIPES = 1024;
+    private static final long DEFAULT_TIMEOUT_MILLIS = 5_000;
+
+    private static final AccountLockManager instance = new AccountLockManager(DEFAULT_STRIPES, DEFAULT_TIMEOUT_MILLIS);
+
+    private final ReentrantLock[] stripes;
+    private final AtomicLongArray contention;
+    private final int mask;
+    private final long timeoutMillis;
+
+    /**
+     * Creates a lock manager.
+     *
+     * @param stripeCount   The number of lock stripes, rounded up to a power of two.
+     * @param timeoutMillis How long {@link #lockAll(Collection)} waits for all of its locks.
+     */
+    public AccountLockManager(int stripeCount, long timeoutMillis) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.contention = new AtomicLongArray(size);
+        this.mask = size - 1;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Returns the lock manager shared by all money movements of the application.
+     *
+     * @return The shared lock manager.
+     */
+    public static AccountLockManager getInstance() {
+        return instance;
+    }
+
+    /**
+     * Locks any number of accounts in stripe order, waiting up to the default timeout for all of them,
+     * or less if the current {@link Deadline} is sooner.
+     *
+     * @param accountNumbers The account numbers to lock.
+     * @return True if all locks were acquired; false otherwise, in which case no lock is held.
+     */
+    public boolean lockAll(Collection<String> accountNumbers) {
+        int[] indexes = distinctStripes(accountNumbers);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Deadline.capMillis(timeoutMillis));
+        for (int i = 0; i < indexes.length; i++) {
+            if (!acquire(indexes[i], deadline - System.nanoTime())) {
+                for (int j = i - 1; j >= 0; j--) {
+                    stripes[indexes[j]].unlock();
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Unlocks accounts previously locked with {@link #lockAll(Collection)}.
+     *
+     * @param accountNumbers The same account numbers that were locked.
+     */
+    public void unlockAll(Collection<String> accountNumbers) {
+        for (int stripe : distinctStripes(accountNumbers)) {
+            stripes[stripe].unlock();
+        }
+    }
+
+    private int[] distinctStripes(Collection<String> accountNumbers) {
+        return accountNumbers.stream()
+                .mapToInt(this::stripeOf)
+                .distinct()
+                .sorted()
+                .toArray();
+    }
+
+    /**
+     * Returns how many acquisitions of a stripe had to wait for another thread.
+     *
+     * @param stripe The stripe index.
+     * @return The contention count of the stripe.
+     */
+    public long getContention(int stripe) {
+        return contention.get(stripe);
+    }
+
+    /**
+     * Returns the contention counts of all stripes.
+     *
+     * @return An array with the contention count of every stripe.
+     */
+    public long[] getContentionPerStripe() {
+        long[] counts = new long[stripes.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = contention.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the total contention over all stripes.
+     *
+     * @return The sum of the contention counts.
+     */
+    public long getTotalContention() {
+        long total = 0;
+        for (int i = 0; i < stripes.length; i++) {
+            total += contention.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of lock stripes.
+     *
+     * @return The stripe count.
+     */
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * Maps an account number onto its stripe.
+     *
+     * @param accountNumber The account number.
+     * @return The stripe index.
+     */
+    public int stripeOf(String accountNumber) {
+        int hash = accountNumber.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private boolean acquire(int stripe, long timeoutNanos) {
+        ReentrantLock lock = stripes[stripe];
+        if (lock.tryLock()) {
+            return true;
+        }
+        contention.incrementAndGet(stripe);
+        try {
+            return lock.tryLock(Math.max(0, timeoutNanos), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
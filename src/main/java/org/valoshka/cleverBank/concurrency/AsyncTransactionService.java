@@ -0,0 +1,300 @@
+package org.valoshka.cleverBank.concurrency;
+
+import org.valoshka.cleverBank.dao.DaoFactory;
+import org.valoshka.cleverBank.dao.pool.PoolConfig;
+import org.valoshka.cleverBank.enums.TransactionType;
+import org.valoshka.cleverBank.metrics.Counter;
+import org.valoshka.cleverBank.metrics.LatencyHistogram;
+import org.valoshka.cleverBank.metrics.Metrics;
+import org.valoshka.cleverBank.models.Money;
+import org.valoshka.cleverBank.models.Transaction;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs deposits, withdrawals and transfers asynchronously, one virtual thread per posting.
+ * <p>
+ * Any number of postings can be submitted; at most {@code maxConcurrent} of them run at a time, as many as
+ * the connection pool has connections, and the others wait without holding a platform thread. Every posting
+ * has a deadline. A posting that is still waiting when its deadline passes or when it is cancelled never runs;
+ * a running one has its database statement aborted, and its database transaction is rolled back,
+ * see {@link Deadline}. The returned future then completes with a {@link TimeoutException}
+ * or as cancelled. A posting that already committed completes normally.
+ * <p>
+ * Virtual threads need Java 21. On older JVMs the postings are queued for a pool of {@code maxConcurrent}
+ * platform threads instead, so waiting postings don't hold a thread there either.
+ */
+public class AsyncTransactionService {
+
+    private static final long DEFAULT_TIMEOUT_MILLIS = 10_000;
+
+    private static final LatencyHistogram permitWaitTimer = Metrics.histogram("async.permitWait");
+    private static final Counter timeoutCounter = Metrics.counter("async.timeouts");
+    private static final Counter cancelledCounter = Metrics.counter("async.cancelled");
+
+    private final int maxConcurrent;
+    private final long defaultTimeoutMillis;
+    private final Semaphore permits;
+    private final ThreadFactory threadFactory = VirtualThreads.factory("posting");
+    /**
+     * The platform threads that run postings when virtual threads are unavailable, or null.
+     */
+    private final ThreadPoolExecutor platformThreads;
+    private final ScheduledExecutorService deadlines;
+
+    /**
+     * Creates a service.
+     *
+     * @param maxConcurrent        The maximum number of postings running at a time.
+     * @param defaultTimeoutMillis The deadline of postings submitted without one.
+     */
+    public AsyncTransactionService(int maxConcurrent, long defaultTimeoutMillis) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.defaultTimeoutMillis = defaultTimeoutMillis;
+        this.permits = new Semaphore(this.maxConcurrent, true);
+        this.platformThreads = VirtualThreads.isAvailable() ? null : new ThreadPoolExecutor(this.maxConcurrent,
+                this.maxConcurrent, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), threadFactory);
+        this.deadlines = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "posting-deadlines");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the service shared by the application. It runs as many postings at a time as the connection pool
+     * of "postgreSQL/database.properties" has connections, or one per processor on the in-memory storage engine.
+     *
+     * @return The shared service.
+     */
+    public static AsyncTransactionService getInstance() {
+        return Holder.instance;
+    }
+
+    /**
+     * Deposits money to an account, see {@link Transaction#depositAndWithdrawal(String, Money, TransactionType)}.
+     *
+     * @param accountNumber The account number.
+     * @param amount        The amount to deposit, in the currency of the account.
+     * @return A future of true if the deposit completed, false if it was refused.
+     */
+    public CompletableFuture<Boolean> deposit(String accountNumber, Money amount) {
+        return deposit(accountNumber, amount, defaultTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Deposits money to an account with a deadline.
+     *
+     * @param accountNumber The account number.
+     * @param amount        The amount to deposit, in the currency of the account.
+     * @param timeout       The time the deposit may take, waiting included.
+     * @param unit          The unit of the timeout.
+     * @return A future of true if the deposit completed, false if it was refused.
+     */
+    public CompletableFuture<Boolean> deposit(String accountNumber, Money amount, long timeout, TimeUnit unit) {
+        return submit(() -> Transaction.depositAndWithdrawal(accountNumber, amount, TransactionType.DEPOSIT), timeout, unit);
+    }
+
+    /**
+     * Withdraws money from an account, see {@link Transaction#depositAndWithdrawal(String, Money, TransactionType)}.
+     *
+     * @param accountNumber The account number.
+     * @param amount        The amount to withdraw, in the currency of the account.
+     * @return A future of true if the withdrawal completed, false if it was refused.
+     */
+    public CompletableFuture<Boolean> withdraw(String accountNumber, Money amount) {
+        return withdraw(accountNumber, amount, defaultTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Withdraws money from an account with a deadline.
+     *
+     * @param accountNumber The account number.
+     * @param amount        The amount to withdraw, in the currency of the account.
+     * @param timeout       The time the withdrawal may take, waiting included.
+     * @param unit          The unit of the timeout.
+     * @return A future of true if the withdrawal completed, false if it was refused.
+     */
+    public CompletableFuture<Boolean> withdraw(String accountNumber, Money amount, long timeout, TimeUnit unit) {
+        return submit(() -> Transaction.depositAndWithdrawal(accountNumber, amount, TransactionType.WITHDRAWAL), timeout, unit);
+    }
+
+    /**
+     * Transfers money between two accounts, see {@link Transaction#transfer(String, String, Money)}.
+     *
+     * @param sourceAccountNumber The account number of the source account.
+     * @param targetAccountNumber The account number of the target account.
+     * @param amount              The amount to transfer, in the currency of the source account.
+     * @return A future of true if the transfer completed, false if it was refused.
+     */
+    public CompletableFuture<Boolean> transfer(String sourceAccountNumber, String targetAccountNumber, Money amount) {
+        return transfer(sourceAccountNumber, targetAccountNumber, amount, defaultTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Transfers money between two accounts with a deadline.
+     *
+     * @param sourceAccountNumber The account number of the source account.
+     * @param targetAccountNumber The account number of the target account.
+     * @param amount              The amount to transfer, in the currency of the source account.
+     * @param timeout             The time the transfer may take, waiting included.
+     * @param unit                The unit of the timeout.
+     * @return A future of true if the transfer completed, false if it was refused.
+     */
+    public CompletableFuture<Boolean> transfer(String sourceAccountNumber, String targetAccountNumber, Money amount,
+                                               long timeout, TimeUnit unit) {
+        return submit(() -> Transaction.transfer(sourceAccountNumber, targetAccountNumber, amount), timeout, unit);
+    }
+
+    /**
+     * @return The maximum number of postings running at a time.
+     */
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /**
+     * @return The number of postings running right now.
+     */
+    public int getRunning() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    /**
+     * @return The number of postings waiting for a free slot.
+     */
+    public int getWaiting() {
+        return permits.getQueueLength() + (platformThreads == null ? 0 : platformThreads.getQueue().size());
+    }
+
+    private CompletableFuture<Boolean> submit(Supplier<Boolean> posting, long timeout, TimeUnit unit) {
+        Posting future = new Posting(new Deadline(timeout, unit));
+        ScheduledFuture<?> expiry = deadlines.schedule(future::expire, timeout, unit);
+        future.whenComplete((result, error) -> expiry.cancel(false));
+        Runnable task = () -> future.run(posting);
+        if (platformThreads == null) {
+            threadFactory.newThread(task).start();
+        } else {
+            platformThreads.execute(task);
+        }
+        return future;
+    }
+
+    /**
+     * The future of one posting. It moves from QUEUED to RUNNING once it got a slot, and to DONE when it finished
+     * or was cancelled or timed out before it got a slot.
+     */
+    private final class Posting extends CompletableFuture<Boolean> {
+        private static final int QUEUED = 0;
+        private static final int RUNNING = 1;
+        private static final int DONE = 2;
+
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+        private final Deadline deadline;
+
+        private Posting(Deadline deadline) {
+            this.deadline = deadline;
+        }
+
+        private void run(Supplier<Boolean> posting) {
+            long start = Metrics.start();
+            boolean acquired;
+            try {
+                acquired = permits.tryAcquire(Math.max(0, deadline.remainingNanos()), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            }
+            permitWaitTimer.recordSince(start);
+            if (!acquired) {
+                expire();
+                return;
+            }
+
+            try {
+                if (!state.compareAndSet(QUEUED, RUNNING)) {
+                    return;
+                }
+                boolean result;
+                try {
+                    result = deadline.run(posting);
+                } catch (RuntimeException e) {
+                    state.set(DONE);
+                    completeExceptionally(e);
+                    return;
+                }
+                state.set(DONE);
+                if (result) {
+                    complete(true);
+                } else if (deadline.isCancelled()) {
+                    cancelledCounter.increment();
+                    super.cancel(false);
+                } else if (deadline.isExpired()) {
+                    timeoutCounter.increment();
+                    completeExceptionally(new TimeoutException("Posting missed its deadline, nothing was committed"));
+                } else {
+                    complete(false);
+                }
+            } finally {
+                permits.release();
+            }
+        }
+
+        /**
+         * Times the posting out if it is still waiting, or aborts its statement if it is running.
+         */
+        private void expire() {
+            if (state.compareAndSet(QUEUED, DONE)) {
+                timeoutCounter.increment();
+                completeExceptionally(new TimeoutException("Posting missed its deadline before it started"));
+            } else {
+                deadline.expire();
+            }
+        }
+
+        /**
+         * Cancels a waiting posting at once. A running posting has its statement aborted and completes as cancelled
+         * once it is rolled back, or normally if it already committed; this method then returns false.
+         */
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (state.compareAndSet(QUEUED, DONE)) {
+                cancelledCounter.increment();
+                return super.cancel(mayInterruptIfRunning);
+            }
+            deadline.cancel();
+            return isCancelled();
+        }
+    }
+
+    private static final class Holder {
+        private static final AsyncTransactionService instance = new AsyncTransactionService(
+                DaoFactory.isInMemory() ? Runtime.getRuntime().availableProcessors() : poolSize(),
+                DEFAULT_TIMEOUT_MILLIS);
+
+        private static int poolSize() {
+            Properties properties = new Properties();
+            try (InputStream inputStream = AsyncTransactionService.class.getClassLoader().getResourceAsStream("postgreSQL/database.properties")) {
+                properties.load(inputStream);
+            } catch (IOException e) {
+                System.out.println("Error reading database properties file");
+                e.printStackTrace();
+            }
+            return new PoolConfig(properties).getMaxSize();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package org.valoshka.cleverBank.concurrency;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The deadline and the cancellation state of one posting run by the {@link AsyncTransactionService}.
+ * <p>
+ * While a posting runs, its deadline is the current deadline of the thread. Account locks wait at most
+ * until the deadline, and the DAOs {@link #watch(Statement) watch} the statement of their database transaction,
+ * so that cancelling the deadline or letting it expire aborts that statement on the server. The DAO then rolls
+ * its transaction back; a posting is either committed completely or not at all.
+ * Code running outside a posting has no current deadline and is not affected.
+ */
+public final class Deadline {
+
+    private static final ThreadLocal<Deadline> current = new ThreadLocal<>();
+
+    private static final String QUERY_CANCELED = "57014";
+
+    private final long expiresAtNanos;
+
+    private boolean cancelled;
+    private boolean expired;
+    private Statement statement;
+    private Runnable abortAction;
+
+    Deadline(long timeout, TimeUnit unit) {
+        this.expiresAtNanos = System.nanoTime() + unit.toNanos(timeout);
+    }
+
+    /**
+     * @return The time left until the deadline in nanoseconds, negative if it passed.
+     */
+    long remainingNanos() {
+        return expiresAtNanos - System.nanoTime();
+    }
+
+    synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    synchronized boolean isExpired() {
+        return expired || remainingNanos() <= 0;
+    }
+
+    /**
+     * Cancels the posting and aborts the statement it is running, if any.
+     */
+    synchronized void cancel() {
+        cancelled = true;
+        abortStatement();
+    }
+
+    /**
+     * Marks the deadline as passed and aborts the statement the posting is running, if any.
+     */
+    synchronized void expire() {
+        expired = true;
+        abortStatement();
+    }
+
+    private void abortStatement() {
+        if (abortAction != null) {
+            abortAction.run();
+        }
+        if (statement == null) {
+            return;
+        }
+        try {
+            statement.cancel();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return The deadline of the posting the current thread runs, or null.
+     */
+    static Deadline current() {
+        return current.get();
+    }
+
+    /**
+     * Registers an action that cancelling this deadline or letting it expire runs, like it aborts a watched statement.
+     * The action runs at once if that already happened.
+     *
+     * @param action The action, run while the deadline is locked.
+     * @return The watch to close once the action is no longer needed.
+     */
+    Watch onAbort(Runnable action) {
+        synchronized (this) {
+            abortAction = action;
+            if (cancelled || expired) {
+                action.run();
+            }
+        }
+        return () -> {
+            synchronized (this) {
+                abortAction = null;
+            }
+        };
+    }
+
+    /**
+     * Runs a posting with this deadline as the current deadline of the thread.
+     */
+    <T> T run(Supplier<T> posting) {
+        current.set(this);
+        try {
+            return posting.get();
+        } finally {
+            current.remove();
+        }
+    }
+
+    /**
+     * Caps a lock timeout by the time left until the current deadline.
+     *
+     * @param timeoutMillis The timeout to use without a deadline.
+     * @return The smaller of the timeout and the time left, at least 0.
+     */
+    public static long capMillis(long timeoutMillis) {
+        Deadline deadline = current.get();
+        if (deadline == null) {
+            return timeoutMillis;
+        }
+        return Math.max(0, Math.min(timeoutMillis, TimeUnit.NANOSECONDS.toMillis(deadline.remainingNanos())));
+    }
+
+    /**
+     * Registers the statement a DAO is about to execute, so that cancelling the current posting aborts it.
+     * Close the returned watch, before the statement, once the statement finished.
+     *
+     * @param statement The statement of the posting.
+     * @return The watch to close; it does nothing if the thread runs no posting.
+     * @throws SQLException If the current posting is already cancelled or past its deadline.
+     */
+    public static Watch watch(Statement statement) throws SQLException {
+        Deadline deadline = current.get();
+        if (deadline == null) {
+            return () -> {
+            };
+        }
+        synchronized (deadline) {
+            deadline.check();
+            deadline.statement = statement;
+        }
+        return () -> {
+            synchronized (deadline) {
+                deadline.statement = null;
+            }
+        };
+    }
+
+    /**
+     * Fails if the current posting was cancelled or passed its deadline. DAOs call it right before they commit.
+     *
+     * @throws SQLException If the posting must not be committed.
+     */
+    public static void checkpoint() throws SQLException {
+        Deadline deadline = current.get();
+        if (deadline != null) {
+            synchronized (deadline) {
+                deadline.check();
+            }
+        }
+    }
+
+    private void check() throws SQLException {
+        if (cancelled) {
+            throw new SQLException("Posting was cancelled", QUERY_CANCELED);
+        }
+        if (expired || remainingNanos() <= 0) {
+            expired = true;
+            throw new SQLTimeoutException("Posting missed its deadline", QUERY_CANCELED);
+        }
+    }
+
+    /**
+     * The registration of a statement with the current deadline.
+     */
+    public interface Watch extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,249 @@
+package org.valoshka.cleverBank.concurrency;
+
+import org.valoshka.cleverBank.metrics.Counter;
+import org.valoshka.cleverBank.metrics.LatencyHistogram;
+import org.valoshka.cleverBank.metrics.Metrics;
+import org.valoshka.cleverBank.models.Transaction;
+import org.valoshka.cleverBank.models.TransferRequest;
+import org.valoshka.cleverBank.models.TransferResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Coalesces postings submitted by concurrent callers into shared database transactions.
+ * <p>
+ * A single flusher thread takes the first waiting posting, collects more for up to {@code maxWaitMicros}
+ * or until {@code maxBatchSize} postings are collected, and applies them all with
+ * {@link Transaction#transferBatch(List)}: one lock query, one batched balance update, one batched ledger insert
+ * and one commit for the whole group. While a group commits, the next one collects.
+ * Each caller's future completes with the result of its own posting. Postings that fail validation do not
+ * affect the others; if the group as a whole can't be committed, its postings are retried one by one,
+ * so a posting that breaks the database transaction only fails itself.
+ * <p>
+ * A posting submitted with a {@link Deadline} waits for its group at most until the deadline. If the deadline
+ * passes or the posting is cancelled before a group took it, it is dropped and fails; once a group took it,
+ * the group's commit decides.
+ * <p>
+ * Enabled with "database.groupCommit.enabled"; {@link Transaction#depositAndWithdrawal} and
+ * {@link Transaction#transfer} then {@link #apply(TransferRequest) apply} their postings here instead of
+ * committing them one by one.
+ */
+public class GroupCommitter {
+
+    private static final LatencyHistogram queueTimer = Metrics.histogram("groupCommit.queueWait");
+    private static final LatencyHistogram flushTimer = Metrics.histogram("groupCommit.flush");
+    private static final Counter groupCounter = Metrics.counter("groupCommit.groups");
+    private static final Counter postingCounter = Metrics.counter("groupCommit.postings");
+    private static final Counter retryCounter = Metrics.counter("groupCommit.retriedGroups");
+    private static final Counter droppedCounter = Metrics.counter("groupCommit.dropped");
+
+    private final long maxWaitNanos;
+    private final int maxBatchSize;
+    private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+
+    /**
+     * Creates a group committer and starts its flusher thread.
+     *
+     * @param maxWaitMicros How long a group collects postings after its first one arrived.
+     * @param maxBatchSize  The maximum number of postings of a group.
+     */
+    public GroupCommitter(long maxWaitMicros, int maxBatchSize) {
+        this.maxWaitNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, maxWaitMicros));
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        Thread flusher = new Thread(this::flushLoop, "group-commit");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * @return True if "database.groupCommit.enabled" is set, in the system properties or in "postgreSQL/database.properties".
+     */
+    public static boolean isEnabled() {
+        return Settings.enabled;
+    }
+
+    /**
+     * Returns the group committer shared by the application, configured by the "database.groupCommit.*" properties.
+     *
+     * @return The shared group committer.
+     */
+    public static GroupCommitter getInstance() {
+        return Holder.instance;
+    }
+
+    /**
+     * Queues a posting for the next group. If the current thread runs a posting with a {@link Deadline},
+     * the posting is dropped when that deadline passes or is cancelled before a group took it.
+     *
+     * @param request The transfer, deposit or withdrawal.
+     * @return A future of the result of the posting.
+     */
+    public CompletableFuture<TransferResult> submit(TransferRequest request) {
+        Pending pending = new Pending(request, Deadline.current());
+        queue.add(pending);
+        return pending.future;
+    }
+
+    /**
+     * Queues a posting for the next group and waits for its result. With a current {@link Deadline}
+     * the wait ends when the deadline passes or is cancelled, unless a group already took the posting;
+     * the posting then fails without being applied.
+     *
+     * @param request The transfer, deposit or withdrawal.
+     * @return The result of the posting.
+     */
+    public TransferResult apply(TransferRequest request) {
+        Deadline deadline = Deadline.current();
+        Pending pending = new Pending(request, deadline);
+        if (deadline == null) {
+            queue.add(pending);
+            return pending.future.join();
+        }
+        try (Deadline.Watch watch = deadline.onAbort(pending::drop)) {
+            queue.add(pending);
+            try {
+                return pending.future.get(Math.max(0, deadline.remainingNanos()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                pending.drop();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                pending.drop();
+            } catch (ExecutionException e) {
+                return pending.future.join();
+            }
+        }
+        return pending.future.join();
+    }
+
+    private void flushLoop() {
+        List<Pending> group = new ArrayList<>(maxBatchSize);
+        while (true) {
+            try {
+                group.add(queue.take());
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (group.size() < maxBatchSize) {
+                    Pending next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                }
+                flush(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                for (Pending pending : group) {
+                    pending.future.completeExceptionally(e);
+                }
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    private void flush(List<Pending> group) {
+        long start = Metrics.start();
+        group.removeIf(pending -> !pending.take());
+        if (group.isEmpty()) {
+            return;
+        }
+        List<TransferRequest> requests = new ArrayList<>(group.size());
+        for (Pending pending : group) {
+            queueTimer.recordSince(pending.submittedAt);
+            requests.add(pending.request);
+        }
+
+        List<TransferResult> results = Transaction.transferBatch(requests);
+        if (group.size() > 1 && results.stream().anyMatch(TransferResult::isDatabaseError)) {
+            retryCounter.increment();
+            results = new ArrayList<>(group.size());
+            for (TransferRequest request : requests) {
+                results.add(Transaction.transferBatch(List.of(request)).get(0));
+            }
+        }
+        for (int i = 0; i < group.size(); i++) {
+            group.get(i).future.complete(results.get(i));
+        }
+        groupCounter.increment();
+        postingCounter.add(group.size());
+        flushTimer.recordSince(start);
+    }
+
+    /**
+     * A queued posting. Either the flusher takes it into a group or it is dropped, whichever comes first.
+     */
+    private static final class Pending {
+        private final TransferRequest request;
+        private final Deadline deadline;
+        private final CompletableFuture<TransferResult> future = new CompletableFuture<>();
+        private final long submittedAt = Metrics.start();
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private Pending(TransferRequest request, Deadline deadline) {
+            this.request = request;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Claims the posting for a group, or drops it if its deadline passed or was cancelled.
+         *
+         * @return True if the posting belongs to the group.
+         */
+        private boolean take() {
+            if (deadline != null && (deadline.isCancelled() || deadline.isExpired())) {
+                drop();
+                return false;
+            }
+            return claimed.compareAndSet(false, true);
+        }
+
+        /**
+         * Fails the posting without applying it, unless a group took it already.
+         */
+        private void drop() {
+            if (claimed.compareAndSet(false, true)) {
+                droppedCounter.increment();
+                future.complete(TransferResult.failed(request, deadline != null && deadline.isCancelled()
+                        ? "Posting was cancelled" : "Posting missed its deadline", null));
+            }
+        }
+    }
+
+    private static final class Holder {
+        private static final GroupCommitter instance = new GroupCommitter(
+                Long.parseLong(Settings.property("database.groupCommit.maxWaitMicros", "500")),
+                Integer.parseInt(Settings.property("database.groupCommit.maxBatchSize", "64")));
+    }
+
+    private static final class Settings {
+        private static final Properties properties = load();
+        private static final boolean enabled = Boolean.parseBoolean(property("database.groupCommit.enabled", "false"));
+
+        private static String property(String key, String defaultValue) {
+            return System.getProperty(key, properties.getProperty(key, defaultValue)).trim();
+        }
+
+        private static Properties load() {
+            Properties properties = new Properties();
+            try (InputStream inputStream = GroupCommitter.class.getClassLoader().getResourceAsStream("postgreSQL/database.properties")) {
+                properties.load(inputStream);
+            } catch (IOException e) {
+                System.out.println("Error reading database properties file");
+                e.printStackTrace();
+            }
+            return properties;
+        }
+    }
+}
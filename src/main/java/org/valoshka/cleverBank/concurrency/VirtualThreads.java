@@ -0,0 +1,56 @@
+package org.valoshka.cleverBank.concurrency;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates virtual threads when the running JVM supports them (Java 21+),
+ * and falls back to daemon platform threads otherwise, so the code also runs on older JVMs.
+ */
+public class VirtualThreads {
+
+    private static final boolean available = probe();
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return True if the running JVM creates virtual threads, false if {@link #factory(String)} falls back to platform threads.
+     */
+    public static boolean isAvailable() {
+        return available;
+    }
+
+    private static boolean probe() {
+        try {
+            Thread.class.getMethod("ofVirtual").invoke(null);
+            return true;
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns a thread factory that names its threads "prefix-N".
+     *
+     * @param prefix The thread name prefix.
+     * @return A factory of virtual threads, or of daemon platform threads if virtual threads are unavailable.
+     */
+    public static ThreadFactory factory(String prefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix + "-", 0L);
+            Method factory = builderClass.getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger counter = new AtomicInteger();
+            return runnable -> {
+                Thread thread = new Thread(runnable, prefix + "-" + counter.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+}
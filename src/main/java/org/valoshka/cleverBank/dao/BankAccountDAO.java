@@ -1,17 +1,24 @@
 package org.valoshka.cleverBank.dao;
 
+import org.valoshka.cleverBank.dao.cache.AccountCache;
+import org.valoshka.cleverBank.dao.utils.CursorStream;
 import org.valoshka.cleverBank.dao.utils.DatabaseUtils;
+import org.valoshka.cleverBank.metrics.LatencyHistogram;
+import org.valoshka.cleverBank.metrics.Metrics;
 import org.valoshka.cleverBank.models.BankAccount;
-import org.valoshka.cleverBank.models.Client;
+import org.valoshka.cleverBank.models.Money;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Data Access Object (DAO) for managing bank account data in the database.
@@ -19,9 +26,36 @@ import java.util.*;
 public class BankAccountDAO implements Dao<BankAccount> {
 
     private static final Properties properties = new Properties();
+    private static final LatencyHistogram getTimer = Metrics.histogram("BankAccountDAO.get");
+    private static final LatencyHistogram getAllTimer = Metrics.histogram("BankAccountDAO.getAll");
+    private static final LatencyHistogram streamTimer = Metrics.histogram("BankAccountDAO.stream");
+    private static final LatencyHistogram pageTimer = Metrics.histogram("BankAccountDAO.page");
+    private static final LatencyHistogram saveTimer = Metrics.histogram("BankAccountDAO.save");
+    private static final LatencyHistogram accountExistsTimer = Metrics.histogram("BankAccountDAO.accountExists");
+    private static final LatencyHistogram updateTimer = Metrics.histogram("BankAccountDAO.update");
+    private static final LatencyHistogram updateBalanceTimer = Metrics.histogram("BankAccountDAO.updateBalance");
+    private static final LatencyHistogram deleteByNameTimer = Metrics.histogram("BankAccountDAO.deleteByName");
+
+    private static final String GET_SQL = "SELECT ba.*, " + HotAccounts.totalBalanceSql("ba") + " AS total_balance, c.name as client_name FROM BankAccount ba " +
+            "INNER JOIN Client c ON ba.owner_id = c.client_id " +
+            "WHERE ba.account_number = ?";
+
+    /**
+     * Sets the balance; the shards of a hot account keep theirs, so its own row gets the rest.
+     */
+    private static final String UPDATE_BALANCE_SQL = "UPDATE bankaccount SET balance=? - " +
+            "COALESCE((SELECT SUM(balance) FROM account_shard WHERE account_number=?), 0) WHERE account_number=?";
+
+    static {
+        ConnectionManager.prepareOnConnect(GET_SQL, UPDATE_BALANCE_SQL,
+                DatabaseUtils.recordExistsSql("bankaccount", "account_number"));
+    }
+
+    private final AccountCache cache;
 
     /**
      * Constructs a new BankAccountDAO and loads database properties.
+     * If "database.cache.accounts.enabled" is set, lookups by account number go through the shared {@link AccountCache}.
      */
     public BankAccountDAO() {
         try (InputStream inputStream = ClientDAO.class.getClassLoader().getResourceAsStream("postgreSQL/database.properties")) {
@@ -30,36 +64,47 @@ public class BankAccountDAO implements Dao<BankAccount> {
             System.out.println("Error reading database properties file");
             e.printStackTrace();
         }
+        this.cache = AccountCache.getInstance(properties);
     }
 
     /**
-     * Gets a database connection using the properties loaded during construction.
+     * Borrows a connection from the pooled data source for the loaded properties.
      *
-     * @return A database connection.
+     * @return A pooled database connection; closing it returns it to the pool.
      * @throws SQLException           If a database access error occurs.
      * @throws ClassNotFoundException If the database driver class is not found.
      */
     public Connection getConnection() throws SQLException, ClassNotFoundException {
-        return ConnectionManager.getConnection(properties);
+        return ConnectionManager.getDataSource(properties).getConnection();
     }
 
     /**
      * Retrieves a bank account from the database by account number.
+     * The balance of a {@link HotAccounts hot account} is the sum of its row and its shards.
      *
      * @param accountNumber The account number of the bank account to retrieve.
      * @return An Optional containing the retrieved bank account if found, or an empty Optional if not found.
      */
     @Override
     public Optional<BankAccount> get(String accountNumber) {
-        String sql = "SELECT ba.*, c.name as client_name FROM BankAccount ba " +
-                "INNER JOIN Client c ON ba.owner_id = c.client_id " +
-                "WHERE ba.account_number = ?";
+        return getTimer.time(() -> load(accountNumber));
+    }
+
+    private Optional<BankAccount> load(String accountNumber) {
+        Optional<BankAccount> cached = cache.get(accountNumber);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        long stamp = cache.stamp(accountNumber);
+
         try (Connection connection = getConnection();
-             PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+             PreparedStatement preparedStatement = connection.prepareStatement(GET_SQL)) {
             preparedStatement.setString(1, accountNumber);
             try (ResultSet resultSet = preparedStatement.executeQuery()) {
                 if (resultSet.next()) {
-                    return Optional.of(createBankAccountFromResultSet(resultSet));
+                    BankAccount bankAccount = createBankAccountFromResultSet(resultSet);
+                    cache.put(bankAccount, stamp);
+                    return Optional.of(bankAccount);
                 }
             }
         } catch (SQLException | ClassNotFoundException e) {
@@ -70,42 +115,86 @@ public class BankAccountDAO implements Dao<BankAccount> {
 
     /**
      * Retrieves all bank accounts from the database.
+     * The rows are read through {@link #stream()}, so only the resulting list is held in memory.
      *
      * @return A list of all bank accounts in the database.
      */
     @Override
     public List<BankAccount> getAll() {
+        return getAllTimer.time(this::loadAll);
+    }
+
+    private List<BankAccount> loadAll() {
+        try (Stream<BankAccount> bankAccounts = stream()) {
+            return bankAccounts.collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    /**
+     * Streams all bank accounts ordered by account number through a server-side cursor.
+     * The cursor fetches "database.fetchSize" rows per round trip; close the stream to release the connection.
+     *
+     * @return A lazily fetched stream of bank accounts, or an empty stream if the query can't be started.
+     */
+    @Override
+    public Stream<BankAccount> stream() {
+        return streamTimer.time(this::openStream);
+    }
+
+    private Stream<BankAccount> openStream() {
+        String sql = "SELECT ba.*, " + HotAccounts.totalBalanceSql("ba") + " AS total_balance, c.name as client_name FROM BankAccount ba " +
+                "INNER JOIN Client c ON ba.owner_id = c.client_id " +
+                "ORDER BY ba.account_number";
+        try {
+            return CursorStream.open(getConnection(), sql, CursorStream.fetchSize(properties), this::createBankAccountFromResultSet);
+        } catch (SQLException | ClassNotFoundException e) {
+            e.printStackTrace();
+        }
+        return Stream.empty();
+    }
+
+    /**
+     * Retrieves a page of bank accounts ordered by account number using keyset pagination,
+     * so every page is an index range scan regardless of how deep it is.
+     *
+     * @param afterKey The account number of the last account of the previous page, or null for the first page.
+     * @param limit    The maximum number of bank accounts to return.
+     * @return The bank accounts with an account number greater than {@code afterKey}.
+     */
+    @Override
+    public List<BankAccount> page(String afterKey, int limit) {
+        return pageTimer.time(() -> loadPage(afterKey, limit));
+    }
+
+    private List<BankAccount> loadPage(String afterKey, int limit) {
         List<BankAccount> bankAccounts = new ArrayList<>();
-        String sql = "SELECT ba.*, c.name as client_name FROM BankAccount ba " +
-                "INNER JOIN Client c ON ba.owner_id = c.client_id";
+        String sql = "SELECT ba.*, " + HotAccounts.totalBalanceSql("ba") + " AS total_balance, c.name as client_name FROM BankAccount ba " +
+                "INNER JOIN Client c ON ba.owner_id = c.client_id " +
+                "WHERE ba.account_number > ? ORDER BY ba.account_number LIMIT ?";
         try (Connection connection = getConnection();
-             PreparedStatement preparedStatement = connection.prepareStatement(sql);
-             ResultSet resultSet = preparedStatement.executeQuery()) {
-
-            while (resultSet.next()) {
-                bankAccounts.add(createBankAccountFromResultSet(resultSet));
+             PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+            preparedStatement.setString(1, afterKey == null ? "" : afterKey);
+            preparedStatement.setInt(2, limit);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    bankAccounts.add(createBankAccountFromResultSet(resultSet));
+                }
             }
-
         } catch (SQLException | ClassNotFoundException e) {
             e.printStackTrace();
         }
         return bankAccounts;
     }
 
-
     private BankAccount createBankAccountFromResultSet(ResultSet resultSet) throws SQLException {
         String bankAccountNumber = resultSet.getString("account_number");
         String bankName = resultSet.getString("bank_name");
         LocalDate createdAt = resultSet.getDate("created_At").toLocalDate();
-        double balance = resultSet.getDouble("balance");
         Currency currency = Currency.getInstance(resultSet.getString("currency"));
+        Money balance = Money.of(resultSet.getBigDecimal("total_balance"), currency);
         String clientName = resultSet.getString("client_name");
         int ownerId = resultSet.getInt("owner_id");
 
-        Client owner = new Client();
-        owner.setName(clientName);
-        owner.setId(ownerId);
-
         BankAccount bankAccount = new BankAccount();
         bankAccount.setAccountNumber(bankAccountNumber);
         bankAccount.setBankName(bankName);
@@ -113,8 +202,7 @@ public class BankAccountDAO implements Dao<BankAccount> {
         bankAccount.setBalance(balance);
         bankAccount.setCurrency(currency);
 
-        bankAccount.setOwner(owner);
-        owner.addAccount(bankAccount);
+        bankAccount.setOwner(cache.owner(ownerId, clientName));
 
         return bankAccount;
     }
@@ -126,6 +214,10 @@ public class BankAccountDAO implements Dao<BankAccount> {
      */
     @Override
     public void save(BankAccount bankAccount) {
+        saveTimer.time(() -> insert(bankAccount));
+    }
+
+    private void insert(BankAccount bankAccount) {
         ClientDAO clientDAO = new ClientDAO();
 
         if (accountExists(bankAccount.getAccountNumber())) {
@@ -145,11 +237,12 @@ public class BankAccountDAO implements Dao<BankAccount> {
             preparedStatement.setString(1, bankAccount.getAccountNumber());
             preparedStatement.setString(2, bankAccount.getBankName());
             preparedStatement.setDate(3, java.sql.Date.valueOf(bankAccount.getCreatedAt()));
-            preparedStatement.setDouble(4, bankAccount.getBalance());
+            preparedStatement.setBigDecimal(4, bankAccount.getBalance().toBigDecimal());
             preparedStatement.setString(5, bankAccount.getCurrency().getCurrencyCode());
             preparedStatement.setInt(6, bankAccount.getOwner().getId());
 
             int affectedRows = preparedStatement.executeUpdate();
+            cache.invalidate(bankAccount.getAccountNumber());
             if (affectedRows == 0) {
                 throw new SQLException("Creating bank account failed, no rows affected.");
             }
@@ -165,6 +258,13 @@ public class BankAccountDAO implements Dao<BankAccount> {
      * @return True if a bank account with the given account number exists, false otherwise.
      */
     public boolean accountExists(String accountNumber) {
+        return accountExistsTimer.time(() -> exists(accountNumber));
+    }
+
+    private boolean exists(String accountNumber) {
+        if (cache.get(accountNumber).isPresent()) {
+            return true;
+        }
         try (Connection connection = getConnection()) {
             return DatabaseUtils.recordExists(connection, "bankaccount", "account_number", accountNumber);
         } catch (ClassNotFoundException | SQLException e) {
@@ -177,19 +277,36 @@ public class BankAccountDAO implements Dao<BankAccount> {
      * Updates a bank account's balance in the database.
      *
      * @param bankAccount The bank account to update.
-     * @param params      An array of parameters for the update operation.
+     * @param params      An array of parameters for the update operation; the first one is the new balance.
      */
     @Override
     public void update(BankAccount bankAccount, String[] params) {
+        updateTimer.time(() -> applyUpdate(bankAccount, params));
+    }
 
-        String sql = "UPDATE bankaccount SET balance=? WHERE account_number=?";
+    private void applyUpdate(BankAccount bankAccount, String[] params) {
+        bankAccount.setBalance(Money.of(new BigDecimal(params[0]), bankAccount.getCurrency()));
+        updateBalance(bankAccount);
+    }
 
+    /**
+     * Writes the balance the bank account currently holds to the database.
+     *
+     * @param bankAccount The bank account to update.
+     */
+    public void updateBalance(BankAccount bankAccount) {
+        updateBalanceTimer.time(() -> writeBalance(bankAccount));
+    }
+
+    private void writeBalance(BankAccount bankAccount) {
         try (Connection connection = getConnection();
-             PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
-            preparedStatement.setDouble(1, Double.parseDouble(params[0]));
+             PreparedStatement preparedStatement = connection.prepareStatement(UPDATE_BALANCE_SQL)) {
+            preparedStatement.setBigDecimal(1, bankAccount.getBalance().toBigDecimal());
             preparedStatement.setString(2, bankAccount.getAccountNumber());
+            preparedStatement.setString(3, bankAccount.getAccountNumber());
 
             int affectedRows = preparedStatement.executeUpdate();
+            cache.invalidate(bankAccount.getAccountNumber());
             if (affectedRows == 0) {
                 throw new SQLException("Updating bank account failed, no rows affected.");
             }
@@ -205,11 +322,16 @@ public class BankAccountDAO implements Dao<BankAccount> {
      */
     @Override
     public void deleteByName(String accountNumber) {
+        deleteByNameTimer.time(() -> delete(accountNumber));
+    }
+
+    private void delete(String accountNumber) {
         String sql = "DELETE FROM BankAccount WHERE account_number = ?";
         try (Connection connection = getConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
             preparedStatement.setString(1, accountNumber);
             preparedStatement.executeUpdate();
+            cache.invalidate(accountNumber);
         } catch (SQLException | ClassNotFoundException e) {
             e.printStackTrace();
         }
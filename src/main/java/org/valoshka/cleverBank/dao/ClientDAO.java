@@ -1,6 +1,10 @@
 package org.valoshka.cleverBank.dao;
 
+import org.valoshka.cleverBank.dao.cache.AccountCache;
+import org.valoshka.cleverBank.dao.utils.CursorStream;
 import org.valoshka.cleverBank.dao.utils.DatabaseUtils;
+import org.valoshka.cleverBank.metrics.LatencyHistogram;
+import org.valoshka.cleverBank.metrics.Metrics;
 import org.valoshka.cleverBank.models.Client;
 
 import java.io.IOException;
@@ -10,12 +14,28 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Data Access Object (DAO) for managing client data in the database.
  */
 public class ClientDAO implements Dao<Client> {
     private static final Properties properties = new Properties();
+    private static final LatencyHistogram getTimer = Metrics.histogram("ClientDAO.get");
+    private static final LatencyHistogram getAllTimer = Metrics.histogram("ClientDAO.getAll");
+    private static final LatencyHistogram streamTimer = Metrics.histogram("ClientDAO.stream");
+    private static final LatencyHistogram pageTimer = Metrics.histogram("ClientDAO.page");
+    private static final LatencyHistogram saveTimer = Metrics.histogram("ClientDAO.save");
+    private static final LatencyHistogram clientExistsTimer = Metrics.histogram("ClientDAO.clientExists");
+    private static final LatencyHistogram updateTimer = Metrics.histogram("ClientDAO.update");
+    private static final LatencyHistogram deleteByNameTimer = Metrics.histogram("ClientDAO.deleteByName");
+
+    private static final String GET_SQL = "SELECT * FROM Client WHERE name = ?";
+
+    static {
+        ConnectionManager.prepareOnConnect(GET_SQL, DatabaseUtils.recordExistsSql("Client", "name"));
+    }
 
     /**
      * Constructs a new ClientDAO and loads database properties.
@@ -30,14 +50,14 @@ public class ClientDAO implements Dao<Client> {
     }
 
     /**
-     * Gets a database connection using the properties loaded during construction.
+     * Borrows a connection from the pooled data source for the loaded properties.
      *
-     * @return A database connection.
+     * @return A pooled database connection; closing it returns it to the pool.
      * @throws SQLException           If a database access error occurs.
      * @throws ClassNotFoundException If the database driver class is not found.
      */
     public Connection getConnection() throws SQLException, ClassNotFoundException {
-        return ConnectionManager.getConnection(properties);
+        return ConnectionManager.getDataSource(properties).getConnection();
     }
 
     /**
@@ -48,9 +68,12 @@ public class ClientDAO implements Dao<Client> {
      */
     @Override
     public Optional<Client> get(String clientName) {  // get existing object from db else can return empty optional
-        String sql = "SELECT * FROM Client WHERE name = ?";
+        return getTimer.time(() -> load(clientName));
+    }
+
+    private Optional<Client> load(String clientName) {
         try (Connection connection = getConnection();
-             PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+             PreparedStatement preparedStatement = connection.prepareStatement(GET_SQL)) {
             preparedStatement.setString(1, clientName);
             try (ResultSet resultSet = preparedStatement.executeQuery()) {
                 if (resultSet.next()) {
@@ -72,23 +95,66 @@ public class ClientDAO implements Dao<Client> {
 
     /**
      * Retrieves all clients from the database.
+     * The rows are read through {@link #stream()}, so only the resulting list is held in memory.
      *
      * @return A list of all clients in the database.
      */
     @Override
     public List<Client> getAll() {
+        return getAllTimer.time(this::loadAll);
+    }
+
+    private List<Client> loadAll() {
+        try (Stream<Client> clients = stream()) {
+            return clients.collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    /**
+     * Streams all clients ordered by id through a server-side cursor.
+     * The cursor fetches "database.fetchSize" rows per round trip; close the stream to release the connection.
+     *
+     * @return A lazily fetched stream of clients, or an empty stream if the query can't be started.
+     */
+    @Override
+    public Stream<Client> stream() {
+        return streamTimer.time(this::openStream);
+    }
+
+    private Stream<Client> openStream() {
+        try {
+            return CursorStream.open(getConnection(), "SELECT client_id, name FROM Client ORDER BY client_id",
+                    CursorStream.fetchSize(properties), ClientDAO::createClientFromResultSet);
+        } catch (SQLException | ClassNotFoundException e) {
+            e.printStackTrace();
+        }
+        return Stream.empty();
+    }
+
+    /**
+     * Retrieves a page of clients ordered by id using keyset pagination,
+     * so every page is an index range scan regardless of how deep it is.
+     *
+     * @param afterKey The id of the last client of the previous page, or null for the first page.
+     * @param limit    The maximum number of clients to return.
+     * @return The clients with an id greater than {@code afterKey}.
+     */
+    @Override
+    public List<Client> page(String afterKey, int limit) {
+        return pageTimer.time(() -> loadPage(afterKey, limit));
+    }
+
+    private List<Client> loadPage(String afterKey, int limit) {
         List<Client> clients = new ArrayList<>();
-        String sql = "SELECT * FROM Client";
+        String sql = "SELECT client_id, name FROM Client WHERE client_id > ? ORDER BY client_id LIMIT ?";
         try (Connection connection = getConnection();
-             Statement statement = connection.createStatement();
-             ResultSet resultSet = statement.executeQuery(sql)) {
-            while (resultSet.next()) {
-                int clientId = resultSet.getInt("client_id");
-                String name = resultSet.getString("name");
-                Client client = new Client(name);
-                client.setId(clientId);
-
-                clients.add(client);
+             PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+            preparedStatement.setInt(1, afterKey == null ? Integer.MIN_VALUE : Integer.parseInt(afterKey));
+            preparedStatement.setInt(2, limit);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    clients.add(createClientFromResultSet(resultSet));
+                }
             }
         } catch (SQLException | ClassNotFoundException e) {
             e.printStackTrace();
@@ -96,6 +162,12 @@ public class ClientDAO implements Dao<Client> {
         return clients;
     }
 
+    private static Client createClientFromResultSet(ResultSet resultSet) throws SQLException {
+        Client client = new Client(resultSet.getString("name"));
+        client.setId(resultSet.getInt("client_id"));
+        return client;
+    }
+
     /**
      * Saves a client to the database.
      *
@@ -103,6 +175,10 @@ public class ClientDAO implements Dao<Client> {
      */
     @Override
     public void save(Client client) {
+        saveTimer.time(() -> insert(client));
+    }
+
+    private void insert(Client client) {
         if (clientExists(client.getName())) {
             System.out.println("Client with name '" + client.getName() + "' already exists.");
             return;
@@ -135,6 +211,10 @@ public class ClientDAO implements Dao<Client> {
      * @return True if a client with the given name exists, false otherwise.
      */
     public boolean clientExists(String name) {
+        return clientExistsTimer.time(() -> exists(name));
+    }
+
+    private boolean exists(String name) {
         try (Connection connection = getConnection()) {
             return DatabaseUtils.recordExists(connection, "Client", "name", name);
         } catch (ClassNotFoundException | SQLException e) {
@@ -152,6 +232,10 @@ public class ClientDAO implements Dao<Client> {
      */
     @Override
     public void update(Client client, String[] params) {
+        updateTimer.time(() -> rename(client, params));
+    }
+
+    private void rename(Client client, String[] params) {
         if (params == null || params.length == 0) {
             return;
         }
@@ -165,6 +249,7 @@ public class ClientDAO implements Dao<Client> {
             preparedStatement.setString(2, client.getName());
 
             int affectedRows = preparedStatement.executeUpdate();
+            AccountCache.getInstance(properties).clear();
             if (affectedRows == 0) {
                 System.out.println("No client with ID '" + client.getId() + "' found to update.");
             } else {
@@ -182,11 +267,16 @@ public class ClientDAO implements Dao<Client> {
      */
     @Override
     public void deleteByName(String clientName) {  // delete if exist else nothing
+        deleteByNameTimer.time(() -> delete(clientName));
+    }
+
+    private void delete(String clientName) {
         String sql = "DELETE FROM Client WHERE name = ?";
         try (Connection connection = getConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
             preparedStatement.setString(1, clientName);
             int affectedRows = preparedStatement.executeUpdate();
+            AccountCache.getInstance(properties).clear();
             if (affectedRows == 0) {
                 System.out.println("No client with ID '" + clientName + "' found to delete.");
             } else {
@@ -1,30 +1,109 @@
 package org.valoshka.cleverBank.dao;
 
+import org.valoshka.cleverBank.dao.pool.ConnectionPool;
+import org.valoshka.cleverBank.dao.pool.PoolConfig;
+import org.valoshka.cleverBank.dao.pool.PoolStats;
+import org.valoshka.cleverBank.dao.trace.SqlTrace;
+import org.valoshka.cleverBank.dao.trace.TracingDataSource;
+
+import javax.sql.DataSource;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Manages database connections using JDBC.
+ * Connections are served from one {@link ConnectionPool} per database URL and user.
+ * With "database.trace.enabled" set, the pools are wrapped in a {@link TracingDataSource}.
  */
 public class ConnectionManager {
 
+    private static final Map<String, ConnectionPool> pools = new ConcurrentHashMap<>();
+    private static final Map<String, DataSource> tracedPools = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the pooled data source for the database described by the provided properties,
+     * creating it on first use.
+     *
+     * @param properties The properties containing connection details (URL, username, password, driver class)
+     *                   and the "database.pool.*" settings.
+     * @return The data source shared by all DAOs using these properties.
+     * @throws ClassNotFoundException If the database driver class is not found.
+     */
+    public static DataSource getDataSource(Properties properties) throws ClassNotFoundException {
+        ConnectionPool pool = getPool(properties);
+        if (!Boolean.parseBoolean(properties.getProperty("database.trace.enabled", "false").trim())) {
+            return pool;
+        }
+        return tracedPools.computeIfAbsent(keyOf(properties), key -> new TracingDataSource(pool, properties));
+    }
+
     /**
      * Gets a database connection using the provided properties.
      *
      * @param properties The properties containing connection details (URL, username, password, driver class).
-     * @return A database connection.
+     * @return A pooled database connection; closing it returns it to the pool.
      * @throws SQLException           If a database access error occurs.
      * @throws ClassNotFoundException If the database driver class is not found.
      */
     public static Connection getConnection(Properties properties) throws SQLException, ClassNotFoundException {
-        String jdbcUrl = properties.getProperty("database.connection.url");
-        String username = properties.getProperty("database.connection.username");
-        String password = properties.getProperty("database.connection.password");
+        return getDataSource(properties).getConnection();
+    }
 
-        Class.forName(properties.getProperty("database.driver_class"));
+    /**
+     * Registers queries that pooled connections prepare as soon as they are opened,
+     * see {@link ConnectionPool#prepareOnConnect(String...)}.
+     *
+     * @param sqls The SQL texts, exactly as they are passed to {@code prepareStatement}.
+     */
+    public static void prepareOnConnect(String... sqls) {
+        ConnectionPool.prepareOnConnect(sqls);
+    }
 
-        return DriverManager.getConnection(jdbcUrl, username, password);
+    /**
+     * Gets the statistics of every pool created so far.
+     *
+     * @return Pool statistics keyed by database URL and user.
+     */
+    public static Map<String, PoolStats> getPoolStats() {
+        Map<String, PoolStats> stats = new LinkedHashMap<>();
+        pools.forEach((key, pool) -> stats.put(key, pool.getStats()));
+        return stats;
+    }
+
+    /**
+     * Lists the "database.trace.reportTopN" traced statements with the highest total time, see {@link SqlTrace}.
+     *
+     * @return The report, or an empty string if tracing is off or nothing was traced.
+     */
+    public static String getTraceReport() {
+        return SqlTrace.report();
+    }
+
+    /**
+     * Closes all pools. Connections still borrowed are closed when they are returned.
+     */
+    public static void shutdown() {
+        pools.values().forEach(ConnectionPool::close);
+        pools.clear();
+        tracedPools.clear();
+    }
+
+    private static String keyOf(Properties properties) {
+        return properties.getProperty("database.connection.url") + "|"
+                + properties.getProperty("database.connection.username");
+    }
+
+    static ConnectionPool getPool(Properties properties) throws ClassNotFoundException {
+        String key = keyOf(properties);
+        ConnectionPool pool = pools.get(key);
+        if (pool != null) {
+            return pool;
+        }
+        Class.forName(properties.getProperty("database.driver_class"));
+        return pools.computeIfAbsent(key, k -> new ConnectionPool(new PoolConfig(properties)));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,161 @@
+package org.valoshka.cleverBank.dao;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Data Access Object (DAO) for the end-of-day balances in the "daily_balance" table.
+ * <p>
+ * Closing a day only reads that day's transactions: every account that moved gets the closing balance of
+ * its previous row plus the day's movements. Accounts without any row yet that existed before the day are
+ * first given one for the day before, derived from their current balance. An account created on the day
+ * itself has no row before it, so if it moved, its closing balance is derived from its current balance too.
+ * Accounts that didn't move keep their older row, so the newest row before a day always holds the balance
+ * at the start of that day. Movements in another currency than the account's are left out, as they are from
+ * account statements.
+ */
+public class DailyBalanceDAO {
+    private static final Properties properties = new Properties();
+
+    private static final String LAST_CLOSED_DAY_SQL = "SELECT MAX(day) AS day FROM daily_balance_run";
+
+    /**
+     * Parameters: the day before, the start of the day, the day. Accounts created on or after the day are left
+     * out; they had no balance the day before.
+     */
+    private static final String SEED_SQL = "INSERT INTO daily_balance (account_number, day, closing_balance) " +
+            "SELECT ba.account_number, ?::date, " + currentBalanceSinceSql("ba") + " " +
+            "FROM BankAccount ba " +
+            "WHERE NOT EXISTS (SELECT 1 FROM daily_balance d WHERE d.account_number = ba.account_number) " +
+            "AND (ba.created_at IS NULL OR ba.created_at < ?)";
+
+    /**
+     * Parameters: the day, the day, the start of the next day, the start of the day, the start of the next day.
+     * Without a row before the day the account was created on it, and its current balance less the later
+     * movements is the closing balance.
+     */
+    private static final String CLOSE_SQL = "INSERT INTO daily_balance (account_number, day, closing_balance) " +
+            "SELECT m.account_number, ?::date, COALESCE((SELECT d.closing_balance FROM daily_balance d " +
+            "WHERE d.account_number = m.account_number AND d.day < ? ORDER BY d.day DESC LIMIT 1) + SUM(m.amount), " +
+            "(SELECT " + currentBalanceSinceSql("ba") + " FROM BankAccount ba WHERE ba.account_number = m.account_number)) " +
+            "FROM account_movement m JOIN BankAccount a ON a.account_number = m.account_number AND a.currency = m.currency " +
+            "WHERE m.trans_date_time >= ? AND m.trans_date_time < ? " +
+            "GROUP BY m.account_number " +
+            "ON CONFLICT (account_number, day) DO UPDATE SET closing_balance = EXCLUDED.closing_balance";
+
+    private static final String RUN_SQL = "INSERT INTO daily_balance_run (day, accounts, closed_at) VALUES (?, ?, ?)";
+
+    /**
+     * @return An SQL expression for the current balance of an account less its movements from a moment on,
+     * the one parameter.
+     */
+    private static String currentBalanceSinceSql(String alias) {
+        return HotAccounts.totalBalanceSql(alias) + " - COALESCE((SELECT SUM(m.amount) FROM account_movement m " +
+                "WHERE m.account_number = " + alias + ".account_number AND m.currency = " + alias + ".currency " +
+                "AND m.trans_date_time >= ?), 0)";
+    }
+
+    /**
+     * Constructs a new DailyBalanceDAO and loads database properties from a configuration file.
+     */
+    public DailyBalanceDAO() {
+        try (InputStream inputStream = ClientDAO.class.getClassLoader().getResourceAsStream("postgreSQL/database.properties")) {
+            properties.load(inputStream);
+        } catch (IOException e) {
+            System.out.println("Error reading database properties file");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Borrows a connection from the pooled data source for the loaded properties.
+     *
+     * @return A pooled database connection; closing it returns it to the pool.
+     * @throws SQLException           If a database access error occurs.
+     * @throws ClassNotFoundException If the database driver class is not found.
+     */
+    public Connection getConnection() throws SQLException, ClassNotFoundException {
+        return ConnectionManager.getDataSource(properties).getConnection();
+    }
+
+    /**
+     * @return The last closed day, or an empty Optional if no day was closed yet or it can't be read.
+     */
+    public Optional<LocalDate> lastClosedDay() {
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(LAST_CLOSED_DAY_SQL);
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+            if (resultSet.next() && resultSet.getDate("day") != null) {
+                return Optional.of(resultSet.getDate("day").toLocalDate());
+            }
+        } catch (SQLException | ClassNotFoundException e) {
+            e.printStackTrace();
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Writes the closing balances of one day in a single database transaction. Days must be closed in order
+     * and only once; closing a day again fails on the "daily_balance_run" key and changes nothing.
+     *
+     * @param day The day to close.
+     * @return The number of accounts that got a row for the day, or -1 if the day couldn't be closed.
+     */
+    public int closeDay(LocalDate day) {
+        Timestamp start = Timestamp.valueOf(day.atStartOfDay());
+        Timestamp end = Timestamp.valueOf(day.plusDays(1).atStartOfDay());
+        try (Connection connection = getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                int seeded;
+                try (PreparedStatement preparedStatement = connection.prepareStatement(SEED_SQL)) {
+                    preparedStatement.setDate(1, Date.valueOf(day.minusDays(1)));
+                    preparedStatement.setTimestamp(2, start);
+                    preparedStatement.setDate(3, Date.valueOf(day));
+                    seeded = preparedStatement.executeUpdate();
+                }
+
+                int closed;
+                try (PreparedStatement preparedStatement = connection.prepareStatement(CLOSE_SQL)) {
+                    preparedStatement.setDate(1, Date.valueOf(day));
+                    preparedStatement.setDate(2, Date.valueOf(day));
+                    preparedStatement.setTimestamp(3, end);
+                    preparedStatement.setTimestamp(4, start);
+                    preparedStatement.setTimestamp(5, end);
+                    closed = preparedStatement.executeUpdate();
+                }
+
+                try (PreparedStatement preparedStatement = connection.prepareStatement(RUN_SQL)) {
+                    preparedStatement.setDate(1, Date.valueOf(day));
+                    preparedStatement.setInt(2, closed);
+                    preparedStatement.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
+                    preparedStatement.executeUpdate();
+                }
+                connection.commit();
+                if (seeded > 0) {
+                    System.out.println("Daily balances seeded for " + seeded + " new accounts");
+                }
+                return closed;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException | ClassNotFoundException e) {
+            e.printStackTrace();
+            System.out.println("Closing day " + day + " failed");
+        }
+        return -1;
+    }
+}
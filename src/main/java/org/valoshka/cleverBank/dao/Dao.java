@@ -2,6 +2,7 @@ package org.valoshka.cleverBank.dao;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface Dao<T> {
 
@@ -9,6 +10,17 @@ public interface Dao<T> {
 
     List<T> getAll();
 
+    /**
+     * Streams all rows through a server-side cursor. The stream holds a connection until it is closed.
+     */
+    Stream<T> stream();
+
+    /**
+     * Returns up to {@code limit} rows ordered by key that come after {@code afterKey};
+     * pass {@code null} for the first page and the key of the last row for the next one.
+     */
+    List<T> page(String afterKey, int limit);
+
     void save(T t);
 
     void update(T t, String[] params);
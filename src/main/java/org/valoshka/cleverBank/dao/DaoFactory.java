@@ -0,0 +1,73 @@
+package org.valoshka.cleverBank.dao;
+
+import org.valoshka.cleverBank.dao.memory.DurableLedger;
+import org.valoshka.cleverBank.dao.memory.InMemoryBankAccountDAO;
+import org.valoshka.cleverBank.dao.memory.InMemoryClientDAO;
+import org.valoshka.cleverBank.dao.memory.InMemoryTransactionDAO;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Hands out the DAOs of the storage engine selected by "database.storage" in the database properties:
+ * {@code jdbc} (the default) for PostgreSQL, {@code memory} for the in-memory engine and {@code wal} for the
+ * in-memory engine made durable by a write-ahead log and snapshots, see {@link DurableLedger}.
+ * A system property with the same key overrides the file. The DAOs are stateless and shared.
+ */
+public class DaoFactory {
+
+    private static final Properties properties = load();
+    private static final String storage = System.getProperty("database.storage", properties.getProperty("database.storage", "jdbc"));
+    private static final boolean inMemory = openStorage();
+
+    private static final ClientDAO clientDAO = inMemory ? new InMemoryClientDAO() : new ClientDAO();
+    private static final BankAccountDAO bankAccountDAO = inMemory ? new InMemoryBankAccountDAO() : new BankAccountDAO();
+    private static final TransactionDAO transactionDAO = inMemory ? new InMemoryTransactionDAO() : new TransactionDAO();
+
+    private DaoFactory() {
+    }
+
+    /**
+     * @return True if the in-memory storage engine is selected, durable or not.
+     */
+    public static boolean isInMemory() {
+        return inMemory;
+    }
+
+    /**
+     * Recovers the durable ledger if it is selected.
+     *
+     * @return True if an in-memory storage engine is selected.
+     */
+    private static boolean openStorage() {
+        if ("wal".equalsIgnoreCase(storage)) {
+            DurableLedger.open(properties);
+            return true;
+        }
+        return "memory".equalsIgnoreCase(storage);
+    }
+
+    public static ClientDAO getClientDAO() {
+        return clientDAO;
+    }
+
+    public static BankAccountDAO getBankAccountDAO() {
+        return bankAccountDAO;
+    }
+
+    public static TransactionDAO getTransactionDAO() {
+        return transactionDAO;
+    }
+
+    private static Properties load() {
+        Properties properties = new Properties();
+        try (InputStream inputStream = DaoFactory.class.getClassLoader().getResourceAsStream("postgreSQL/database.properties")) {
+            properties.load(inputStream);
+        } catch (IOException e) {
+            System.out.println("Error reading database properties file");
+            e.printStackTrace();
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,220 @@
+package org.valoshka.cleverBank.dao;
+
+import org.postgresql.PGConnection;
+import org.valoshka.cleverBank.metrics.Counter;
+import org.valoshka.cleverBank.metrics.Metrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * The exchange rates of the "exchange_rate" table, served from an immutable in-memory snapshot.
+ * <p>
+ * Postings never query the table: a lookup is one read of the current snapshot, a map that is never changed
+ * but replaced as a whole when the rates change. A trigger on the table sends a notification on the
+ * "exchange_rate" channel after every change, and a listener thread with a connection of its own loads a new
+ * snapshot when it gets one. The listener also reloads the rates whenever it reconnects, so changes made while
+ * it was disconnected are not missed. A rate quoted in one direction only is used inverted for the other one.
+ * <p>
+ * The in-memory storage engine has no table; its rates are only set with {@link #setRate(Currency, Currency, BigDecimal)}.
+ */
+public final class ExchangeRates {
+
+    /**
+     * The number of fraction digits of a rate, the scale of the {@code DECIMAL(18, 8)} rate column.
+     */
+    public static final int RATE_SCALE = 8;
+
+    private static final String CHANNEL = "exchange_rate";
+    private static final long RECONNECT_DELAY_MILLIS = 5_000;
+
+    private static final Counter reloadCounter = Metrics.counter("exchangeRates.reloads");
+
+    private static final String LOAD_SQL = "SELECT base_currency, quote_currency, rate FROM exchange_rate";
+
+    private static final String SET_RATE_SQL = "INSERT INTO exchange_rate (base_currency, quote_currency, rate, updated_at) " +
+            "VALUES (?, ?, ?, ?) ON CONFLICT (base_currency, quote_currency) " +
+            "DO UPDATE SET rate = EXCLUDED.rate, updated_at = EXCLUDED.updated_at";
+
+    /**
+     * The rates set on the in-memory storage engine, as quoted.
+     */
+    private static final Map<String, BigDecimal> quoted = new HashMap<>();
+
+    private ExchangeRates() {
+    }
+
+    /**
+     * Looks up the rate of a currency pair in the current snapshot.
+     *
+     * @param from The currency of the amount.
+     * @param to   The currency to convert into.
+     * @return The number of units of {@code to} one unit of {@code from} buys, 1 for the same currency,
+     * or an empty Optional if there is no rate for the pair.
+     */
+    public static Optional<BigDecimal> rate(Currency from, Currency to) {
+        if (from.equals(to)) {
+            return Optional.of(BigDecimal.ONE);
+        }
+        return Optional.ofNullable(Snapshot.rates.get(keyOf(from, to)));
+    }
+
+    /**
+     * Sets the rate of a currency pair. On the database it is written to the "exchange_rate" table,
+     * which notifies every application instance to reload its snapshot; this one reloads at once.
+     *
+     * @param from The base currency.
+     * @param to   The quote currency.
+     * @param rate The number of units of {@code to} one unit of {@code from} buys, rounded to eight fraction digits.
+     * @throws IllegalArgumentException If the rate is not positive.
+     */
+    public static void setRate(Currency from, Currency to, BigDecimal rate) {
+        BigDecimal scaled = rate.setScale(RATE_SCALE, RoundingMode.HALF_EVEN);
+        if (scaled.signum() <= 0) {
+            throw new IllegalArgumentException("Exchange rate should be more than zero");
+        }
+        if (DaoFactory.isInMemory()) {
+            synchronized (quoted) {
+                quoted.put(keyOf(from, to), scaled);
+                Snapshot.rates = snapshotOf(quoted);
+            }
+            return;
+        }
+        try (Connection connection = ConnectionManager.getConnection(Settings.properties);
+             PreparedStatement preparedStatement = connection.prepareStatement(SET_RATE_SQL)) {
+            preparedStatement.setString(1, from.getCurrencyCode());
+            preparedStatement.setString(2, to.getCurrencyCode());
+            preparedStatement.setBigDecimal(3, scaled);
+            preparedStatement.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now()));
+            preparedStatement.executeUpdate();
+        } catch (SQLException | ClassNotFoundException e) {
+            e.printStackTrace();
+        }
+        refresh();
+    }
+
+    /**
+     * Loads a new snapshot from the "exchange_rate" table. If the table can't be read, the current snapshot stays.
+     */
+    public static void refresh() {
+        if (DaoFactory.isInMemory()) {
+            return;
+        }
+        Map<String, BigDecimal> rates = load();
+        if (rates != null) {
+            Snapshot.rates = rates;
+        }
+    }
+
+    private static Map<String, BigDecimal> load() {
+        Map<String, BigDecimal> rates = new HashMap<>();
+        try (Connection connection = ConnectionManager.getConnection(Settings.properties);
+             PreparedStatement preparedStatement = connection.prepareStatement(LOAD_SQL);
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+            while (resultSet.next()) {
+                rates.put(resultSet.getString("base_currency") + "/" + resultSet.getString("quote_currency"),
+                        resultSet.getBigDecimal("rate"));
+            }
+        } catch (SQLException | ClassNotFoundException e) {
+            System.out.println("Can't load exchange rates: " + e.getMessage());
+            return null;
+        }
+        reloadCounter.increment();
+        return snapshotOf(rates);
+    }
+
+    /**
+     * Builds an immutable snapshot of the quoted rates and the inverse of every pair quoted in one direction only.
+     */
+    private static Map<String, BigDecimal> snapshotOf(Map<String, BigDecimal> rates) {
+        Map<String, BigDecimal> snapshot = new HashMap<>(rates);
+        rates.forEach((pair, rate) -> {
+            int separator = pair.indexOf('/');
+            String inverse = pair.substring(separator + 1) + "/" + pair.substring(0, separator);
+            snapshot.putIfAbsent(inverse, BigDecimal.ONE.divide(rate, RATE_SCALE, RoundingMode.HALF_EVEN));
+        });
+        return Map.copyOf(snapshot);
+    }
+
+    private static String keyOf(Currency from, Currency to) {
+        return from.getCurrencyCode() + "/" + to.getCurrencyCode();
+    }
+
+    /**
+     * Waits for notifications of rate changes on a connection of its own and reloads the snapshot for each batch
+     * of them, reconnecting after a failure.
+     */
+    private static void listen() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try (Connection connection = DriverManager.getConnection(
+                    Settings.properties.getProperty("database.connection.url"),
+                    Settings.properties.getProperty("database.connection.username"),
+                    Settings.properties.getProperty("database.connection.password"));
+                 Statement statement = connection.createStatement()) {
+                statement.execute("LISTEN " + CHANNEL);
+                refresh();
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (!Thread.currentThread().isInterrupted()) {
+                    if (pgConnection.getNotifications(0).length > 0) {
+                        refresh();
+                    }
+                }
+            } catch (SQLException e) {
+                System.out.println("Exchange rate listener disconnected: " + e.getMessage());
+            }
+            try {
+                Thread.sleep(RECONNECT_DELAY_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * The current snapshot. It is loaded, and the listener started, on the first lookup.
+     */
+    private static final class Snapshot {
+        private static volatile Map<String, BigDecimal> rates = initial();
+
+        private static Map<String, BigDecimal> initial() {
+            if (DaoFactory.isInMemory()) {
+                return Map.of();
+            }
+            Map<String, BigDecimal> rates = load();
+            Thread listener = new Thread(ExchangeRates::listen, "exchange-rate-listener");
+            listener.setDaemon(true);
+            listener.start();
+            return rates == null ? Map.of() : rates;
+        }
+    }
+
+    private static final class Settings {
+        private static final Properties properties = load();
+
+        private static Properties load() {
+            Properties properties = new Properties();
+            try (InputStream inputStream = ExchangeRates.class.getClassLoader().getResourceAsStream("postgreSQL/database.properties")) {
+                properties.load(inputStream);
+            } catch (IOException e) {
+                System.out.println("Error reading database properties file");
+                e.printStackTrace();
+            }
+            return properties;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package org.valoshka.cleverBank.dao;
+
+import org.valoshka.cleverBank.metrics.Counter;
+import org.valoshka.cleverBank.metrics.Metrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * Sub-balances of hot accounts, the accounts listed in "database.hotAccounts", such as the settlement
+ * and fee accounts of the bank that receive a large share of all transfers.
+ * <p>
+ * The balance of a hot account is split over up to "database.hotAccounts.shards" rows of "account_shard".
+ * A credit adds to a random shard and only locks that row, so concurrent credits to the same account don't
+ * queue on its "BankAccount" row. A debit takes a shard that covers the amount, skipping the shards other
+ * postings hold; if no single shard covers it, all shards are locked and swept into one.
+ * A posting that changes several hot accounts changes them in account number order, so credits and sweeps,
+ * which wait for the shards they lock, take them in one global order and can't deadlock.
+ * The balance of every account is its "BankAccount" balance plus the sum of its shards, see {@link #totalBalanceSql(String)};
+ * accounts that are not hot simply have no shards.
+ * <p>
+ * The in-memory storage engine updates balances without row locks, so no account is hot there.
+ */
+public final class HotAccounts {
+
+    private static final Counter sweepCounter = Metrics.counter("hotAccounts.sweeps");
+
+    private static final String CREDIT_SQL = "INSERT INTO account_shard (account_number, shard, balance) VALUES (?, ?, ?) " +
+            "ON CONFLICT (account_number, shard) DO UPDATE SET balance = account_shard.balance + EXCLUDED.balance";
+
+    /**
+     * Debits the richest shard that covers the amount and isn't locked by another posting.
+     * Parameters: amount, account, amount, amount.
+     */
+    private static final String DEBIT_SQL = "UPDATE account_shard SET balance = balance - ? " +
+            "WHERE (account_number, shard) = (SELECT account_number, shard FROM account_shard " +
+            "WHERE account_number = ? AND balance >= ? ORDER BY balance DESC LIMIT 1 FOR UPDATE SKIP LOCKED) " +
+            "AND balance >= ?";
+
+    private static final String LOCK_BASE_SQL = "SELECT balance FROM BankAccount WHERE account_number = ? FOR NO KEY UPDATE";
+
+    private static final String LOCK_SHARDS_SQL = "SELECT shard, balance FROM account_shard WHERE account_number = ? " +
+            "ORDER BY shard FOR UPDATE";
+
+    private static final String CLEAR_BASE_SQL = "UPDATE BankAccount SET balance = 0 WHERE account_number = ?";
+
+    private static final String CLEAR_SHARDS_SQL = "UPDATE account_shard SET balance = 0 WHERE account_number = ? AND shard = ANY (?)";
+
+    static {
+        ConnectionManager.prepareOnConnect(DEBIT_SQL);
+    }
+
+    private HotAccounts() {
+    }
+
+    /**
+     * @param accountNumber The account number.
+     * @return True if the account's balance is split into shards.
+     */
+    public static boolean isHot(String accountNumber) {
+        return Settings.accounts.contains(accountNumber);
+    }
+
+    /**
+     * @return The number of shards of a hot account.
+     */
+    public static int getShards() {
+        return Settings.shards;
+    }
+
+    /**
+     * Builds the SQL expression of the balance of an account: its "BankAccount" balance plus its shards.
+     *
+     * @param alias The alias of the "BankAccount" table in the query.
+     * @return The SQL expression.
+     */
+    static String totalBalanceSql(String alias) {
+        return "(" + alias + ".balance + COALESCE((SELECT SUM(s.balance) FROM account_shard s " +
+                "WHERE s.account_number = " + alias + ".account_number), 0))";
+    }
+
+    /**
+     * Adds money to a random shard of a hot account, creating the shard on its first credit.
+     *
+     * @param connection    The connection of the database transaction.
+     * @param accountNumber The account number.
+     * @param amount        The amount to add.
+     * @throws SQLException If a database access error occurs.
+     */
+    static void credit(Connection connection, String accountNumber, BigDecimal amount) throws SQLException {
+        credit(connection, accountNumber, ThreadLocalRandom.current().nextInt(Settings.shards), amount);
+    }
+
+    private static void credit(Connection connection, String accountNumber, int shard, BigDecimal amount) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(CREDIT_SQL)) {
+            preparedStatement.setString(1, accountNumber);
+            preparedStatement.setInt(2, shard);
+            preparedStatement.setBigDecimal(3, amount);
+            preparedStatement.executeUpdate();
+        }
+    }
+
+    /**
+     * Takes money from the shards of a hot account. A shard that covers the amount is debited alone;
+     * otherwise the account row and all shards are locked, and what is left after the debit is moved into shard 0.
+     *
+     * @param connection    The connection of the database transaction.
+     * @param accountNumber The account number.
+     * @param amount        The amount to take.
+     * @return True if the debit applied, false if the balance of the account does not cover the amount.
+     * @throws SQLException If a database access error occurs.
+     */
+    static boolean debit(Connection connection, String accountNumber, BigDecimal amount) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(DEBIT_SQL)) {
+            preparedStatement.setBigDecimal(1, amount);
+            preparedStatement.setString(2, accountNumber);
+            preparedStatement.setBigDecimal(3, amount);
+            preparedStatement.setBigDecimal(4, amount);
+            if (preparedStatement.executeUpdate() > 0) {
+                return true;
+            }
+        }
+        return sweep(connection, accountNumber, amount);
+    }
+
+    private static boolean sweep(Connection connection, String accountNumber, BigDecimal amount) throws SQLException {
+        sweepCounter.increment();
+        BigDecimal total;
+        try (PreparedStatement preparedStatement = connection.prepareStatement(LOCK_BASE_SQL)) {
+            preparedStatement.setString(1, accountNumber);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                if (!resultSet.next()) {
+                    return false;
+                }
+                total = resultSet.getBigDecimal("balance");
+            }
+        }
+        List<Integer> shards = new ArrayList<>();
+        try (PreparedStatement preparedStatement = connection.prepareStatement(LOCK_SHARDS_SQL)) {
+            preparedStatement.setString(1, accountNumber);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    shards.add(resultSet.getInt("shard"));
+                    total = total.add(resultSet.getBigDecimal("balance"));
+                }
+            }
+        }
+        if (total.compareTo(amount) < 0) {
+            return false;
+        }
+
+        try (PreparedStatement preparedStatement = connection.prepareStatement(CLEAR_BASE_SQL)) {
+            preparedStatement.setString(1, accountNumber);
+            preparedStatement.executeUpdate();
+        }
+        try (PreparedStatement preparedStatement = connection.prepareStatement(CLEAR_SHARDS_SQL)) {
+            preparedStatement.setString(1, accountNumber);
+            preparedStatement.setArray(2, connection.createArrayOf("smallint", shards.toArray()));
+            preparedStatement.executeUpdate();
+        }
+        credit(connection, accountNumber, 0, total.subtract(amount));
+        return true;
+    }
+
+    private static final class Settings {
+        private static final Properties properties = load();
+        private static final int shards = Math.max(1, Integer.parseInt(property("database.hotAccounts.shards", "8")));
+        private static final Set<String> accounts = DaoFactory.isInMemory()
+                ? Set.of()
+                : Arrays.stream(property("database.hotAccounts", "").split(","))
+                .map(String::trim)
+                .filter(accountNumber -> !accountNumber.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+
+        private static String property(String key, String defaultValue) {
+            return System.getProperty(key, properties.getProperty(key, defaultValue)).trim();
+        }
+
+        private static Properties load() {
+            Properties properties = new Properties();
+            try (InputStream inputStream = HotAccounts.class.getClassLoader().getResourceAsStream("postgreSQL/database.properties")) {
+                properties.load(inputStream);
+            } catch (IOException e) {
+                System.out.println("Error reading database properties file");
+                e.printStackTrace();
+            }
+            return properties;
+        }
+    }
+}
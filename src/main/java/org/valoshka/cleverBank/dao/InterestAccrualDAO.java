@@ -0,0 +1,242 @@
+package org.valoshka.cleverBank.dao;
+
+import org.valoshka.cleverBank.dao.cache.AccountCache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Data Access Object (DAO) for monthly interest accrual, applied one range of account numbers at a time.
+ * <p>
+ * Every accrued account gets a row in "interest_accrual" for the period in the same database transaction as its
+ * balance update and its DEPOSIT, so a range can be run again after a failure and skips what was already accrued.
+ */
+public class InterestAccrualDAO {
+    private static final Properties properties = new Properties();
+
+    private static final String OPEN_RUN_SQL = "INSERT INTO interest_accrual_run (period, monthly_rate, started_at) " +
+            "VALUES (?, ?, ?) ON CONFLICT (period) DO NOTHING";
+
+    private static final String RUN_SQL = "SELECT monthly_rate, finished_at FROM interest_accrual_run WHERE period = ?";
+
+    private static final String FINISH_RUN_SQL = "UPDATE interest_accrual_run SET finished_at = ? WHERE period = ?";
+
+    private static final String NEXT_BOUNDARY_SQL = "SELECT account_number FROM BankAccount WHERE account_number > ? " +
+            "ORDER BY account_number OFFSET ? LIMIT 1";
+
+    /**
+     * Locks the positive balances of a range that weren't accrued for the period yet, adds the rounded interest
+     * and marks the accounts as accrued.
+     * Parameters: rate, after, up to, up to, period, period.
+     */
+    private static final String ACCRUE_SQL = "WITH due AS (" +
+            "SELECT account_number, ROUND(" + HotAccounts.totalBalanceSql("ba") + " * ?, 2) AS interest FROM BankAccount ba " +
+            "WHERE account_number > ? AND (?::varchar IS NULL OR account_number <= ?) AND " + HotAccounts.totalBalanceSql("ba") + " > 0 " +
+            "AND NOT EXISTS (SELECT 1 FROM interest_accrual a WHERE a.period = ? AND a.account_number = ba.account_number) " +
+            "ORDER BY account_number FOR UPDATE" +
+            "), accrued AS (" +
+            "UPDATE BankAccount b SET balance = b.balance + d.interest FROM due d " +
+            "WHERE b.account_number = d.account_number AND d.interest > 0 " +
+            "RETURNING b.account_number, d.interest, b.currency" +
+            "), marked AS (" +
+            "INSERT INTO interest_accrual (period, account_number, amount) " +
+            "SELECT ?, account_number, interest FROM accrued" +
+            ") " +
+            "SELECT account_number, interest, currency FROM accrued";
+
+    private static final String DEPOSIT_SQL = "INSERT INTO Transaction (trans_date_time, trans_type, trans_status, source_account, target_account, amount, currency) " +
+            "VALUES (?, 'DEPOSIT'::transaction_type, 'COMPLETED'::transaction_status, ?, ?, ?, ?)";
+
+    private static final String CHUNK_SQL = "INSERT INTO interest_accrual_chunk (period, after_account, last_account, accounts, millis, finished_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+
+    /**
+     * Constructs a new InterestAccrualDAO and loads database properties from a configuration file.
+     */
+    public InterestAccrualDAO() {
+        try (InputStream inputStream = ClientDAO.class.getClassLoader().getResourceAsStream("postgreSQL/database.properties")) {
+            properties.load(inputStream);
+        } catch (IOException e) {
+            System.out.println("Error reading database properties file");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Borrows a connection from the pooled data source for the loaded properties.
+     *
+     * @return A pooled database connection; closing it returns it to the pool.
+     * @throws SQLException           If a database access error occurs.
+     * @throws ClassNotFoundException If the database driver class is not found.
+     */
+    public Connection getConnection() throws SQLException, ClassNotFoundException {
+        return ConnectionManager.getDataSource(properties).getConnection();
+    }
+
+    /**
+     * Starts the run of a period, or continues an unfinished one with the rate it was started with.
+     *
+     * @param period      The accrued month.
+     * @param monthlyRate The monthly rate as a fraction, e.g. 0.0025 for 0.25 %.
+     * @return The rate of the run, or an empty Optional if the period is already accrued or the run can't be read.
+     */
+    public Optional<BigDecimal> openRun(YearMonth period, BigDecimal monthlyRate) {
+        try (Connection connection = getConnection()) {
+            try (PreparedStatement preparedStatement = connection.prepareStatement(OPEN_RUN_SQL)) {
+                preparedStatement.setString(1, period.toString());
+                preparedStatement.setBigDecimal(2, monthlyRate);
+                preparedStatement.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
+                preparedStatement.executeUpdate();
+            }
+            try (PreparedStatement preparedStatement = connection.prepareStatement(RUN_SQL)) {
+                preparedStatement.setString(1, period.toString());
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    if (!resultSet.next()) {
+                        return Optional.empty();
+                    }
+                    if (resultSet.getTimestamp("finished_at") != null) {
+                        System.out.println("Interest for " + period + " is already accrued");
+                        return Optional.empty();
+                    }
+                    return Optional.of(resultSet.getBigDecimal("monthly_rate"));
+                }
+            }
+        } catch (SQLException | ClassNotFoundException e) {
+            e.printStackTrace();
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Marks the run of a period as finished, so running it again does nothing.
+     *
+     * @param period The accrued month.
+     */
+    public void finishRun(YearMonth period) {
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(FINISH_RUN_SQL)) {
+            preparedStatement.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
+            preparedStatement.setString(2, period.toString());
+            preparedStatement.executeUpdate();
+        } catch (SQLException | ClassNotFoundException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Finds the end of the range of account numbers that starts after a key, by skipping along the primary key.
+     *
+     * @param after     The key before the range, "" for the first range.
+     * @param chunkSize The number of accounts in a range.
+     * @return The last account number of the range, or an empty Optional if fewer accounts are left.
+     * @throws SQLException           If a database access error occurs.
+     * @throws ClassNotFoundException If the database driver class is not found.
+     */
+    public Optional<String> nextBoundary(String after, int chunkSize) throws SQLException, ClassNotFoundException {
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(NEXT_BOUNDARY_SQL)) {
+            preparedStatement.setString(1, after);
+            preparedStatement.setInt(2, chunkSize - 1);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return resultSet.next() ? Optional.of(resultSet.getString("account_number")) : Optional.empty();
+            }
+        }
+    }
+
+    /**
+     * Accrues the interest of a period on a range of accounts in one database transaction: a set-based update of
+     * the balances, then one batch of DEPOSIT transactions for the accounts it returned.
+     *
+     * @param period The accrued month.
+     * @param rate   The monthly rate as a fraction.
+     * @param after  The key before the range.
+     * @param upTo   The last account number of the range, or null for all accounts after the key.
+     * @return The number of accounts accrued, or -1 if the range failed and was rolled back.
+     */
+    public int accrueChunk(YearMonth period, BigDecimal rate, String after, String upTo) {
+        try (Connection connection = getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                List<String> accountNumbers = new ArrayList<>();
+                LocalDateTime now = LocalDateTime.now();
+                try (PreparedStatement accrue = connection.prepareStatement(ACCRUE_SQL);
+                     PreparedStatement deposit = connection.prepareStatement(DEPOSIT_SQL)) {
+                    accrue.setBigDecimal(1, rate);
+                    accrue.setString(2, after);
+                    accrue.setObject(3, upTo, Types.VARCHAR);
+                    accrue.setObject(4, upTo, Types.VARCHAR);
+                    accrue.setString(5, period.toString());
+                    accrue.setString(6, period.toString());
+                    try (ResultSet resultSet = accrue.executeQuery()) {
+                        while (resultSet.next()) {
+                            String accountNumber = resultSet.getString("account_number");
+                            accountNumbers.add(accountNumber);
+                            deposit.setTimestamp(1, Timestamp.valueOf(now));
+                            deposit.setString(2, accountNumber);
+                            deposit.setString(3, accountNumber);
+                            deposit.setBigDecimal(4, resultSet.getBigDecimal("interest"));
+                            deposit.setString(5, resultSet.getString("currency"));
+                            deposit.addBatch();
+                        }
+                    }
+                    if (!accountNumbers.isEmpty()) {
+                        deposit.executeBatch();
+                    }
+                }
+                connection.commit();
+
+                AccountCache cache = AccountCache.getInstance(properties);
+                for (String accountNumber : accountNumbers) {
+                    cache.invalidate(accountNumber);
+                }
+                return accountNumbers.size();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException | ClassNotFoundException e) {
+            e.printStackTrace();
+            System.out.println("Interest accrual failed for accounts after '" + after + "' up to '" + upTo + "'");
+        }
+        return -1;
+    }
+
+    /**
+     * Records the timing of one range in "interest_accrual_chunk".
+     *
+     * @param period   The accrued month.
+     * @param after    The key before the range.
+     * @param upTo     The last account number of the range, or null for all accounts after the key.
+     * @param accounts The number of accounts accrued, or -1 if the range failed.
+     * @param millis   The time the range took.
+     */
+    public void recordChunk(YearMonth period, String after, String upTo, int accounts, long millis) {
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(CHUNK_SQL)) {
+            preparedStatement.setString(1, period.toString());
+            preparedStatement.setString(2, after);
+            preparedStatement.setString(3, upTo);
+            preparedStatement.setInt(4, accounts);
+            preparedStatement.setLong(5, millis);
+            preparedStatement.setTimestamp(6, Timestamp.valueOf(LocalDateTime.now()));
+            preparedStatement.executeUpdate();
+        } catch (SQLException | ClassNotFoundException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -1,17 +1,165 @@
 package org.valoshka.cleverBank.dao;
 
+import org.valoshka.cleverBank.concurrency.Deadline;
+import org.valoshka.cleverBank.dao.cache.AccountCache;
+import org.valoshka.cleverBank.dao.utils.CursorStream;
+import org.valoshka.cleverBank.enums.TransactionStatus;
+import org.valoshka.cleverBank.enums.TransactionType;
+import org.valoshka.cleverBank.metrics.LatencyHistogram;
+import org.valoshka.cleverBank.metrics.Metrics;
+import org.valoshka.cleverBank.models.AccountMovement;
+import org.valoshka.cleverBank.models.BankAccount;
+import org.valoshka.cleverBank.models.Money;
 import org.valoshka.cleverBank.models.Transaction;
+import org.valoshka.cleverBank.models.TransactionFilter;
+import org.valoshka.cleverBank.models.TransferRequest;
+import org.valoshka.cleverBank.models.TransferResult;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.math.BigDecimal;
 import java.sql.*;
-import java.util.Properties;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Stream;
 
 /**
  * Data Access Object (DAO) for managing transactions in the database.
  */
 public class TransactionDAO {
     private static final Properties properties = new Properties();
+    private static final LatencyHistogram saveTimer = Metrics.histogram("TransactionDAO.save");
+    private static final LatencyHistogram postTimer = Metrics.histogram("TransactionDAO.post");
+    private static final LatencyHistogram transferTimer = Metrics.histogram("TransactionDAO.transfer");
+    private static final LatencyHistogram transferBatchTimer = Metrics.histogram("TransactionDAO.transferBatch");
+    private static final LatencyHistogram streamMovementsTimer = Metrics.histogram("TransactionDAO.streamMovements");
+    private static final LatencyHistogram historyTimer = Metrics.histogram("TransactionDAO.history");
+    private static final LatencyHistogram balanceAtTimer = Metrics.histogram("TransactionDAO.balanceAt");
+    private static final LatencyHistogram transferStatementTimer = Metrics.histogram("transfer.statement");
+    private static final LatencyHistogram transferCommitTimer = Metrics.histogram("transfer.commit");
+    private static final LatencyHistogram batchLoadTimer = Metrics.histogram("transferBatch.load");
+    private static final LatencyHistogram batchUpdateTimer = Metrics.histogram("transferBatch.updateBalances");
+    private static final LatencyHistogram batchLedgerTimer = Metrics.histogram("transferBatch.ledger");
+    private static final LatencyHistogram batchCommitTimer = Metrics.histogram("transferBatch.commit");
+
+    private static final String INSERT_SQL = "INSERT INTO Transaction (trans_date_time, trans_type, trans_status, source_account, target_account, amount, currency, " +
+            "converted_amount, converted_currency, exchange_rate) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String LOCK_ACCOUNTS_SQL = "SELECT ba.account_number, ba.bank_name, " +
+            HotAccounts.totalBalanceSql("ba") + " AS balance, ba.currency FROM BankAccount ba " +
+            "WHERE ba.account_number = ANY (?) ORDER BY ba.account_number FOR UPDATE";
+
+    /**
+     * Reads hot accounts without locking their rows; their postings only lock the shards they change.
+     */
+    private static final String LOAD_HOT_ACCOUNTS_SQL = "SELECT ba.account_number, ba.bank_name, " +
+            HotAccounts.totalBalanceSql("ba") + " AS balance, ba.currency FROM BankAccount ba " +
+            "WHERE ba.account_number = ANY (?)";
+
+    private static final String ADD_TO_BALANCE_SQL = "UPDATE BankAccount SET balance = balance + ? WHERE account_number = ?";
+
+    private static final String MOVEMENTS_SQL = "SELECT trans_id, trans_date_time, trans_type::text AS trans_type, " +
+            "counterparty, amount, currency FROM account_movement " +
+            "WHERE account_number = ? AND trans_date_time >= ? AND trans_date_time < ? " +
+            "ORDER BY trans_date_time, trans_id";
+
+    private static final String HISTORY_COLUMNS = "SELECT trans_id, trans_date_time, trans_type::text AS trans_type, " +
+            "trans_status::text AS trans_status, source_account, target_account, amount, currency, " +
+            "converted_amount, converted_currency, exchange_rate FROM Transaction ";
+
+    private static final String HISTORY_CONDITIONS = "AND (trans_date_time, trans_id) < (COALESCE(?, 'infinity'::timestamp), ?) " +
+            "AND trans_date_time >= COALESCE(?, '-infinity'::timestamp) " +
+            "AND (?::transaction_type IS NULL OR trans_type = ?::transaction_type) " +
+            "AND (?::transaction_status IS NULL OR trans_status = ?::transaction_status) " +
+            "ORDER BY trans_date_time DESC, trans_id DESC LIMIT ?";
+
+    /**
+     * The newest transactions of an account before a key, from both sides: each side is one backward range scan
+     * of its covering index, stopped after a page, and the two are merged. Deposits and withdrawals,
+     * whose source is their target, are only read from the source side.
+     * Parameters: account and {@link #HISTORY_CONDITIONS} for each side, then the page size.
+     */
+    private static final String HISTORY_SQL = "(" + HISTORY_COLUMNS +
+            "WHERE source_account = ? " + HISTORY_CONDITIONS +
+            ") UNION ALL (" + HISTORY_COLUMNS +
+            "WHERE target_account = ? AND source_account <> target_account " + HISTORY_CONDITIONS +
+            ") ORDER BY trans_date_time DESC, trans_id DESC LIMIT ?";
+
+    /**
+     * The newest daily balance before the day of the moment plus the movements since, or without one,
+     * the current balance minus the movements since the moment. Movements in another currency than the account's
+     * are left out, as they are from account statements.
+     * Parameters: moment, day of the moment, moment, account.
+     */
+    private static final String BALANCE_AT_SQL = "SELECT COALESCE(" +
+            "(SELECT d.closing_balance + COALESCE((SELECT SUM(m.amount) FROM account_movement m " +
+            "WHERE m.account_number = d.account_number AND m.currency = ba.currency " +
+            "AND m.trans_date_time >= d.day + 1 AND m.trans_date_time < ?), 0) " +
+            "FROM daily_balance d WHERE d.account_number = ba.account_number AND d.day < ? ORDER BY d.day DESC LIMIT 1), " +
+            HotAccounts.totalBalanceSql("ba") + " - COALESCE((SELECT SUM(m.amount) FROM account_movement m " +
+            "WHERE m.account_number = ba.account_number AND m.currency = ba.currency AND m.trans_date_time >= ?), 0)) AS balance, ba.currency " +
+            "FROM BankAccount ba WHERE ba.account_number = ?";
+
+    /**
+     * Changes the balance of an account by a signed amount and records the ledger row in one statement.
+     * The change only applies if the account holds the currency of the amount and the balance stays
+     * non-negative; the outer query reads the account as it was before, so a posting that did not apply
+     * still returns the currency and no transaction id.
+     * Parameters: signed amount, account, currency, signed amount, date, type, amount, account.
+     */
+    private static final String POSTING_SQL = "WITH posted AS (" +
+            "UPDATE BankAccount SET balance = balance + ? " +
+            "WHERE account_number = ? AND currency = ? AND balance + ? >= 0 " +
+            "RETURNING account_number, balance, currency" +
+            "), ledger AS (" +
+            "INSERT INTO Transaction (trans_date_time, trans_type, trans_status, source_account, target_account, amount, currency) " +
+            "SELECT ?, ?::transaction_type, 'COMPLETED'::transaction_status, account_number, account_number, ?, currency " +
+            "FROM posted " +
+            "RETURNING trans_id" +
+            ") " +
+            "SELECT ba.bank_name, ba.currency, p.balance AS new_balance, l.trans_id " +
+            "FROM BankAccount ba LEFT JOIN posted p ON true LEFT JOIN ledger l ON true " +
+            "WHERE ba.account_number = ?";
+
+    /**
+     * Debits the source, credits the target and records the ledger row in one statement.
+     * Both accounts are locked first in account number order so that opposite transfers can't deadlock;
+     * the debit only applies while the balance covers the amount and both accounts hold the currency of the amount,
+     * and the credit only if the debit applied. Between accounts in different currencies nothing is written,
+     * and the currencies are returned without a transaction id.
+     * Parameters: source, target, amount, source, amount, currency, amount, target, date, amount, currency,
+     * source, target, source, target.
+     */
+    private static final String TRANSFER_SQL = "WITH locked AS (" +
+            "SELECT account_number, bank_name, currency FROM BankAccount " +
+            "WHERE account_number IN (?, ?) ORDER BY account_number FOR UPDATE" +
+            "), debit AS (" +
+            "UPDATE BankAccount SET balance = balance - ? " +
+            "WHERE account_number = ? AND balance >= ? AND (SELECT COUNT(*) FROM locked WHERE currency = ?) = 2 " +
+            "RETURNING balance" +
+            "), credit AS (" +
+            "UPDATE BankAccount SET balance = balance + ? " +
+            "WHERE account_number = ? AND EXISTS (SELECT 1 FROM debit) " +
+            "RETURNING balance" +
+            "), ledger AS (" +
+            "INSERT INTO Transaction (trans_date_time, trans_type, trans_status, source_account, target_account, amount, currency) " +
+            "SELECT ?, 'TRANSFER'::transaction_type, " +
+            "CASE WHEN EXISTS (SELECT 1 FROM credit) THEN 'COMPLETED' ELSE 'FAILED' END::transaction_status, " +
+            "s.account_number, t.account_number, ?, ? " +
+            "FROM locked s JOIN locked t ON s.account_number = ? AND t.account_number = ? " +
+            "WHERE s.currency = t.currency " +
+            "RETURNING trans_id, trans_status" +
+            ") " +
+            "SELECT l.trans_id, l.trans_status::text AS trans_status, " +
+            "(SELECT balance FROM debit) AS source_balance, (SELECT balance FROM credit) AS target_balance, " +
+            "s.bank_name AS source_bank, t.bank_name AS target_bank, " +
+            "s.currency AS source_currency, t.currency AS target_currency " +
+            "FROM locked s JOIN locked t ON s.account_number = ? AND t.account_number = ? LEFT JOIN ledger l ON true";
+
+    static {
+        ConnectionManager.prepareOnConnect(POSTING_SQL, TRANSFER_SQL, ADD_TO_BALANCE_SQL, HISTORY_SQL);
+    }
 
     /**
      * Constructs a new TransactionDAO and loads database properties from a configuration file.
@@ -26,14 +174,14 @@ public class TransactionDAO {
     }
 
     /**
-     * Gets a database connection using the loaded properties.
+     * Borrows a connection from the pooled data source for the loaded properties.
      *
-     * @return A database connection.
+     * @return A pooled database connection; closing it returns it to the pool.
      * @throws SQLException           If a database access error occurs.
      * @throws ClassNotFoundException If the database driver class is not found.
      */
     public Connection getConnection() throws SQLException, ClassNotFoundException {
-        return ConnectionManager.getConnection(properties);
+        return ConnectionManager.getDataSource(properties).getConnection();
     }
 
     /**
@@ -43,17 +191,13 @@ public class TransactionDAO {
      * @return The generated transaction ID, or -1 if the save operation failed.
      */
     public int save(Transaction transaction) {
-        String sql = "INSERT INTO Transaction (trans_date_time, trans_type, trans_status, source_account, target_account, amount, currency) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?)";
+        return saveTimer.time(() -> insert(transaction));
+    }
+
+    private int insert(Transaction transaction) {
         try (Connection connection = getConnection();
-             PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            preparedStatement.setTimestamp(1, Timestamp.valueOf(transaction.getDateTimeOfTransaction()));
-            preparedStatement.setObject(2, transaction.getTransactionType(), Types.OTHER);
-            preparedStatement.setObject(3, transaction.getTransactionStatus(), Types.OTHER);
-            preparedStatement.setString(4, transaction.getSourceAccount().getAccountNumber());
-            preparedStatement.setString(5, transaction.getTargetAccount().getAccountNumber());
-            preparedStatement.setDouble(6, transaction.getAmount());
-            preparedStatement.setString(7, transaction.getCurrency().getCurrencyCode());
+             PreparedStatement preparedStatement = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            bindTransaction(preparedStatement, transaction);
 
             int rowsAffected = preparedStatement.executeUpdate();
             if (rowsAffected == 0) {
@@ -73,9 +217,662 @@ public class TransactionDAO {
         }
     }
 
+    /**
+     * Deposits money to or withdraws it from an account in a single database transaction.
+     * The balance update and the ledger row are written by one statement and committed together.
+     * A posting that can't apply, because the currencies differ or the balance does not cover a withdrawal,
+     * changes nothing and is not recorded. Postings to a {@link HotAccounts hot account} change one of its shards instead.
+     *
+     * @param accountNumber   The account number.
+     * @param amount          The amount to deposit or withdraw, in the currency of the account.
+     * @param transactionType DEPOSIT or WITHDRAWAL.
+     * @return The recorded COMPLETED transaction with the new balance; a FAILED transaction with the account
+     * without balance if the posting did not apply; or an empty Optional if the account doesn't exist
+     * or the posting could not be committed.
+     */
+    public Optional<Transaction> post(String accountNumber, Money amount, TransactionType transactionType) {
+        return postTimer.time(() -> applyPosting(accountNumber, amount, transactionType));
+    }
+
+    private Optional<Transaction> applyPosting(String accountNumber, Money amount, TransactionType transactionType) {
+        if (HotAccounts.isHot(accountNumber)) {
+            return applyStepwise(TransferRequest.posting(transactionType, accountNumber, amount));
+        }
+        LocalDateTime dateTime = LocalDateTime.now();
+        BigDecimal delta = transactionType == TransactionType.WITHDRAWAL
+                ? amount.toBigDecimal().negate()
+                : amount.toBigDecimal();
+
+        try (Connection connection = getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement preparedStatement = connection.prepareStatement(POSTING_SQL);
+                 Deadline.Watch watch = Deadline.watch(preparedStatement)) {
+                preparedStatement.setBigDecimal(1, delta);
+                preparedStatement.setString(2, accountNumber);
+                preparedStatement.setString(3, amount.getCurrency().getCurrencyCode());
+                preparedStatement.setBigDecimal(4, delta);
+                preparedStatement.setTimestamp(5, Timestamp.valueOf(dateTime));
+                preparedStatement.setString(6, transactionType.name());
+                preparedStatement.setBigDecimal(7, amount.toBigDecimal());
+                preparedStatement.setString(8, accountNumber);
+
+                Optional<Transaction> result = Optional.empty();
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    if (resultSet.next()) {
+                        result = Optional.of(createPostingFromResultSet(resultSet, accountNumber, amount,
+                                transactionType, dateTime));
+                    }
+                }
+                Deadline.checkpoint();
+                connection.commit();
+                return result;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException | ClassNotFoundException e) {
+            e.printStackTrace();
+            return Optional.empty();
+        } finally {
+            AccountCache.getInstance(properties).invalidate(accountNumber);
+        }
+    }
+
+    private Transaction createPostingFromResultSet(ResultSet resultSet, String accountNumber, Money amount,
+                                                   TransactionType transactionType, LocalDateTime dateTime) throws SQLException {
+        BankAccount account = new BankAccount();
+        account.setAccountNumber(accountNumber);
+        account.setBankName(resultSet.getString("bank_name"));
+        account.setCurrency(Currency.getInstance(resultSet.getString("currency")));
+
+        Transaction transaction = new Transaction(transactionType, account, account, amount);
+        transaction.setDateTimeOfTransaction(dateTime);
+        int transactionId = resultSet.getInt("trans_id");
+        if (resultSet.wasNull()) {
+            transaction.setTransactionStatus(TransactionStatus.FAILED);
+        } else {
+            account.setBalance(Money.of(resultSet.getBigDecimal("new_balance"), account.getCurrency()));
+            transaction.setTransactionStatus(TransactionStatus.COMPLETED);
+            transaction.setId(transactionId);
+        }
+        return transaction;
+    }
 
+    /**
+     * Transfers money between two accounts in a single database transaction.
+     * The debit, the credit and the ledger row are written by one statement and committed together,
+     * so the whole transfer costs one connection and two round trips. A transfer that the source balance
+     * does not cover is still recorded, with the FAILED status, and leaves both balances untouched.
+     * A transfer from or to a {@link HotAccounts hot account} changes one of its shards instead of its row.
+     * A transfer between accounts in different currencies credits the amount converted at the rate of
+     * {@link ExchangeRates}; the statement leaves it alone and it is applied step by step instead,
+     * which costs one more round trip.
+     *
+     * @param sourceAccountNumber The account number of the source account.
+     * @param targetAccountNumber The account number of the target account.
+     * @param amount              The amount of money to transfer, in the currency of the source account.
+     * @return The recorded transaction with the new balances of both accounts, or an empty Optional
+     * if either account doesn't exist or the transfer could not be committed.
+     */
+    public Optional<Transaction> transfer(String sourceAccountNumber, String targetAccountNumber, Money amount) {
+        return transferTimer.time(() -> applyTransfer(sourceAccountNumber, targetAccountNumber, amount));
+    }
 
+    private Optional<Transaction> applyTransfer(String sourceAccountNumber, String targetAccountNumber, Money amount) {
+        if (HotAccounts.isHot(sourceAccountNumber) || HotAccounts.isHot(targetAccountNumber)) {
+            return applyStepwise(new TransferRequest(sourceAccountNumber, targetAccountNumber, amount));
+        }
+        LocalDateTime dateTime = LocalDateTime.now();
+        BigDecimal value = amount.toBigDecimal();
 
+        try (Connection connection = getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement preparedStatement = connection.prepareStatement(TRANSFER_SQL);
+                 Deadline.Watch watch = Deadline.watch(preparedStatement)) {
+                preparedStatement.setString(1, sourceAccountNumber);
+                preparedStatement.setString(2, targetAccountNumber);
+                preparedStatement.setBigDecimal(3, value);
+                preparedStatement.setString(4, sourceAccountNumber);
+                preparedStatement.setBigDecimal(5, value);
+                preparedStatement.setString(6, amount.getCurrency().getCurrencyCode());
+                preparedStatement.setBigDecimal(7, value);
+                preparedStatement.setString(8, targetAccountNumber);
+                preparedStatement.setTimestamp(9, Timestamp.valueOf(dateTime));
+                preparedStatement.setBigDecimal(10, value);
+                preparedStatement.setString(11, amount.getCurrency().getCurrencyCode());
+                preparedStatement.setString(12, sourceAccountNumber);
+                preparedStatement.setString(13, targetAccountNumber);
+                preparedStatement.setString(14, sourceAccountNumber);
+                preparedStatement.setString(15, targetAccountNumber);
 
+                Optional<Transaction> result = Optional.empty();
+                boolean crossCurrency = false;
+                long phase = Metrics.start();
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    if (resultSet.next()) {
+                        crossCurrency = !resultSet.getString("source_currency").equals(resultSet.getString("target_currency"));
+                        if (!crossCurrency) {
+                            result = Optional.of(createTransferFromResultSet(resultSet, sourceAccountNumber,
+                                    targetAccountNumber, amount, dateTime));
+                        }
+                    }
+                }
+                transferStatementTimer.recordSince(phase);
 
+                if (crossCurrency) {
+                    connection.rollback();
+                } else {
+                    phase = Metrics.start();
+                    Deadline.checkpoint();
+                    connection.commit();
+                    transferCommitTimer.recordSince(phase);
+                    return result;
+                }
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException | ClassNotFoundException e) {
+            e.printStackTrace();
+            return Optional.empty();
+        } finally {
+            AccountCache cache = AccountCache.getInstance(properties);
+            cache.invalidate(sourceAccountNumber);
+            cache.invalidate(targetAccountNumber);
+        }
+        return applyStepwise(new TransferRequest(sourceAccountNumber, targetAccountNumber, amount));
+    }
+
+    private Transaction createTransferFromResultSet(ResultSet resultSet, String sourceAccountNumber,
+                                                    String targetAccountNumber, Money amount,
+                                                    LocalDateTime dateTime) throws SQLException {
+        BankAccount sourceAccount = new BankAccount();
+        sourceAccount.setAccountNumber(sourceAccountNumber);
+        sourceAccount.setBankName(resultSet.getString("source_bank"));
+        sourceAccount.setCurrency(Currency.getInstance(resultSet.getString("source_currency")));
+
+        BankAccount targetAccount = new BankAccount();
+        targetAccount.setAccountNumber(targetAccountNumber);
+        targetAccount.setBankName(resultSet.getString("target_bank"));
+        targetAccount.setCurrency(Currency.getInstance(resultSet.getString("target_currency")));
+
+        TransactionStatus status = TransactionStatus.valueOf(resultSet.getString("trans_status"));
+        if (status == TransactionStatus.COMPLETED) {
+            sourceAccount.setBalance(Money.of(resultSet.getBigDecimal("source_balance"), sourceAccount.getCurrency()));
+            targetAccount.setBalance(Money.of(resultSet.getBigDecimal("target_balance"), targetAccount.getCurrency()));
+        }
+
+        Transaction transaction = new Transaction(TransactionType.TRANSFER, sourceAccount, targetAccount,
+                amount);
+        transaction.setDateTimeOfTransaction(dateTime);
+        transaction.setTransactionStatus(status);
+        transaction.setId(resultSet.getInt("trans_id"));
+        return transaction;
+    }
+
+    /**
+     * Applies one posting that involves a hot account or two currencies with the steps of {@link #transferBatch(List)}:
+     * other accounts are locked, hot accounts are only read, and the balance changes go to their shards.
+     *
+     * @return The recorded transaction, a FAILED deposit or withdrawal that was not recorded,
+     * or an empty Optional if an account doesn't exist or the posting could not be committed.
+     */
+    private Optional<Transaction> applyStepwise(TransferRequest request) {
+        Set<String> accountNumbers = new TreeSet<>(List.of(request.getSourceAccountNumber(), request.getTargetAccountNumber()));
+        try (Connection connection = getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                Map<String, BankAccount> accounts = lockAccounts(connection, accountNumbers);
+                if (!accounts.keySet().containsAll(accountNumbers)) {
+                    connection.rollback();
+                    return Optional.empty();
+                }
+                Map<String, Money> balances = new HashMap<>();
+                accounts.forEach((number, account) -> balances.put(number, account.getBalance()));
+
+                LocalDateTime dateTime = LocalDateTime.now();
+                List<Transaction> ledger = new ArrayList<>();
+                TransferResult result = request.getTransactionType() == TransactionType.TRANSFER
+                        ? applyTransfer(request, accounts, balances, dateTime, ledger)
+                        : applyPosting(request, accounts, balances, dateTime, ledger);
+                Transaction transaction = result.getTransaction();
+                if (transaction == null) {
+                    BankAccount account = accounts.get(request.getTargetAccountNumber());
+                    transaction = new Transaction(request.getTransactionType(), account, account, request.getAmount());
+                    transaction.setDateTimeOfTransaction(dateTime);
+                    transaction.setTransactionStatus(TransactionStatus.FAILED);
+                }
+
+                updateBalances(connection, accounts, balances);
+                insertBatch(connection, ledger);
+                Deadline.checkpoint();
+                connection.commit();
+                return Optional.of(transaction);
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException | ClassNotFoundException e) {
+            e.printStackTrace();
+            return Optional.empty();
+        } finally {
+            AccountCache cache = AccountCache.getInstance(properties);
+            accountNumbers.forEach(cache::invalidate);
+        }
+    }
+
+    /**
+     * Applies a batch of transfers, deposits and withdrawals in a single database transaction.
+     * <p>
+     * All accounts of the batch are locked and loaded with one query, the postings are validated in order
+     * against the running balances, and then every touched account gets exactly one balance update while
+     * all ledger rows are inserted with one JDBC batch. A posting that fails validation does not affect
+     * the others; a failed transfer between existing accounts is recorded with the FAILED status,
+     * a failed deposit or withdrawal is not recorded, like in {@link #post(String, Money, TransactionType)}.
+     * Hot accounts are read without locking their rows and their balance changes go to their shards, see {@link HotAccounts};
+     * a debit that a concurrent posting to the same hot account got to first fails the whole batch.
+     * If the batch can't be committed, every posting gets a {@link TransferResult#databaseError} result.
+     *
+     * @param requests The postings to apply, in order.
+     * @return One result per request, in the order of the requests.
+     */
+    public List<TransferResult> transferBatch(List<TransferRequest> requests) {
+        return transferBatchTimer.time(() -> applyBatch(requests));
+    }
+
+    private List<TransferResult> applyBatch(List<TransferRequest> requests) {
+        TransferResult[] results = new TransferResult[requests.size()];
+        Set<String> accountNumbers = new TreeSet<>();
+        for (int i = 0; i < requests.size(); i++) {
+            TransferRequest request = requests.get(i);
+            if (request.getAmount().isNegative()) {
+                results[i] = TransferResult.failed(request, "Amount should be more than zero", null);
+            } else if (request.getTransactionType() == TransactionType.TRANSFER
+                    && request.getSourceAccountNumber().equals(request.getTargetAccountNumber())) {
+                results[i] = TransferResult.failed(request, "Source and target accounts should be different", null);
+            } else {
+                accountNumbers.add(request.getSourceAccountNumber());
+                accountNumbers.add(request.getTargetAccountNumber());
+            }
+        }
+        if (accountNumbers.isEmpty()) {
+            return Arrays.asList(results);
+        }
+
+        try (Connection connection = getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                long phase = Metrics.start();
+                Map<String, BankAccount> accounts = lockAccounts(connection, accountNumbers);
+                batchLoadTimer.recordSince(phase);
+                Map<String, Money> balances = new HashMap<>();
+                accounts.forEach((number, account) -> balances.put(number, account.getBalance()));
+
+                LocalDateTime dateTime = LocalDateTime.now();
+                List<Transaction> ledger = new ArrayList<>();
+                for (int i = 0; i < results.length; i++) {
+                    if (results[i] == null) {
+                        TransferRequest request = requests.get(i);
+                        results[i] = request.getTransactionType() == TransactionType.TRANSFER
+                                ? applyTransfer(request, accounts, balances, dateTime, ledger)
+                                : applyPosting(request, accounts, balances, dateTime, ledger);
+                    }
+                }
+
+                phase = Metrics.start();
+                updateBalances(connection, accounts, balances);
+                batchUpdateTimer.recordSince(phase);
+
+                phase = Metrics.start();
+                insertBatch(connection, ledger);
+                batchLedgerTimer.recordSince(phase);
+
+                phase = Metrics.start();
+                Deadline.checkpoint();
+                connection.commit();
+                batchCommitTimer.recordSince(phase);
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException | ClassNotFoundException e) {
+            e.printStackTrace();
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] == null || results[i].getStatus() == TransactionStatus.COMPLETED
+                        || results[i].getTransaction() != null) {
+                    results[i] = TransferResult.databaseError(requests.get(i), e.getMessage());
+                }
+            }
+        } finally {
+            AccountCache cache = AccountCache.getInstance(properties);
+            accountNumbers.forEach(cache::invalidate);
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Locks and loads the accounts; hot accounts are loaded without a lock.
+     *
+     * @return The accounts in account number order, the order their balances are updated in.
+     */
+    private Map<String, BankAccount> lockAccounts(Connection connection, Set<String> accountNumbers) throws SQLException {
+        Map<String, BankAccount> accounts = new TreeMap<>();
+        Set<String> hotAccountNumbers = new TreeSet<>();
+        Set<String> lockedAccountNumbers = new TreeSet<>();
+        for (String accountNumber : accountNumbers) {
+            (HotAccounts.isHot(accountNumber) ? hotAccountNumbers : lockedAccountNumbers).add(accountNumber);
+        }
+        if (!lockedAccountNumbers.isEmpty()) {
+            loadAccounts(connection, LOCK_ACCOUNTS_SQL, lockedAccountNumbers, accounts);
+        }
+        if (!hotAccountNumbers.isEmpty()) {
+            loadAccounts(connection, LOAD_HOT_ACCOUNTS_SQL, hotAccountNumbers, accounts);
+        }
+        return accounts;
+    }
+
+    private void loadAccounts(Connection connection, String sql, Set<String> accountNumbers,
+                              Map<String, BankAccount> accounts) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(sql);
+             Deadline.Watch watch = Deadline.watch(preparedStatement)) {
+            preparedStatement.setArray(1, connection.createArrayOf("varchar", accountNumbers.toArray()));
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    BankAccount account = new BankAccount();
+                    account.setAccountNumber(resultSet.getString("account_number"));
+                    account.setBankName(resultSet.getString("bank_name"));
+                    account.setCurrency(Currency.getInstance(resultSet.getString("currency")));
+                    account.setBalance(Money.of(resultSet.getBigDecimal("balance"), account.getCurrency()));
+                    accounts.put(account.getAccountNumber(), account);
+                }
+            }
+        }
+    }
+
+    private TransferResult applyTransfer(TransferRequest request, Map<String, BankAccount> accounts,
+                                         Map<String, Money> balances, LocalDateTime dateTime,
+                                         List<Transaction> ledger) {
+        BankAccount sourceAccount = accounts.get(request.getSourceAccountNumber());
+        BankAccount targetAccount = accounts.get(request.getTargetAccountNumber());
+        if (sourceAccount == null || targetAccount == null) {
+            return TransferResult.failed(request, "Account doesn't exist", null);
+        }
+
+        Money amount = request.getAmount();
+        Transaction transaction = new Transaction(TransactionType.TRANSFER, sourceAccount, targetAccount,
+                amount);
+        transaction.setDateTimeOfTransaction(dateTime);
+        ledger.add(transaction);
+
+        Money sourceBalance = balances.get(sourceAccount.getAccountNumber());
+        if (!sourceBalance.isSameCurrency(amount)) {
+            transaction.setTransactionStatus(TransactionStatus.FAILED);
+            return TransferResult.failed(request, "Currency mismatch", transaction);
+        }
+        if (!targetAccount.getCurrency().equals(amount.getCurrency())) {
+            Optional<BigDecimal> rate = ExchangeRates.rate(amount.getCurrency(), targetAccount.getCurrency());
+            if (rate.isEmpty()) {
+                transaction.setTransactionStatus(TransactionStatus.FAILED);
+                return TransferResult.failed(request, "No exchange rate", transaction);
+            }
+            transaction.setExchangeRate(rate.get());
+            transaction.setConvertedAmount(amount.convertTo(targetAccount.getCurrency(), rate.get()));
+        }
+        if (sourceBalance.compareTo(amount) < 0) {
+            transaction.setTransactionStatus(TransactionStatus.FAILED);
+            return TransferResult.failed(request, "Insufficient funds", transaction);
+        }
+        balances.put(sourceAccount.getAccountNumber(), sourceBalance.minus(amount));
+        balances.merge(targetAccount.getAccountNumber(), transaction.getCreditedAmount(), Money::plus);
+        transaction.setTransactionStatus(TransactionStatus.COMPLETED);
+        return TransferResult.completed(request, transaction);
+    }
+
+    private TransferResult applyPosting(TransferRequest request, Map<String, BankAccount> accounts,
+                                        Map<String, Money> balances, LocalDateTime dateTime,
+                                        List<Transaction> ledger) {
+        BankAccount account = accounts.get(request.getTargetAccountNumber());
+        if (account == null) {
+            return TransferResult.failed(request, "Account doesn't exist", null);
+        }
+
+        Money amount = request.getAmount();
+        Money balance = balances.get(account.getAccountNumber());
+        if (!balance.isSameCurrency(amount)) {
+            return TransferResult.failed(request, "Currency mismatch", null);
+        }
+        Money newBalance = request.getTransactionType() == TransactionType.WITHDRAWAL
+                ? balance.minus(amount)
+                : balance.plus(amount);
+        if (newBalance.isNegative()) {
+            return TransferResult.failed(request, "Insufficient funds", null);
+        }
+        balances.put(account.getAccountNumber(), newBalance);
+
+        Transaction transaction = new Transaction(request.getTransactionType(), account, account, amount);
+        transaction.setDateTimeOfTransaction(dateTime);
+        transaction.setTransactionStatus(TransactionStatus.COMPLETED);
+        ledger.add(transaction);
+        return TransferResult.completed(request, transaction);
+    }
+
+    /**
+     * Writes one balance change per account whose balance changed, however many postings touched it.
+     * The change of a hot account goes to its shards, and the hot accounts are changed one by one in account number
+     * order: a posting only waits for a shard, on a credit or a sweep, once it is done with the shards of all accounts
+     * before it, so concurrent postings take shard locks in one global order and can't deadlock. Debits skip
+     * the shards other postings hold and never wait.
+     */
+    private void updateBalances(Connection connection, Map<String, BankAccount> accounts,
+                                Map<String, Money> balances) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(ADD_TO_BALANCE_SQL);
+             Deadline.Watch watch = Deadline.watch(preparedStatement)) {
+            for (BankAccount account : accounts.values()) {
+                Money balance = balances.get(account.getAccountNumber());
+                if (balance.equals(account.getBalance())) {
+                    continue;
+                }
+                BigDecimal change = balance.minus(account.getBalance()).toBigDecimal();
+                if (!HotAccounts.isHot(account.getAccountNumber())) {
+                    preparedStatement.setBigDecimal(1, change);
+                    preparedStatement.setString(2, account.getAccountNumber());
+                    preparedStatement.addBatch();
+                } else if (change.signum() > 0) {
+                    HotAccounts.credit(connection, account.getAccountNumber(), change);
+                } else if (!HotAccounts.debit(connection, account.getAccountNumber(), change.negate())) {
+                    throw new SQLException("Insufficient funds on hot account " + account.getAccountNumber());
+                }
+                account.setBalance(balance);
+            }
+            preparedStatement.executeBatch();
+        }
+    }
+
+    private void insertBatch(Connection connection, List<Transaction> ledger) throws SQLException {
+        if (ledger.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement preparedStatement = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS);
+             Deadline.Watch watch = Deadline.watch(preparedStatement)) {
+            for (Transaction transaction : ledger) {
+                bindTransaction(preparedStatement, transaction);
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+            try (ResultSet generatedKeys = preparedStatement.getGeneratedKeys()) {
+                for (Transaction transaction : ledger) {
+                    if (!generatedKeys.next()) {
+                        throw new SQLException("Creating transactions failed, not all IDs obtained.");
+                    }
+                    transaction.setId(generatedKeys.getInt(1));
+                }
+            }
+        }
+    }
+
+    /**
+     * Streams the completed movements of an account in a period, oldest first, through a server-side cursor.
+     * Each side of the account is read from its own (account, trans_date_time) index.
+     *
+     * @param accountNumber The account number.
+     * @param from          The start of the period, inclusive.
+     * @param to            The end of the period, exclusive.
+     * @return A lazily fetched stream of movements that must be closed, or an empty stream if the query can't be started.
+     */
+    public Stream<AccountMovement> streamMovements(String accountNumber, LocalDateTime from, LocalDateTime to) {
+        return streamMovementsTimer.time(() -> openMovementStream(accountNumber, from, to));
+    }
+
+    private Stream<AccountMovement> openMovementStream(String accountNumber, LocalDateTime from, LocalDateTime to) {
+        try {
+            return CursorStream.open(getConnection(), MOVEMENTS_SQL, CursorStream.fetchSize(properties),
+                    TransactionDAO::createMovementFromResultSet, accountNumber, from, to);
+        } catch (SQLException | ClassNotFoundException e) {
+            e.printStackTrace();
+        }
+        return Stream.empty();
+    }
+
+    private static AccountMovement createMovementFromResultSet(ResultSet resultSet) throws SQLException {
+        Currency currency = Currency.getInstance(resultSet.getString("currency"));
+        return new AccountMovement(
+                resultSet.getInt("trans_id"),
+                resultSet.getTimestamp("trans_date_time").toLocalDateTime(),
+                TransactionType.valueOf(resultSet.getString("trans_type")),
+                resultSet.getString("counterparty"),
+                Money.of(resultSet.getBigDecimal("amount"), currency));
+    }
+
+    /**
+     * Retrieves a page of the transactions of an account, COMPLETED and FAILED, from either side, newest first,
+     * using keyset pagination on (trans_date_time, trans_id). Both sides are read from covering indexes
+     * with index-only scans that stop after a page, so a page costs the same however long the history is.
+     * Criteria of the filter are checked in the index too; a rare type or status may scan further for a full page.
+     * The accounts of the returned transactions only carry their numbers.
+     *
+     * @param accountNumber The account number.
+     * @param filter        The criteria the transactions must match.
+     * @param afterKey      The {@link #historyKey(Transaction) key} of the last transaction of the previous page,
+     *                      or null for the first page.
+     * @param limit         The maximum number of transactions to return.
+     * @return The matching transactions older than {@code afterKey}, newest first.
+     */
+    public List<Transaction> history(String accountNumber, TransactionFilter filter, String afterKey, int limit) {
+        return historyTimer.time(() -> loadHistory(accountNumber, filter, afterKey, limit));
+    }
+
+    private List<Transaction> loadHistory(String accountNumber, TransactionFilter filter, String afterKey, int limit) {
+        List<Transaction> transactions = new ArrayList<>();
+        LocalDateTime beforeTime = filter.getTo();
+        int beforeId = Integer.MIN_VALUE;
+        if (afterKey != null) {
+            int separator = afterKey.lastIndexOf('/');
+            beforeTime = LocalDateTime.parse(afterKey.substring(0, separator));
+            beforeId = Integer.parseInt(afterKey.substring(separator + 1));
+        }
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(HISTORY_SQL)) {
+            int index = 1;
+            for (int side = 0; side < 2; side++) {
+                preparedStatement.setString(index++, accountNumber);
+                preparedStatement.setTimestamp(index++, beforeTime == null ? null : Timestamp.valueOf(beforeTime));
+                preparedStatement.setInt(index++, beforeId);
+                preparedStatement.setTimestamp(index++, filter.getFrom() == null ? null : Timestamp.valueOf(filter.getFrom()));
+                preparedStatement.setObject(index++, filter.getTransactionType(), Types.OTHER);
+                preparedStatement.setObject(index++, filter.getTransactionType(), Types.OTHER);
+                preparedStatement.setObject(index++, filter.getTransactionStatus(), Types.OTHER);
+                preparedStatement.setObject(index++, filter.getTransactionStatus(), Types.OTHER);
+                preparedStatement.setInt(index++, limit);
+            }
+            preparedStatement.setInt(index, limit);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    transactions.add(createHistoryFromResultSet(resultSet));
+                }
+            }
+        } catch (SQLException | ClassNotFoundException e) {
+            e.printStackTrace();
+        }
+        return transactions;
+    }
+
+    /**
+     * @param transaction A transaction of a history page.
+     * @return The key to pass to {@link #history(String, TransactionFilter, String, int)} for the page after it.
+     */
+    public static String historyKey(Transaction transaction) {
+        return transaction.getDateTimeOfTransaction() + "/" + transaction.getId();
+    }
+
+    private static Transaction createHistoryFromResultSet(ResultSet resultSet) throws SQLException {
+        BankAccount sourceAccount = new BankAccount();
+        sourceAccount.setAccountNumber(resultSet.getString("source_account"));
+        BankAccount targetAccount = new BankAccount();
+        targetAccount.setAccountNumber(resultSet.getString("target_account"));
+
+        Transaction transaction = new Transaction(TransactionType.valueOf(resultSet.getString("trans_type")),
+                sourceAccount, targetAccount,
+                Money.of(resultSet.getBigDecimal("amount"), Currency.getInstance(resultSet.getString("currency"))));
+        transaction.setId(resultSet.getInt("trans_id"));
+        transaction.setDateTimeOfTransaction(resultSet.getTimestamp("trans_date_time").toLocalDateTime());
+        transaction.setTransactionStatus(TransactionStatus.valueOf(resultSet.getString("trans_status")));
+        if (resultSet.getBigDecimal("converted_amount") != null) {
+            transaction.setConvertedAmount(Money.of(resultSet.getBigDecimal("converted_amount"),
+                    Currency.getInstance(resultSet.getString("converted_currency"))));
+            transaction.setExchangeRate(resultSet.getBigDecimal("exchange_rate"));
+        }
+        return transaction;
+    }
+
+    /**
+     * Computes the balance an account had at a moment from the nearest end-of-day balance before it and the
+     * movements of the partial day, so only the days since the last closed day are read.
+     * Before the first end-of-day balance of the account it falls back to the current balance minus the movements since.
+     *
+     * @param accountNumber The account number.
+     * @param at            The moment; movements at this very time are not included yet.
+     * @return The balance, or an empty Optional if the account doesn't exist.
+     */
+    public Optional<Money> balanceAt(String accountNumber, LocalDateTime at) {
+        return balanceAtTimer.time(() -> computeBalanceAt(accountNumber, at));
+    }
+
+    private Optional<Money> computeBalanceAt(String accountNumber, LocalDateTime at) {
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(BALANCE_AT_SQL)) {
+            preparedStatement.setTimestamp(1, Timestamp.valueOf(at));
+            preparedStatement.setDate(2, java.sql.Date.valueOf(at.toLocalDate()));
+            preparedStatement.setTimestamp(3, Timestamp.valueOf(at));
+            preparedStatement.setString(4, accountNumber);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                if (resultSet.next()) {
+                    return Optional.of(Money.of(resultSet.getBigDecimal("balance"),
+                            Currency.getInstance(resultSet.getString("currency"))));
+                }
+            }
+        } catch (SQLException | ClassNotFoundException e) {
+            e.printStackTrace();
+        }
+        return Optional.empty();
+    }
+
+    private void bindTransaction(PreparedStatement preparedStatement, Transaction transaction) throws SQLException {
+        preparedStatement.setTimestamp(1, Timestamp.valueOf(transaction.getDateTimeOfTransaction()));
+        preparedStatement.setObject(2, transaction.getTransactionType(), Types.OTHER);
+        preparedStatement.setObject(3, transaction.getTransactionStatus(), Types.OTHER);
+        preparedStatement.setString(4, transaction.getSourceAccount().getAccountNumber());
+        preparedStatement.setString(5, transaction.getTargetAccount().getAccountNumber());
+        preparedStatement.setBigDecimal(6, transaction.getAmount().toBigDecimal());
+        preparedStatement.setString(7, transaction.getCurrency().getCurrencyCode());
+        Money convertedAmount = transaction.getConvertedAmount();
+        if (convertedAmount == null) {
+            preparedStatement.setNull(8, Types.NUMERIC);
+            preparedStatement.setNull(9, Types.VARCHAR);
+            preparedStatement.setNull(10, Types.NUMERIC);
+        } else {
+            preparedStatement.setBigDecimal(8, convertedAmount.toBigDecimal());
+            preparedStatement.setString(9, convertedAmount.getCurrency().getCurrencyCode());
+            preparedStatement.setBigDecimal(10, transaction.getExchangeRate());
+        }
+    }
 }
@@ -0,0 +1,183 @@
+package org.valoshka.cleverBank.dao.bulk;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.valoshka.cleverBank.dao.ConnectionManager;
+import org.valoshka.cleverBank.dao.cache.AccountCache;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+/**
+ * Imports clients and bank accounts from CSV files with PostgreSQL COPY.
+ * <p>
+ * Each file is streamed with {@code COPY ... FROM STDIN} into a temporary staging table and then merged
+ * into the Client or BankAccount table with one set-based statement, all in one transaction. Rows that
+ * already exist are skipped, just like {@code ClientDAO.save} and {@code BankAccountDAO.save} skip them.
+ * The files are never held in memory, so the heap use doesn't depend on the file size.
+ * <p>
+ * Clients file columns: {@code name}.
+ * Accounts file columns: {@code account_number,bank_name,created_at,balance,currency,owner_name};
+ * empty created_at and balance default to today and 0, owners are resolved by name and created if missing.
+ * Both files have a header line.
+ */
+public class BulkLoader {
+
+    private static final long PROGRESS_EVERY_ROWS = 100_000;
+
+    private static final String CREATE_CLIENT_STAGING_SQL = "CREATE TEMP TABLE staging_client (name VARCHAR(60)) ON COMMIT DROP";
+    private static final String COPY_CLIENTS_SQL = "COPY staging_client (name) FROM STDIN WITH (FORMAT csv, HEADER true)";
+    private static final String MERGE_CLIENTS_SQL = "INSERT INTO Client (name) " +
+            "SELECT DISTINCT name FROM staging_client WHERE name IS NOT NULL " +
+            "ON CONFLICT (name) DO NOTHING";
+
+    private static final String CREATE_ACCOUNT_STAGING_SQL = "CREATE TEMP TABLE staging_account (" +
+            "account_number VARCHAR(40), bank_name VARCHAR(50), created_at DATE, " +
+            "balance DECIMAL(18, 2), currency VARCHAR(3), owner_name VARCHAR(60)) ON COMMIT DROP";
+    private static final String COPY_ACCOUNTS_SQL = "COPY staging_account " +
+            "(account_number, bank_name, created_at, balance, currency, owner_name) " +
+            "FROM STDIN WITH (FORMAT csv, HEADER true)";
+    private static final String MERGE_OWNERS_SQL = "INSERT INTO Client (name) " +
+            "SELECT DISTINCT owner_name FROM staging_account WHERE owner_name IS NOT NULL " +
+            "ON CONFLICT (name) DO NOTHING";
+    private static final String MERGE_ACCOUNTS_SQL = "INSERT INTO BankAccount " +
+            "(account_number, bank_name, created_at, balance, currency, owner_id) " +
+            "SELECT DISTINCT ON (s.account_number) s.account_number, s.bank_name, " +
+            "COALESCE(s.created_at, CURRENT_DATE), COALESCE(s.balance, 0), s.currency, c.client_id " +
+            "FROM staging_account s JOIN Client c ON c.name = s.owner_name " +
+            "WHERE s.account_number IS NOT NULL " +
+            "ORDER BY s.account_number " +
+            "ON CONFLICT (account_number) DO NOTHING";
+
+    private static final Properties properties = new Properties();
+
+    /**
+     * Constructs a new BulkLoader and loads database properties.
+     */
+    public BulkLoader() {
+        try (InputStream inputStream = BulkLoader.class.getClassLoader().getResourceAsStream("postgreSQL/database.properties")) {
+            properties.load(inputStream);
+        } catch (IOException e) {
+            System.out.println("Error reading database properties file");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Imports clients from a CSV file.
+     *
+     * @param csvFile The clients file.
+     * @return The number of clients inserted, or -1 if the import failed and was rolled back.
+     */
+    public long importClients(Path csvFile) {
+        return importFile(csvFile, "clients", "staging_client", CREATE_CLIENT_STAGING_SQL, COPY_CLIENTS_SQL, MERGE_CLIENTS_SQL);
+    }
+
+    /**
+     * Imports bank accounts from a CSV file.
+     *
+     * @param csvFile The accounts file.
+     * @return The number of accounts inserted, or -1 if the import failed and was rolled back.
+     */
+    public long importAccounts(Path csvFile) {
+        long inserted = importFile(csvFile, "accounts", "staging_account", CREATE_ACCOUNT_STAGING_SQL, COPY_ACCOUNTS_SQL,
+                MERGE_OWNERS_SQL, MERGE_ACCOUNTS_SQL);
+        AccountCache.getInstance(properties).clear();
+        return inserted;
+    }
+
+    /**
+     * Streams a file into a staging table and runs the merge statements in one transaction.
+     *
+     * @return The number of rows inserted by the last merge statement, or -1 on failure.
+     */
+    private long importFile(Path csvFile, String entity, String stagingTable, String createStagingSql, String copySql, String... mergeSqls) {
+        long start = System.nanoTime();
+        try (Connection connection = ConnectionManager.getDataSource(properties).getConnection()) {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement();
+                 Reader reader = new ProgressReader(Files.newBufferedReader(csvFile, StandardCharsets.UTF_8), entity, start)) {
+                statement.execute(createStagingSql);
+
+                CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+                long copied = copyManager.copyIn(copySql, reader);
+                System.out.printf("Copied %d %s into staging in %.1f s (%.0f rows/s)%n",
+                        copied, entity, seconds(start), copied / Math.max(seconds(start), 0.001));
+
+                statement.execute("ANALYZE " + stagingTable);
+                long inserted = 0;
+                for (String mergeSql : mergeSqls) {
+                    inserted = statement.executeUpdate(mergeSql);
+                }
+                connection.commit();
+                System.out.printf("Imported %d new %s (%d skipped as existing or duplicate) in %.1f s%n",
+                        inserted, entity, copied - inserted, seconds(start));
+                return inserted;
+            } catch (SQLException | IOException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException | IOException | ClassNotFoundException e) {
+            e.printStackTrace();
+            System.err.println("Error importing " + entity + " from " + csvFile);
+            return -1;
+        }
+    }
+
+    private static double seconds(long start) {
+        return (System.nanoTime() - start) / 1_000_000_000.0;
+    }
+
+    /**
+     * Counts the lines passing through and prints the progress every {@link #PROGRESS_EVERY_ROWS} rows.
+     */
+    private static final class ProgressReader extends FilterReader {
+        private final String entity;
+        private final long start;
+        private long rows;
+        private long nextReport = PROGRESS_EVERY_ROWS;
+
+        private ProgressReader(Reader in, String entity, long start) {
+            super(in);
+            this.entity = entity;
+            this.start = start;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int c = super.read();
+            if (c == '\n') {
+                countRow();
+            }
+            return c;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            for (int i = offset; i < offset + read; i++) {
+                if (buffer[i] == '\n') {
+                    countRow();
+                }
+            }
+            return read;
+        }
+
+        private void countRow() {
+            rows++;
+            if (rows >= nextReport) {
+                nextReport += PROGRESS_EVERY_ROWS;
+                System.out.printf("... %d %s read (%.0f rows/s)%n", rows, entity, rows / Math.max(seconds(start), 0.001));
+            }
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package org.valoshka.cleverBank.dao.cache;
+
+import org.valoshka.cleverBank.models.BankAccount;
+import org.valoshka.cleverBank.models.Client;
+import org.valoshka.cleverBank.models.Money;
+
+import java.time.LocalDate;
+import java.util.Currency;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An optional read-through cache of bank accounts keyed by account number.
+ * <p>
+ * The cache is split into segments, each an access-ordered {@link LinkedHashMap} that evicts its least
+ * recently used entry once the segment is full. Entries expire after a time-to-live. Entries are stored
+ * as immutable snapshots and every hit returns a fresh {@link BankAccount}, so callers can't corrupt the
+ * cache by changing the account they got. Owners are shared {@link Client} instances keyed by client id,
+ * see {@link #owner(int, String)}.
+ * <p>
+ * Every write to an account must call {@link #invalidate(String)}. A value loaded from the database is
+ * only cached if its segment saw no invalidation since the load began, see {@link #stamp(String)}.
+ * When "database.cache.accounts.enabled" is false all methods are no-ops.
+ */
+public class AccountCache {
+
+    private static final int SEGMENTS = 16;
+
+    private static volatile AccountCache instance;
+
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final Map<Integer, Client> owners;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private AccountCache(Properties properties) {
+        this.enabled = Boolean.parseBoolean(properties.getProperty("database.cache.accounts.enabled", "false").trim());
+        int maxSize = Integer.parseInt(properties.getProperty("database.cache.accounts.maxSize", "10000").trim());
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(
+                Long.parseLong(properties.getProperty("database.cache.accounts.ttlSeconds", "60").trim()));
+        int segmentSize = Math.max(1, maxSize / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+        this.owners = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Client> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the cache shared by all DAOs, creating it from the given properties on first use.
+     *
+     * @param properties The database properties with the "database.cache.accounts.*" settings.
+     * @return The shared account cache.
+     */
+    public static AccountCache getInstance(Properties properties) {
+        AccountCache cache = instance;
+        if (cache == null) {
+            synchronized (AccountCache.class) {
+                cache = instance;
+                if (cache == null) {
+                    cache = new AccountCache(properties);
+                    instance = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Returns whether caching is switched on.
+     *
+     * @return True if the cache is enabled.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Looks up an account.
+     *
+     * @param accountNumber The account number.
+     * @return A copy of the cached account, or an empty Optional on a miss.
+     */
+    public Optional<BankAccount> get(String accountNumber) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        Entry entry = segmentOf(accountNumber).get(accountNumber);
+        if (entry == null || System.nanoTime() - entry.loadedAt > ttlNanos) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(entry.toBankAccount());
+    }
+
+    /**
+     * Returns the invalidation stamp of the segment of an account. Take it before loading the account
+     * from the database and pass it to {@link #put(BankAccount, long)}.
+     *
+     * @param accountNumber The account number.
+     * @return The current stamp.
+     */
+    public long stamp(String accountNumber) {
+        return enabled ? segmentOf(accountNumber).stamp() : 0;
+    }
+
+    /**
+     * Caches an account loaded from the database, unless it was invalidated since the load began.
+     *
+     * @param bankAccount The loaded account.
+     * @param stamp       The stamp taken before the load.
+     */
+    public void put(BankAccount bankAccount, long stamp) {
+        if (!enabled) {
+            return;
+        }
+        Segment segment = segmentOf(bankAccount.getAccountNumber());
+        Client owner = bankAccount.getOwner();
+        if (owner != null) {
+            owner = owner(owner.getId(), owner.getName());
+        }
+        segment.put(new Entry(bankAccount, owner), stamp);
+    }
+
+    /**
+     * Removes an account after it was changed in the database.
+     *
+     * @param accountNumber The account number.
+     */
+    public void invalidate(String accountNumber) {
+        if (enabled) {
+            segmentOf(accountNumber).invalidate(accountNumber);
+        }
+    }
+
+    /**
+     * Removes all accounts, e.g. after a client was renamed or deleted.
+     */
+    public void clear() {
+        if (enabled) {
+            for (Segment segment : segments) {
+                segment.clear();
+            }
+            synchronized (owners) {
+                owners.clear();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache.
+     *
+     * @return The hit count.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups that had to go to the database.
+     *
+     * @return The miss count, including expired entries.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of entries evicted because their segment was full.
+     *
+     * @return The eviction count.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "AccountCache[enabled=" + enabled + ", hits=" + getHits() + ", misses=" + getMisses()
+                + ", evictions=" + getEvictions() + "]";
+    }
+
+    /**
+     * Returns the owner to set on an account loaded from the database: the instance shared by all accounts
+     * of the client while the cache is enabled, a new one otherwise. An owner carries the client id and name
+     * only; its account list is not filled, as it would collect a copy of the account on every load.
+     * Shared owners are bounded like the entries; an evicted owner stays referenced by its cached accounts
+     * until they are evicted too.
+     *
+     * @param clientId   The client id.
+     * @param clientName The client name.
+     * @return The owner.
+     */
+    public Client owner(int clientId, String clientName) {
+        if (!enabled) {
+            Client owner = new Client(clientName);
+            owner.setId(clientId);
+            return owner;
+        }
+        synchronized (owners) {
+            Client owner = owners.get(clientId);
+            if (owner == null) {
+                owner = new Client(clientName);
+                owner.setId(clientId);
+                owners.put(clientId, owner);
+            }
+            return owner;
+        }
+    }
+
+    private Segment segmentOf(String accountNumber) {
+        int hash = accountNumber.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private final class Segment {
+        private final Map<String, Entry> entries;
+        private final int capacity;
+        private long stamp;
+
+        private Segment(int capacity) {
+            this.capacity = capacity;
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    if (size() > Segment.this.capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized Entry get(String accountNumber) {
+            return entries.get(accountNumber);
+        }
+
+        synchronized long stamp() {
+            return stamp;
+        }
+
+        synchronized void put(Entry entry, long loadStamp) {
+            if (loadStamp == stamp) {
+                entries.put(entry.accountNumber, entry);
+            }
+        }
+
+        synchronized void invalidate(String accountNumber) {
+            stamp++;
+            entries.remove(accountNumber);
+        }
+
+        synchronized void clear() {
+            stamp++;
+            entries.clear();
+        }
+    }
+
+    /**
+     * An immutable snapshot of a cached account.
+     */
+    private static final class Entry {
+        private final String accountNumber;
+        private final String bankName;
+        private final LocalDate createdAt;
+        private final Money balance;
+        private final Currency currency;
+        private final Client owner;
+        private final long loadedAt = System.nanoTime();
+
+        private Entry(BankAccount bankAccount, Client owner) {
+            this.accountNumber = bankAccount.getAccountNumber();
+            this.bankName = bankAccount.getBankName();
+            this.createdAt = bankAccount.getCreatedAt();
+            this.balance = bankAccount.getBalance();
+            this.currency = bankAccount.getCurrency();
+            this.owner = owner;
+        }
+
+        /**
+         * Copies the snapshot into a new account owned by the shared owner; like an account loaded by the DAO,
+         * it is not added to the owner's account list, see {@link AccountCache#owner(int, String)}.
+         */
+        private BankAccount toBankAccount() {
+            BankAccount bankAccount = new BankAccount();
+            bankAccount.setAccountNumber(accountNumber);
+            bankAccount.setBankName(bankName);
+            bankAccount.setCreatedAt(createdAt);
+            bankAccount.setBalance(balance);
+            bankAccount.setCurrency(currency);
+            bankAccount.setOwner(owner);
+            return bankAccount;
+        }
+    }
+}
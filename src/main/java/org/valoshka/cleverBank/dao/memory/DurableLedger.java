@@ -0,0 +1,419 @@
+package org.valoshka.cleverBank.dao.memory;
+
+import org.valoshka.cleverBank.enums.TransactionStatus;
+import org.valoshka.cleverBank.enums.TransactionType;
+import org.valoshka.cleverBank.models.BankAccount;
+import org.valoshka.cleverBank.models.Money;
+import org.valoshka.cleverBank.models.Transaction;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Currency;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Makes the {@link InMemoryLedger} durable without a database server.
+ * <p>
+ * Every change is written to a {@link WriteAheadLog} and forced to the disk before the posting returns;
+ * concurrent postings share their fsyncs. Periodically the log moves on to a new generation file and the balances
+ * are saved to a {@link LedgerSnapshot}, while changes are held back for the moment it takes to copy them.
+ * On startup the latest valid snapshot is loaded and the log files from its generation on are replayed.
+ * Log files of older generations are kept as the transaction archive; only their transactions are read back,
+ * since the snapshot already holds their balance changes.
+ * <p>
+ * Settings: "database.wal.directory" and "database.wal.checkpointIntervalSeconds".
+ */
+public final class DurableLedger implements LedgerLog {
+
+    private static final byte CLIENT_ADDED = 1;
+    private static final byte CLIENT_RENAMED = 2;
+    private static final byte CLIENT_REMOVED = 3;
+    private static final byte ACCOUNT_ADDED = 4;
+    private static final byte ACCOUNT_REMOVED = 5;
+    private static final byte BALANCE_SET = 6;
+    private static final byte TRANSACTION = 7;
+    /**
+     * A deposit or withdrawal with its balance change, so the two are durable together.
+     */
+    private static final byte POSTING = 8;
+
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private static DurableLedger instance;
+
+    private final InMemoryLedger ledger;
+    private final Path directory;
+    private final WriteAheadLog log;
+    private volatile IOException failure;
+    private final ReentrantReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService checkpointer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ledger-checkpoint");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private DurableLedger(InMemoryLedger ledger, Path directory, int generation) throws IOException {
+        this.ledger = ledger;
+        this.directory = directory;
+        this.log = new WriteAheadLog(directory, generation);
+    }
+
+    /**
+     * Recovers the ledger of this JVM from the configured directory and logs every change from now on.
+     * Opening it again returns the same instance.
+     *
+     * @param properties The database properties.
+     * @return The durable ledger.
+     * @throws UncheckedIOException If the directory can't be read or the log can't be opened.
+     */
+    public static synchronized DurableLedger open(Properties properties) {
+        if (instance != null) {
+            return instance;
+        }
+        Path directory = Paths.get(properties.getProperty("database.wal.directory", "data/ledger"));
+        long checkpointIntervalSeconds = Long.parseLong(properties.getProperty("database.wal.checkpointIntervalSeconds", "300"));
+        try {
+            DurableLedger durableLedger = open(InMemoryLedger.getInstance(), directory);
+            durableLedger.checkpointer.scheduleWithFixedDelay(durableLedger::checkpointQuietly,
+                    checkpointIntervalSeconds, checkpointIntervalSeconds, TimeUnit.SECONDS);
+            Runtime.getRuntime().addShutdownHook(new Thread(durableLedger::close, "ledger-shutdown"));
+            instance = durableLedger;
+            return durableLedger;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Opening the ledger in " + directory + " failed", e);
+        }
+    }
+
+    /**
+     * Recovers a ledger from a directory and logs its changes there from now on,
+     * without periodic checkpoints or a shutdown hook.
+     *
+     * @param ledger    An empty ledger.
+     * @param directory The directory of the snapshots and log files; it is created if missing.
+     * @return The durable ledger.
+     * @throws IOException If the directory can't be read or the log can't be opened.
+     */
+    static DurableLedger open(InMemoryLedger ledger, Path directory) throws IOException {
+        Files.createDirectories(directory);
+        int generation = recover(ledger, directory);
+        DurableLedger durableLedger = new DurableLedger(ledger, directory, generation);
+        ledger.attach(durableLedger);
+        return durableLedger;
+    }
+
+    /**
+     * Loads the latest valid snapshot, reads the transactions of the log files before its generation
+     * and replays the log files from its generation on.
+     *
+     * @return The generation to continue appending to.
+     */
+    private static int recover(InMemoryLedger ledger, Path directory) throws IOException {
+        long start = System.nanoTime();
+        int snapshotGeneration = 0;
+        for (Path file : listByGeneration(directory, true)) {
+            try {
+                LedgerSnapshot snapshot = LedgerSnapshot.read(file);
+                snapshot.restore(ledger);
+                snapshotGeneration = snapshot.generation;
+                break;
+            } catch (IOException e) {
+                System.out.println("Skipping unreadable ledger snapshot " + file + ": " + e.getMessage());
+            }
+        }
+
+        int generation = snapshotGeneration;
+        long archived = 0;
+        long records = 0;
+        for (Path file : listByGeneration(directory, false)) {
+            int fileGeneration = WriteAheadLog.generationOf(file);
+            if (fileGeneration < snapshotGeneration) {
+                archived += WriteAheadLog.replay(file, payload -> archive(ledger, payload));
+            } else {
+                records += WriteAheadLog.replay(file, payload -> apply(ledger, payload));
+                generation = fileGeneration;
+            }
+        }
+        System.out.printf("Recovered ledger from %s: %d accounts, %d archived and %d log records replayed in %.1f ms%n",
+                directory, ledger.accounts.size(), archived, records, (System.nanoTime() - start) / 1e6);
+        return generation;
+    }
+
+    /**
+     * @param snapshots True for snapshot files, newest first; false for log files, oldest first.
+     */
+    private static List<Path> listByGeneration(Path directory, boolean snapshots) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(file -> snapshots ? LedgerSnapshot.generationOf(file) >= 0 : WriteAheadLog.generationOf(file) >= 0)
+                    .sorted((a, b) -> snapshots
+                            ? Integer.compare(LedgerSnapshot.generationOf(b), LedgerSnapshot.generationOf(a))
+                            : Integer.compare(WriteAheadLog.generationOf(a), WriteAheadLog.generationOf(b)))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static void apply(InMemoryLedger ledger, ByteBuffer payload) {
+        byte type = payload.get();
+        switch (type) {
+            case CLIENT_ADDED, CLIENT_RENAMED -> ledger.restoreClient(payload.getInt(), WriteAheadLog.getString(payload));
+            case CLIENT_REMOVED -> {
+                InMemoryLedger.ClientRecord client = ledger.clientsById.get(payload.getInt());
+                if (client != null) {
+                    ledger.removeClient(client.name);
+                }
+            }
+            case ACCOUNT_ADDED -> {
+                String accountNumber = WriteAheadLog.getString(payload);
+                String bankName = WriteAheadLog.getString(payload);
+                long createdAt = payload.getLong();
+                Currency currency = Currency.getInstance(WriteAheadLog.getString(payload));
+                int ownerId = payload.getInt();
+                long balance = payload.getLong();
+                ledger.restoreAccount(new InMemoryLedger.AccountRecord(accountNumber, bankName.isEmpty() ? null : bankName,
+                        createdAt == NO_DATE ? null : LocalDate.ofEpochDay(createdAt), currency, ownerId, balance));
+            }
+            case ACCOUNT_REMOVED -> ledger.removeAccount(WriteAheadLog.getString(payload));
+            case BALANCE_SET -> {
+                String accountNumber = WriteAheadLog.getString(payload);
+                ledger.setBalance(accountNumber, payload.getLong());
+            }
+            case TRANSACTION, POSTING -> {
+                int id = payload.getInt();
+                ledger.restoreTransaction(id, readTransaction(ledger, payload), type == POSTING);
+            }
+            default -> throw new IllegalStateException("Unknown ledger log record");
+        }
+    }
+
+    /**
+     * Reads back a transaction of a log file older than the snapshot; the rest of the file is already
+     * in the snapshot and is skipped.
+     */
+    private static void archive(InMemoryLedger ledger, ByteBuffer payload) {
+        byte type = payload.get();
+        if (type == TRANSACTION || type == POSTING) {
+            int id = payload.getInt();
+            ledger.restoreArchivedTransaction(id, readTransaction(ledger, payload));
+        }
+    }
+
+    /**
+     * Reads a transaction record from after its id.
+     */
+    private static Transaction readTransaction(InMemoryLedger ledger, ByteBuffer payload) {
+        LocalDateTime dateTime = LocalDateTime.ofEpochSecond(payload.getLong(), payload.getInt(), ZoneOffset.UTC);
+        TransactionType transactionType = TransactionType.valueOf(WriteAheadLog.getString(payload));
+        TransactionStatus status = TransactionStatus.valueOf(WriteAheadLog.getString(payload));
+        BankAccount source = accountOf(ledger, WriteAheadLog.getString(payload));
+        BankAccount target = accountOf(ledger, WriteAheadLog.getString(payload));
+        long amount = payload.getLong();
+        Currency currency = Currency.getInstance(WriteAheadLog.getString(payload));
+
+        Transaction transaction = new Transaction(transactionType, source, target, Money.of(amount, currency));
+        transaction.setDateTimeOfTransaction(dateTime);
+        transaction.setTransactionStatus(status);
+        if (payload.hasRemaining()) {
+            long convertedAmount = payload.getLong();
+            Currency convertedCurrency = Currency.getInstance(WriteAheadLog.getString(payload));
+            transaction.setConvertedAmount(Money.of(convertedAmount, convertedCurrency));
+            transaction.setExchangeRate(new BigDecimal(WriteAheadLog.getString(payload)));
+        }
+        return transaction;
+    }
+
+    private static BankAccount accountOf(InMemoryLedger ledger, String accountNumber) {
+        BankAccount bankAccount = new BankAccount();
+        bankAccount.setAccountNumber(accountNumber);
+        InMemoryLedger.AccountRecord account = ledger.accounts.get(accountNumber);
+        if (account != null) {
+            bankAccount.setBankName(account.bankName);
+            bankAccount.setCurrency(account.currency);
+        }
+        return bankAccount;
+    }
+
+    /**
+     * Holds back checkpoints while a change is applied and logged.
+     *
+     * @throws UncheckedIOException If a log write failed before; the ledger then takes no more changes.
+     */
+    @Override
+    public void enter() {
+        IOException failure = this.failure;
+        if (failure != null) {
+            throw new UncheckedIOException("The ledger log failed; restart to recover from it", failure);
+        }
+        checkpointLock.readLock().lock();
+    }
+
+    @Override
+    public void exit() {
+        checkpointLock.readLock().unlock();
+    }
+
+    @Override
+    public void clientAdded(int id, String name) {
+        ByteBuffer buffer = log.buffer();
+        buffer.put(CLIENT_ADDED).putInt(id);
+        WriteAheadLog.putString(buffer, name);
+        write(buffer);
+    }
+
+    @Override
+    public void clientRenamed(int id, String name) {
+        ByteBuffer buffer = log.buffer();
+        buffer.put(CLIENT_RENAMED).putInt(id);
+        WriteAheadLog.putString(buffer, name);
+        write(buffer);
+    }
+
+    @Override
+    public void clientRemoved(int id) {
+        write(log.buffer().put(CLIENT_REMOVED).putInt(id));
+    }
+
+    @Override
+    public void accountAdded(InMemoryLedger.AccountRecord account) {
+        ByteBuffer buffer = log.buffer();
+        buffer.put(ACCOUNT_ADDED);
+        WriteAheadLog.putString(buffer, account.accountNumber);
+        WriteAheadLog.putString(buffer, account.bankName == null ? "" : account.bankName);
+        buffer.putLong(account.createdAt == null ? NO_DATE : account.createdAt.toEpochDay());
+        WriteAheadLog.putString(buffer, account.currency.getCurrencyCode());
+        buffer.putInt(account.ownerId);
+        buffer.putLong(account.balance.get());
+        write(buffer);
+    }
+
+    @Override
+    public void accountRemoved(String accountNumber) {
+        ByteBuffer buffer = log.buffer();
+        buffer.put(ACCOUNT_REMOVED);
+        WriteAheadLog.putString(buffer, accountNumber);
+        write(buffer);
+    }
+
+    @Override
+    public void balanceSet(String accountNumber, long minorUnits) {
+        ByteBuffer buffer = log.buffer();
+        buffer.put(BALANCE_SET);
+        WriteAheadLog.putString(buffer, accountNumber);
+        buffer.putLong(minorUnits);
+        write(buffer);
+    }
+
+    @Override
+    public void transactionRecorded(int id, Transaction transaction) {
+        writeTransaction(TRANSACTION, id, transaction);
+    }
+
+    @Override
+    public void postingRecorded(int id, Transaction transaction) {
+        writeTransaction(POSTING, id, transaction);
+    }
+
+    private void writeTransaction(byte type, int id, Transaction transaction) {
+        LocalDateTime dateTime = transaction.getDateTimeOfTransaction();
+        ByteBuffer buffer = log.buffer();
+        buffer.put(type).putInt(id);
+        buffer.putLong(dateTime.toEpochSecond(ZoneOffset.UTC)).putInt(dateTime.getNano());
+        WriteAheadLog.putString(buffer, transaction.getTransactionType().name());
+        WriteAheadLog.putString(buffer, transaction.getTransactionStatus().name());
+        WriteAheadLog.putString(buffer, transaction.getSourceAccount().getAccountNumber());
+        WriteAheadLog.putString(buffer, transaction.getTargetAccount().getAccountNumber());
+        buffer.putLong(transaction.getAmount().getMinorUnits());
+        WriteAheadLog.putString(buffer, transaction.getCurrency().getCurrencyCode());
+        Money convertedAmount = transaction.getConvertedAmount();
+        if (convertedAmount != null) {
+            buffer.putLong(convertedAmount.getMinorUnits());
+            WriteAheadLog.putString(buffer, convertedAmount.getCurrency().getCurrencyCode());
+            WriteAheadLog.putString(buffer, transaction.getExchangeRate().toPlainString());
+        }
+        write(buffer);
+    }
+
+    /**
+     * Appends a record and waits until it is durable. After a failed write the log may hold a torn record,
+     * so the ledger refuses every later change until it is recovered from the log.
+     */
+    private void write(ByteBuffer buffer) {
+        try {
+            log.sync(log.append(buffer));
+        } catch (IOException e) {
+            failure = e;
+            throw new UncheckedIOException("Writing the ledger log failed", e);
+        }
+    }
+
+    /**
+     * Starts a new log generation and saves the balances as of its start to a snapshot.
+     * Changes wait only while the ledger is copied, not while the snapshot is written.
+     *
+     * @throws IOException If the log can't be rotated or the snapshot can't be written.
+     */
+    public synchronized void checkpoint() throws IOException {
+        long start = System.nanoTime();
+        LedgerSnapshot snapshot;
+        checkpointLock.writeLock().lock();
+        try {
+            int generation = log.rotate();
+            snapshot = LedgerSnapshot.capture(ledger, generation);
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+        snapshot.write(directory);
+
+        for (Path file : listByGeneration(directory, true)) {
+            if (LedgerSnapshot.generationOf(file) < snapshot.generation) {
+                Files.deleteIfExists(file);
+            }
+        }
+        System.out.printf("Ledger checkpoint %d: %d accounts in %.1f ms%n",
+                snapshot.generation, snapshot.accounts.size(), (System.nanoTime() - start) / 1e6);
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (IOException e) {
+            System.out.println("Ledger checkpoint failed");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Takes a last checkpoint and closes the log; called by the shutdown hook.
+     */
+    public void close() {
+        checkpointer.shutdownNow();
+        checkpointQuietly();
+        closeLog();
+    }
+
+    /**
+     * Closes the log without a checkpoint, leaving the directory as a crash after the last write would;
+     * the next start replays the log.
+     */
+    void closeLog() {
+        try {
+            log.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
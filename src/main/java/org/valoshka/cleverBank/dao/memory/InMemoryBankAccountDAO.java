@@ -0,0 +1,105 @@
+package org.valoshka.cleverBank.dao.memory;
+
+import org.valoshka.cleverBank.dao.BankAccountDAO;
+import org.valoshka.cleverBank.models.BankAccount;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps bank accounts in the {@link InMemoryLedger} instead of the database.
+ */
+public class InMemoryBankAccountDAO extends BankAccountDAO {
+
+    private final InMemoryLedger ledger = InMemoryLedger.getInstance();
+
+    /**
+     * There is no database behind this DAO.
+     *
+     * @throws SQLException Always.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        throw new SQLException("In-memory storage has no database connection");
+    }
+
+    @Override
+    public Optional<BankAccount> get(String accountNumber) {
+        return Optional.ofNullable(ledger.accounts.get(accountNumber)).map(this::toBankAccount);
+    }
+
+    @Override
+    public List<BankAccount> getAll() {
+        try (Stream<BankAccount> bankAccounts = stream()) {
+            return bankAccounts.collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    @Override
+    public Stream<BankAccount> stream() {
+        return ledger.accountNumbers.stream()
+                .map(ledger.accounts::get)
+                .filter(Objects::nonNull)
+                .map(this::toBankAccount);
+    }
+
+    @Override
+    public List<BankAccount> page(String afterKey, int limit) {
+        return ledger.accountNumbers.tailSet(afterKey == null ? "" : afterKey, false).stream()
+                .map(ledger.accounts::get)
+                .filter(Objects::nonNull)
+                .limit(limit)
+                .map(this::toBankAccount)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private BankAccount toBankAccount(InMemoryLedger.AccountRecord account) {
+        InMemoryLedger.ClientRecord owner = ledger.clientsById.get(account.ownerId);
+        return account.toBankAccount(owner == null ? null : owner.toClient());
+    }
+
+    /**
+     * Saves a bank account; its owner must have been saved before, as in the database.
+     *
+     * @param bankAccount The bank account to save.
+     */
+    @Override
+    public void save(BankAccount bankAccount) {
+        if (accountExists(bankAccount.getAccountNumber())) {
+            System.out.println("Account with name '" + bankAccount.getAccountNumber() + "' already exists.");
+            return;
+        }
+        InMemoryLedger.ClientRecord owner = ledger.clientsByName.get(bankAccount.getOwner().getName());
+        if (owner == null) {
+            System.out.println("Creating bank account failed, client '" + bankAccount.getOwner().getName() + "' doesn't exist.");
+            return;
+        }
+        bankAccount.getOwner().setId(owner.id);
+        if (!ledger.addAccount(new InMemoryLedger.AccountRecord(bankAccount, owner.id))) {
+            System.out.println("Account with name '" + bankAccount.getAccountNumber() + "' already exists.");
+        }
+    }
+
+    @Override
+    public boolean accountExists(String accountNumber) {
+        return ledger.accounts.containsKey(accountNumber);
+    }
+
+    @Override
+    public void updateBalance(BankAccount bankAccount) {
+        if (!ledger.setBalance(bankAccount.getAccountNumber(), bankAccount.getBalance().getMinorUnits())) {
+            System.out.println("Updating bank account failed, no rows affected.");
+        }
+    }
+
+    @Override
+    public void deleteByName(String accountNumber) {
+        ledger.removeAccount(accountNumber);
+    }
+}
@@ -0,0 +1,92 @@
+package org.valoshka.cleverBank.dao.memory;
+
+import org.valoshka.cleverBank.dao.ClientDAO;
+import org.valoshka.cleverBank.models.Client;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps clients in the {@link InMemoryLedger} instead of the database.
+ */
+public class InMemoryClientDAO extends ClientDAO {
+
+    private final InMemoryLedger ledger = InMemoryLedger.getInstance();
+
+    /**
+     * There is no database behind this DAO.
+     *
+     * @throws SQLException Always.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        throw new SQLException("In-memory storage has no database connection");
+    }
+
+    @Override
+    public Optional<Client> get(String clientName) {
+        return Optional.ofNullable(ledger.clientsByName.get(clientName)).map(InMemoryLedger.ClientRecord::toClient);
+    }
+
+    @Override
+    public List<Client> getAll() {
+        try (Stream<Client> clients = stream()) {
+            return clients.collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    @Override
+    public Stream<Client> stream() {
+        return ledger.clientsById.values().stream().map(InMemoryLedger.ClientRecord::toClient);
+    }
+
+    @Override
+    public List<Client> page(String afterKey, int limit) {
+        int afterId = afterKey == null ? Integer.MIN_VALUE : Integer.parseInt(afterKey);
+        return ledger.clientsById.tailMap(afterId, false).values().stream()
+                .limit(limit)
+                .map(InMemoryLedger.ClientRecord::toClient)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    @Override
+    public void save(Client client) {
+        int clientId = ledger.addClient(client.getName());
+        if (clientId < 0) {
+            System.out.println("Client with name '" + client.getName() + "' already exists.");
+            return;
+        }
+        client.setId(clientId);
+    }
+
+    @Override
+    public boolean clientExists(String name) {
+        return ledger.clientsByName.containsKey(name);
+    }
+
+    @Override
+    public void update(Client client, String[] params) {
+        if (params == null || params.length == 0) {
+            return;
+        }
+        if (ledger.renameClient(client.getName(), params[0])) {
+            System.out.println("Client with ID '" + client.getId() + "' updated successfully.");
+        } else {
+            System.out.println("No client with ID '" + client.getId() + "' found to update.");
+        }
+    }
+
+    @Override
+    public void deleteByName(String clientName) {
+        if (ledger.removeClient(clientName)) {
+            System.out.println("Client with ID '" + clientName + "' deleted successfully.");
+        } else {
+            System.out.println("No client with ID '" + clientName + "' found to delete.");
+        }
+    }
+}
@@ -0,0 +1,592 @@
+package org.valoshka.cleverBank.dao.memory;
+
+import org.valoshka.cleverBank.dao.ExchangeRates;
+import org.valoshka.cleverBank.enums.TransactionStatus;
+import org.valoshka.cleverBank.enums.TransactionType;
+import org.valoshka.cleverBank.models.BankAccount;
+import org.valoshka.cleverBank.models.Client;
+import org.valoshka.cleverBank.models.Money;
+import org.valoshka.cleverBank.models.Transaction;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * The state of the in-memory storage engine shared by the in-memory DAOs.
+ * <p>
+ * Accounts are looked up in a hash map by account number and hold their balance in minor units in an
+ * {@link AtomicLong}, so every posting is one atomic update of each account it touches. A transfer is atomic
+ * per account, not across both accounts; {@code Transaction.transfer} holds both account locks around it.
+ * Transactions are appended to a log with ids allocated from a counter, in chunks that are never copied,
+ * and indexed per account by time and id for the history. Sorted key sets back the keyset pagination of the DAOs.
+ * <p>
+ * Every change is also handed to the attached {@link LedgerLog}, which the durable storage engine
+ * uses to write it ahead; by default nothing is logged.
+ */
+public final class InMemoryLedger {
+
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int MAX_CHUNKS = 1 << (31 - CHUNK_BITS);
+
+    private static final InMemoryLedger instance = new InMemoryLedger();
+
+    final ConcurrentHashMap<String, ClientRecord> clientsByName = new ConcurrentHashMap<>();
+    final ConcurrentSkipListMap<Integer, ClientRecord> clientsById = new ConcurrentSkipListMap<>();
+    private final AtomicInteger clientIds = new AtomicInteger();
+
+    final ConcurrentHashMap<String, AccountRecord> accounts = new ConcurrentHashMap<>();
+    final ConcurrentSkipListSet<String> accountNumbers = new ConcurrentSkipListSet<>();
+
+    private final AtomicReferenceArray<AtomicReferenceArray<Transaction>> transactionChunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+    private final AtomicInteger transactionIds = new AtomicInteger();
+    private final ConcurrentHashMap<String, ConcurrentSkipListMap<HistoryKey, Transaction>> histories = new ConcurrentHashMap<>();
+
+    private volatile LedgerLog log = LedgerLog.NONE;
+
+    /**
+     * Creates an empty ledger apart from the one of this JVM, e.g. to recover a log into it.
+     */
+    InMemoryLedger() {
+    }
+
+    /**
+     * @return The ledger of this JVM.
+     */
+    public static InMemoryLedger getInstance() {
+        return instance;
+    }
+
+    /**
+     * Sends every change from now on to the given log; the changes made so far are not logged.
+     *
+     * @param log The log, or {@link LedgerLog#NONE}.
+     */
+    void attach(LedgerLog log) {
+        this.log = log;
+    }
+
+    /**
+     * Adds a client unless one with the same name exists.
+     *
+     * @param name The client name.
+     * @return The id of the new client, or -1 if the name is taken.
+     */
+    synchronized int addClient(String name) {
+        if (clientsByName.containsKey(name)) {
+            return -1;
+        }
+        LedgerLog log = this.log;
+        log.enter();
+        try {
+            ClientRecord client = new ClientRecord(clientIds.incrementAndGet(), name);
+            clientsByName.put(name, client);
+            clientsById.put(client.id, client);
+            log.clientAdded(client.id, name);
+            return client.id;
+        } finally {
+            log.exit();
+        }
+    }
+
+    /**
+     * Renames a client.
+     *
+     * @return False if there is no client with the old name or the new name is taken.
+     */
+    synchronized boolean renameClient(String oldName, String newName) {
+        ClientRecord client = clientsByName.get(oldName);
+        if (client == null || clientsByName.containsKey(newName)) {
+            return false;
+        }
+        LedgerLog log = this.log;
+        log.enter();
+        try {
+            ClientRecord renamed = new ClientRecord(client.id, newName);
+            clientsByName.remove(oldName);
+            clientsByName.put(newName, renamed);
+            clientsById.put(renamed.id, renamed);
+            log.clientRenamed(renamed.id, newName);
+            return true;
+        } finally {
+            log.exit();
+        }
+    }
+
+    synchronized boolean removeClient(String name) {
+        LedgerLog log = this.log;
+        log.enter();
+        try {
+            ClientRecord client = clientsByName.remove(name);
+            if (client == null) {
+                return false;
+            }
+            clientsById.remove(client.id);
+            log.clientRemoved(client.id);
+            return true;
+        } finally {
+            log.exit();
+        }
+    }
+
+    /**
+     * Adds an account unless one with the same number exists.
+     *
+     * @return False if the account number is taken.
+     */
+    boolean addAccount(AccountRecord account) {
+        LedgerLog log = this.log;
+        log.enter();
+        try {
+            if (accounts.putIfAbsent(account.accountNumber, account) != null) {
+                return false;
+            }
+            accountNumbers.add(account.accountNumber);
+            log.accountAdded(account);
+            return true;
+        } finally {
+            log.exit();
+        }
+    }
+
+    boolean removeAccount(String accountNumber) {
+        LedgerLog log = this.log;
+        log.enter();
+        try {
+            accountNumbers.remove(accountNumber);
+            if (accounts.remove(accountNumber) == null) {
+                return false;
+            }
+            log.accountRemoved(accountNumber);
+            return true;
+        } finally {
+            log.exit();
+        }
+    }
+
+    /**
+     * Overwrites the balance of an account.
+     *
+     * @return False if the account doesn't exist.
+     */
+    boolean setBalance(String accountNumber, long minorUnits) {
+        AccountRecord account = accounts.get(accountNumber);
+        if (account == null) {
+            return false;
+        }
+        LedgerLog log = this.log;
+        log.enter();
+        try {
+            account.balance.set(minorUnits);
+            log.balanceSet(accountNumber, minorUnits);
+            return true;
+        } finally {
+            log.exit();
+        }
+    }
+
+    /**
+     * Appends a transaction to the log.
+     *
+     * @param transaction The transaction to record; it is kept as it is.
+     * @return The id allocated to the transaction.
+     */
+    int append(Transaction transaction) {
+        LedgerLog log = this.log;
+        log.enter();
+        try {
+            int id = store(transaction);
+            try {
+                log.transactionRecorded(id, transaction);
+            } catch (RuntimeException e) {
+                unstore(id, transaction);
+                throw e;
+            }
+            return id;
+        } finally {
+            log.exit();
+        }
+    }
+
+    private int store(Transaction transaction) {
+        int id = transactionIds.incrementAndGet();
+        if (id <= 0) {
+            throw new IllegalStateException("Transaction log is full");
+        }
+        chunkOf(id - 1).set((id - 1) & CHUNK_MASK, transaction);
+        index(id, transaction);
+        return id;
+    }
+
+    /**
+     * Takes back a transaction whose log write failed; its id stays allocated but holds nothing.
+     */
+    private void unstore(int id, Transaction transaction) {
+        HistoryKey key = new HistoryKey(transaction.getDateTimeOfTransaction(), id);
+        historyOf(transaction.getSourceAccount().getAccountNumber()).remove(key);
+        historyOf(transaction.getTargetAccount().getAccountNumber()).remove(key);
+        chunkOf(id - 1).set((id - 1) & CHUNK_MASK, null);
+    }
+
+    /**
+     * Adds a transaction to the history of both of its accounts, once if they are the same.
+     */
+    private void index(int id, Transaction transaction) {
+        HistoryKey key = new HistoryKey(transaction.getDateTimeOfTransaction(), id);
+        for (String accountNumber : new String[]{transaction.getSourceAccount().getAccountNumber(),
+                transaction.getTargetAccount().getAccountNumber()}) {
+            histories.computeIfAbsent(accountNumber, number -> new ConcurrentSkipListMap<>()).put(key, transaction);
+        }
+    }
+
+    /**
+     * @param accountNumber An account number.
+     * @return The transactions of the account, from either side, by time and id; a live view.
+     */
+    NavigableMap<HistoryKey, Transaction> historyOf(String accountNumber) {
+        NavigableMap<HistoryKey, Transaction> history = histories.get(accountNumber);
+        return history == null ? Collections.emptyNavigableMap() : history;
+    }
+
+    /**
+     * @param id A transaction id.
+     * @return The recorded transaction, or an empty Optional if there is none with this id yet.
+     */
+    public Optional<Transaction> getTransaction(int id) {
+        if (id <= 0 || id > transactionIds.get()) {
+            return Optional.empty();
+        }
+        AtomicReferenceArray<Transaction> chunk = transactionChunks.get((id - 1) >>> CHUNK_BITS);
+        return chunk == null ? Optional.empty() : Optional.ofNullable(chunk.get((id - 1) & CHUNK_MASK));
+    }
+
+    /**
+     * Streams the recorded transactions in id order.
+     */
+    public Stream<Transaction> transactions() {
+        return IntStream.rangeClosed(1, transactionIds.get())
+                .mapToObj(this::getTransaction)
+                .flatMap(Optional::stream);
+    }
+
+    /**
+     * @return The number of transaction ids allocated so far.
+     */
+    public int getTransactionCount() {
+        return transactionIds.get();
+    }
+
+    int getClientIdCounter() {
+        return clientIds.get();
+    }
+
+    private AtomicReferenceArray<Transaction> chunkOf(int index) {
+        int chunkIndex = index >>> CHUNK_BITS;
+        AtomicReferenceArray<Transaction> chunk = transactionChunks.get(chunkIndex);
+        if (chunk == null) {
+            transactionChunks.compareAndSet(chunkIndex, null, new AtomicReferenceArray<>(CHUNK_SIZE));
+            chunk = transactionChunks.get(chunkIndex);
+        }
+        return chunk;
+    }
+
+    /**
+     * Deposits to or withdraws from an account and records the posting,
+     * like {@code TransactionDAO.post} does in the database. The balance change and the transaction are logged
+     * as one record; if that write fails, the balance change is undone and the exception is thrown.
+     *
+     * @return The recorded COMPLETED transaction, a FAILED one that is not recorded if the currencies differ
+     * or the balance does not cover a withdrawal, or an empty Optional if the account doesn't exist.
+     */
+    Optional<Transaction> post(String accountNumber, Money amount, TransactionType transactionType, LocalDateTime dateTime) {
+        AccountRecord account = accounts.get(accountNumber);
+        if (account == null) {
+            return Optional.empty();
+        }
+
+        LedgerLog log = this.log;
+        log.enter();
+        try {
+            long minorUnits = amount.getMinorUnits();
+            long delta = transactionType == TransactionType.WITHDRAWAL ? -minorUnits : minorUnits;
+            boolean applied = account.currency.equals(amount.getCurrency())
+                    && (transactionType == TransactionType.WITHDRAWAL ? account.debit(minorUnits) : account.credit(minorUnits));
+
+            BankAccount bankAccount = account.toBankAccount(null);
+            Transaction transaction = new Transaction(transactionType, bankAccount, bankAccount, amount);
+            transaction.setDateTimeOfTransaction(dateTime);
+            if (!applied) {
+                bankAccount.setBalance(null);
+                transaction.setTransactionStatus(TransactionStatus.FAILED);
+                return Optional.of(transaction);
+            }
+            transaction.setTransactionStatus(TransactionStatus.COMPLETED);
+            int id = store(transaction);
+            transaction.setId(id);
+            try {
+                log.postingRecorded(id, transaction);
+            } catch (RuntimeException e) {
+                account.balance.addAndGet(-delta);
+                unstore(id, transaction);
+                throw e;
+            }
+            return Optional.of(transaction);
+        } finally {
+            log.exit();
+        }
+    }
+
+    /**
+     * Moves money between two accounts and records the transfer, COMPLETED or FAILED,
+     * like {@code TransactionDAO.transfer} does in the database. The amount is in the currency of the source
+     * account; a target account in another currency is credited the amount converted at the rate of {@link ExchangeRates}.
+     * If the log write fails, the balance changes are undone and the exception is thrown.
+     *
+     * @return The recorded transaction, or an empty Optional if either account doesn't exist.
+     */
+    Optional<Transaction> transfer(String sourceAccountNumber, String targetAccountNumber, Money amount, LocalDateTime dateTime) {
+        AccountRecord source = accounts.get(sourceAccountNumber);
+        AccountRecord target = accounts.get(targetAccountNumber);
+        if (source == null || target == null) {
+            return Optional.empty();
+        }
+
+        LedgerLog log = this.log;
+        log.enter();
+        try {
+            long minorUnits = amount.getMinorUnits();
+            Money credited = amount;
+            Optional<BigDecimal> rate = ExchangeRates.rate(amount.getCurrency(), target.currency);
+            if (rate.isPresent() && !target.currency.equals(amount.getCurrency())) {
+                credited = amount.convertTo(target.currency, rate.get());
+            }
+            boolean completed = source.currency.equals(amount.getCurrency()) && rate.isPresent()
+                    && source.debit(minorUnits);
+
+            BankAccount sourceAccount = source.toBankAccount(null);
+            BankAccount targetAccount = target.toBankAccount(null);
+            if (completed) {
+                targetAccount.setBalance(Money.of(target.balance.addAndGet(credited.getMinorUnits()), target.currency));
+            } else {
+                sourceAccount.setBalance(null);
+                targetAccount.setBalance(null);
+            }
+
+            Transaction transaction = new Transaction(TransactionType.TRANSFER, sourceAccount, targetAccount, amount);
+            if (credited != amount) {
+                transaction.setConvertedAmount(credited);
+                transaction.setExchangeRate(rate.get());
+            }
+            transaction.setDateTimeOfTransaction(dateTime);
+            transaction.setTransactionStatus(completed ? TransactionStatus.COMPLETED : TransactionStatus.FAILED);
+            int id = store(transaction);
+            transaction.setId(id);
+            try {
+                log.transactionRecorded(id, transaction);
+            } catch (RuntimeException e) {
+                if (completed) {
+                    source.balance.addAndGet(minorUnits);
+                    target.balance.addAndGet(-credited.getMinorUnits());
+                }
+                unstore(id, transaction);
+                throw e;
+            }
+            return Optional.of(transaction);
+        } finally {
+            log.exit();
+        }
+    }
+
+    /**
+     * Puts back a client read from a snapshot or a log, keeping its id.
+     */
+    synchronized void restoreClient(int id, String name) {
+        ClientRecord previous = clientsById.remove(id);
+        if (previous != null) {
+            clientsByName.remove(previous.name);
+        }
+        ClientRecord client = new ClientRecord(id, name);
+        clientsByName.put(name, client);
+        clientsById.put(id, client);
+        clientIds.accumulateAndGet(id, Math::max);
+    }
+
+    /**
+     * Puts back an account read from a snapshot or a log, replacing one with the same number.
+     */
+    void restoreAccount(AccountRecord account) {
+        accounts.put(account.accountNumber, account);
+        accountNumbers.add(account.accountNumber);
+    }
+
+    /**
+     * Puts back a transaction read from a log, keeping its id.
+     * A completed transfer also moves its amount again, crediting the converted amount if it has one.
+     * A completed deposit or withdrawal changes the balance again if it was logged as a posting; one that
+     * was only recorded, or logged before postings carried their balance change, leaves the balance alone.
+     *
+     * @param posted True if the record of a deposit or withdrawal includes its balance change.
+     */
+    void restoreTransaction(int id, Transaction transaction, boolean posted) {
+        restoreArchivedTransaction(id, transaction);
+        if (transaction.getTransactionStatus() != TransactionStatus.COMPLETED) {
+            return;
+        }
+        if (transaction.getTransactionType() == TransactionType.TRANSFER) {
+            AccountRecord source = accounts.get(transaction.getSourceAccount().getAccountNumber());
+            AccountRecord target = accounts.get(transaction.getTargetAccount().getAccountNumber());
+            if (source != null) {
+                source.balance.addAndGet(-transaction.getAmount().getMinorUnits());
+            }
+            if (target != null) {
+                target.balance.addAndGet(transaction.getCreditedAmount().getMinorUnits());
+            }
+        } else if (posted) {
+            AccountRecord account = accounts.get(transaction.getTargetAccount().getAccountNumber());
+            if (account != null) {
+                long minorUnits = transaction.getAmount().getMinorUnits();
+                account.balance.addAndGet(transaction.getTransactionType() == TransactionType.WITHDRAWAL ? -minorUnits : minorUnits);
+            }
+        }
+    }
+
+    /**
+     * Puts back a transaction read from a log older than the snapshot, keeping its id;
+     * the snapshot balances already include it, so no balance changes.
+     */
+    void restoreArchivedTransaction(int id, Transaction transaction) {
+        transaction.setId(id);
+        chunkOf(id - 1).set((id - 1) & CHUNK_MASK, transaction);
+        index(id, transaction);
+        transactionIds.accumulateAndGet(id, Math::max);
+    }
+
+    /**
+     * Moves the counters forward to the values saved in a snapshot.
+     */
+    void restoreCounters(int clientIdCounter, int transactionCount) {
+        clientIds.accumulateAndGet(clientIdCounter, Math::max);
+        transactionIds.accumulateAndGet(transactionCount, Math::max);
+    }
+
+    /**
+     * The position of a transaction in the history of an account: its time, then its id.
+     */
+    static final class HistoryKey implements Comparable<HistoryKey> {
+        final LocalDateTime dateTime;
+        final int id;
+
+        HistoryKey(LocalDateTime dateTime, int id) {
+            this.dateTime = dateTime;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(HistoryKey other) {
+            int byTime = dateTime.compareTo(other.dateTime);
+            return byTime != 0 ? byTime : Integer.compare(id, other.id);
+        }
+    }
+
+    /**
+     * A stored client.
+     */
+    static final class ClientRecord {
+        final int id;
+        final String name;
+
+        ClientRecord(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        Client toClient() {
+            Client client = new Client(name);
+            client.setId(id);
+            return client;
+        }
+    }
+
+    /**
+     * A stored account; everything but the balance is fixed when it is added.
+     */
+    static final class AccountRecord {
+        final String accountNumber;
+        final String bankName;
+        final LocalDate createdAt;
+        final Currency currency;
+        final int ownerId;
+        final AtomicLong balance;
+
+        AccountRecord(String accountNumber, String bankName, LocalDate createdAt, Currency currency, int ownerId, long balance) {
+            this.accountNumber = accountNumber;
+            this.bankName = bankName;
+            this.createdAt = createdAt;
+            this.currency = currency;
+            this.ownerId = ownerId;
+            this.balance = new AtomicLong(balance);
+        }
+
+        AccountRecord(BankAccount bankAccount, int ownerId) {
+            this.accountNumber = bankAccount.getAccountNumber();
+            this.bankName = bankAccount.getBankName();
+            this.createdAt = bankAccount.getCreatedAt();
+            this.currency = bankAccount.getCurrency();
+            this.ownerId = ownerId;
+            this.balance = new AtomicLong(bankAccount.getBalance() == null ? 0 : bankAccount.getBalance().getMinorUnits());
+        }
+
+        /**
+         * Subtracts the amount if the balance covers it.
+         */
+        boolean debit(long minorUnits) {
+            long current;
+            do {
+                current = balance.get();
+                if (current < minorUnits) {
+                    return false;
+                }
+            } while (!balance.compareAndSet(current, current - minorUnits));
+            return true;
+        }
+
+        /**
+         * Adds the amount.
+         */
+        boolean credit(long minorUnits) {
+            balance.addAndGet(minorUnits);
+            return true;
+        }
+
+        /**
+         * Copies the account with its current balance.
+         *
+         * @param owner The owner to attach, or null for an account without owner, like transfer results have.
+         *              As with the database DAO, the account is not added to the owner's account list.
+         */
+        BankAccount toBankAccount(Client owner) {
+            BankAccount bankAccount = new BankAccount();
+            bankAccount.setAccountNumber(accountNumber);
+            bankAccount.setBankName(bankName);
+            bankAccount.setCreatedAt(createdAt);
+            bankAccount.setBalance(Money.of(balance.get(), currency));
+            bankAccount.setCurrency(currency);
+            bankAccount.setOwner(owner);
+            return bankAccount;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package org.valoshka.cleverBank.dao.memory;
+
+import org.valoshka.cleverBank.dao.TransactionDAO;
+import org.valoshka.cleverBank.enums.TransactionStatus;
+import org.valoshka.cleverBank.enums.TransactionType;
+import org.valoshka.cleverBank.models.AccountMovement;
+import org.valoshka.cleverBank.models.Money;
+import org.valoshka.cleverBank.models.Transaction;
+import org.valoshka.cleverBank.models.TransactionFilter;
+import org.valoshka.cleverBank.models.TransferRequest;
+import org.valoshka.cleverBank.models.TransferResult;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Records transactions in the {@link InMemoryLedger} instead of the database.
+ */
+public class InMemoryTransactionDAO extends TransactionDAO {
+
+    private final InMemoryLedger ledger;
+
+    public InMemoryTransactionDAO() {
+        this(InMemoryLedger.getInstance());
+    }
+
+    /**
+     * Records transactions in a ledger other than the one of this JVM.
+     */
+    InMemoryTransactionDAO(InMemoryLedger ledger) {
+        this.ledger = ledger;
+    }
+
+    /**
+     * There is no database behind this DAO.
+     *
+     * @throws SQLException Always.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        throw new SQLException("In-memory storage has no database connection");
+    }
+
+    @Override
+    public int save(Transaction transaction) {
+        return ledger.append(transaction);
+    }
+
+    @Override
+    public Optional<Transaction> post(String accountNumber, Money amount, TransactionType transactionType) {
+        return ledger.post(accountNumber, amount, transactionType, LocalDateTime.now());
+    }
+
+    @Override
+    public Optional<Transaction> transfer(String sourceAccountNumber, String targetAccountNumber, Money amount) {
+        return ledger.transfer(sourceAccountNumber, targetAccountNumber, amount, LocalDateTime.now());
+    }
+
+    /**
+     * Scans the transaction log for the completed movements of an account in a period.
+     */
+    @Override
+    public Stream<AccountMovement> streamMovements(String accountNumber, LocalDateTime from, LocalDateTime to) {
+        return ledger.transactions()
+                .filter(transaction -> !transaction.getDateTimeOfTransaction().isBefore(from)
+                        && transaction.getDateTimeOfTransaction().isBefore(to))
+                .flatMap(transaction -> movementsOf(transaction, accountNumber));
+    }
+
+    @Override
+    public Optional<Money> balanceAt(String accountNumber, LocalDateTime at) {
+        InMemoryLedger.AccountRecord account = ledger.accounts.get(accountNumber);
+        if (account == null) {
+            return Optional.empty();
+        }
+        long since = ledger.transactions()
+                .filter(transaction -> !transaction.getDateTimeOfTransaction().isBefore(at))
+                .flatMap(transaction -> movementsOf(transaction, accountNumber))
+                .filter(movement -> movement.getAmount().getCurrency().equals(account.currency))
+                .mapToLong(movement -> movement.getAmount().getMinorUnits())
+                .sum();
+        return Optional.of(Money.of(account.balance.get() - since, account.currency));
+    }
+
+    /**
+     * Walks the history index of the account back from the key, or from the end of the period of the filter,
+     * so a page costs its own size plus the transactions the filter skips, not the whole log.
+     */
+    @Override
+    public List<Transaction> history(String accountNumber, TransactionFilter filter, String afterKey, int limit) {
+        InMemoryLedger.HistoryKey upper = afterKey == null ? null : keyOf(afterKey);
+        if (filter.getTo() != null) {
+            InMemoryLedger.HistoryKey to = new InMemoryLedger.HistoryKey(filter.getTo(), Integer.MIN_VALUE);
+            upper = upper == null || to.compareTo(upper) < 0 ? to : upper;
+        }
+        InMemoryLedger.HistoryKey lower = filter.getFrom() == null
+                ? null
+                : new InMemoryLedger.HistoryKey(filter.getFrom(), Integer.MIN_VALUE);
+
+        NavigableMap<InMemoryLedger.HistoryKey, Transaction> history = ledger.historyOf(accountNumber);
+        if (upper != null && lower != null) {
+            history = lower.compareTo(upper) < 0 ? history.subMap(lower, true, upper, false) : Collections.emptyNavigableMap();
+        } else if (upper != null) {
+            history = history.headMap(upper, false);
+        } else if (lower != null) {
+            history = history.tailMap(lower, true);
+        }
+        return history.descendingMap().values().stream()
+                .filter(transaction -> matches(transaction, filter))
+                .limit(limit)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    /**
+     * Parses a key made by {@link TransactionDAO#historyKey(Transaction)}.
+     */
+    private static InMemoryLedger.HistoryKey keyOf(String afterKey) {
+        int separator = afterKey.lastIndexOf('/');
+        return new InMemoryLedger.HistoryKey(LocalDateTime.parse(afterKey.substring(0, separator)),
+                Integer.parseInt(afterKey.substring(separator + 1)));
+    }
+
+    /**
+     * Checks the criteria of the filter the history index doesn't cover; the period is covered.
+     */
+    private static boolean matches(Transaction transaction, TransactionFilter filter) {
+        return (filter.getTransactionType() == null || transaction.getTransactionType() == filter.getTransactionType())
+                && (filter.getTransactionStatus() == null || transaction.getTransactionStatus() == filter.getTransactionStatus());
+    }
+
+    private static Stream<AccountMovement> movementsOf(Transaction transaction, String accountNumber) {
+        if (transaction.getTransactionStatus() != TransactionStatus.COMPLETED) {
+            return Stream.empty();
+        }
+        String source = transaction.getSourceAccount().getAccountNumber();
+        String target = transaction.getTargetAccount().getAccountNumber();
+        long minorUnits = transaction.getAmount().getMinorUnits();
+        if (source.equals(accountNumber)) {
+            long signed = transaction.getTransactionType() == TransactionType.DEPOSIT ? minorUnits : -minorUnits;
+            return Stream.of(new AccountMovement(transaction.getId(), transaction.getDateTimeOfTransaction(),
+                    transaction.getTransactionType(), target, Money.of(signed, transaction.getCurrency())));
+        }
+        if (target.equals(accountNumber) && transaction.getTransactionType() == TransactionType.TRANSFER) {
+            return Stream.of(new AccountMovement(transaction.getId(), transaction.getDateTimeOfTransaction(),
+                    transaction.getTransactionType(), source, transaction.getCreditedAmount()));
+        }
+        return Stream.empty();
+    }
+
+    /**
+     * Applies the postings one by one, with the same validation and results as the database batch.
+     *
+     * @param requests The postings to apply, in order.
+     * @return One result per request, in the order of the requests.
+     */
+    @Override
+    public List<TransferResult> transferBatch(List<TransferRequest> requests) {
+        LocalDateTime dateTime = LocalDateTime.now();
+        List<TransferResult> results = new ArrayList<>(requests.size());
+        for (TransferRequest request : requests) {
+            if (request.getAmount().isNegative()) {
+                results.add(TransferResult.failed(request, "Amount should be more than zero", null));
+                continue;
+            }
+            if (request.getTransactionType() != TransactionType.TRANSFER) {
+                results.add(postingResult(request, ledger.post(request.getTargetAccountNumber(), request.getAmount(),
+                        request.getTransactionType(), dateTime)));
+                continue;
+            }
+            if (request.getSourceAccountNumber().equals(request.getTargetAccountNumber())) {
+                results.add(TransferResult.failed(request, "Source and target accounts should be different", null));
+                continue;
+            }
+
+            Optional<Transaction> transaction = ledger.transfer(request.getSourceAccountNumber(),
+                    request.getTargetAccountNumber(), request.getAmount(), dateTime);
+            if (transaction.isEmpty()) {
+                results.add(TransferResult.failed(request, "Account doesn't exist", null));
+            } else if (transaction.get().getTransactionStatus() == TransactionStatus.COMPLETED) {
+                results.add(TransferResult.completed(request, transaction.get()));
+            } else {
+                results.add(TransferResult.failed(request, transaction.get().getFailureReason(), transaction.get()));
+            }
+        }
+        return results;
+    }
+
+    private static TransferResult postingResult(TransferRequest request, Optional<Transaction> transaction) {
+        if (transaction.isEmpty()) {
+            return TransferResult.failed(request, "Account doesn't exist", null);
+        }
+        if (transaction.get().getTransactionStatus() == TransactionStatus.COMPLETED) {
+            return TransferResult.completed(request, transaction.get());
+        }
+        boolean sameCurrency = transaction.get().getTargetAccount().getCurrency().equals(request.getAmount().getCurrency());
+        return TransferResult.failed(request, sameCurrency ? "Insufficient funds" : "Currency mismatch", null);
+    }
+}
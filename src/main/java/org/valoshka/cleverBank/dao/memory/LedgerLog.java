@@ -0,0 +1,57 @@
+package org.valoshka.cleverBank.dao.memory;
+
+import org.valoshka.cleverBank.models.Transaction;
+
+/**
+ * Receives every change of the {@link InMemoryLedger} right after it is applied in memory.
+ * <p>
+ * The ledger calls {@link #enter()} before it applies a change and {@link #exit()} once the change is logged,
+ * so a log can hold changes back for the moment it takes a consistent copy of the ledger.
+ * A log method returns once the change is durable. If it throws, the ledger undoes the change where it can
+ * and the caller gets the exception; a log may also refuse every change after a failed write.
+ */
+interface LedgerLog {
+
+    /**
+     * Logs nothing.
+     */
+    LedgerLog NONE = new LedgerLog() {
+    };
+
+    default void enter() {
+    }
+
+    default void exit() {
+    }
+
+    default void clientAdded(int id, String name) {
+    }
+
+    default void clientRenamed(int id, String name) {
+    }
+
+    default void clientRemoved(int id) {
+    }
+
+    default void accountAdded(InMemoryLedger.AccountRecord account) {
+    }
+
+    default void accountRemoved(String accountNumber) {
+    }
+
+    default void balanceSet(String accountNumber, long minorUnits) {
+    }
+
+    /**
+     * A transaction was recorded. A completed transfer moved its amount; a deposit or withdrawal did not
+     * change any balance.
+     */
+    default void transactionRecorded(int id, Transaction transaction) {
+    }
+
+    /**
+     * A deposit or withdrawal was recorded together with the balance change it applied.
+     */
+    default void postingRecorded(int id, Transaction transaction) {
+    }
+}
@@ -0,0 +1,175 @@
+package org.valoshka.cleverBank.dao.memory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A copy of the clients, the accounts with their balances and the id counters of the {@link InMemoryLedger},
+ * taken at the start of a write-ahead log generation.
+ * <p>
+ * The file {@code snapshot-<generation>.bin} is written to a temporary file, forced and then renamed,
+ * and ends with a CRC32C of everything before it, so a snapshot is either complete or ignored.
+ * Transactions are not part of the snapshot; they stay in the log files and are read back from there.
+ */
+final class LedgerSnapshot {
+
+    private static final int MAGIC = 0x4C444752;
+    private static final int VERSION = 1;
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    final int generation;
+    final int clientIdCounter;
+    final int transactionCount;
+    final List<InMemoryLedger.ClientRecord> clients;
+    final List<InMemoryLedger.AccountRecord> accounts;
+
+    private LedgerSnapshot(int generation, int clientIdCounter, int transactionCount,
+                           List<InMemoryLedger.ClientRecord> clients, List<InMemoryLedger.AccountRecord> accounts) {
+        this.generation = generation;
+        this.clientIdCounter = clientIdCounter;
+        this.transactionCount = transactionCount;
+        this.clients = clients;
+        this.accounts = accounts;
+    }
+
+    /**
+     * Copies the ledger; the caller keeps changes out while it runs.
+     */
+    static LedgerSnapshot capture(InMemoryLedger ledger, int generation) {
+        List<InMemoryLedger.ClientRecord> clients = new ArrayList<>(ledger.clientsById.values());
+        List<InMemoryLedger.AccountRecord> accounts = new ArrayList<>(ledger.accounts.size());
+        for (InMemoryLedger.AccountRecord account : ledger.accounts.values()) {
+            accounts.add(new InMemoryLedger.AccountRecord(account.accountNumber, account.bankName, account.createdAt,
+                    account.currency, account.ownerId, account.balance.get()));
+        }
+        return new LedgerSnapshot(generation, ledger.getClientIdCounter(), ledger.getTransactionCount(), clients, accounts);
+    }
+
+    /**
+     * Puts the copied state into an empty ledger.
+     */
+    void restore(InMemoryLedger ledger) {
+        for (InMemoryLedger.ClientRecord client : clients) {
+            ledger.restoreClient(client.id, client.name);
+        }
+        for (InMemoryLedger.AccountRecord account : accounts) {
+            ledger.restoreAccount(account);
+        }
+        ledger.restoreCounters(clientIdCounter, transactionCount);
+    }
+
+    static Path fileOf(Path directory, int generation) {
+        return directory.resolve(String.format("snapshot-%08d.bin", generation));
+    }
+
+    /**
+     * @return The generation of a snapshot file name, or -1 if it is not a snapshot file.
+     */
+    static int generationOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.matches("snapshot-\\d{8}\\.bin")) {
+            return -1;
+        }
+        return Integer.parseInt(name.substring(9, 17));
+    }
+
+    /**
+     * Writes the snapshot durably into the directory.
+     *
+     * @return The snapshot file.
+     * @throws IOException If the file can't be written.
+     */
+    Path write(Path directory) throws IOException {
+        Path file = fileOf(directory, generation);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(temporary.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(fileOut, 1 << 16), new CRC32C());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(generation);
+            out.writeInt(clientIdCounter);
+            out.writeInt(transactionCount);
+
+            out.writeInt(clients.size());
+            for (InMemoryLedger.ClientRecord client : clients) {
+                out.writeInt(client.id);
+                out.writeUTF(client.name);
+            }
+
+            out.writeInt(accounts.size());
+            for (InMemoryLedger.AccountRecord account : accounts) {
+                out.writeUTF(account.accountNumber);
+                out.writeUTF(account.bankName == null ? "" : account.bankName);
+                out.writeLong(account.createdAt == null ? NO_DATE : account.createdAt.toEpochDay());
+                out.writeUTF(account.currency.getCurrencyCode());
+                out.writeInt(account.ownerId);
+                out.writeLong(account.balance.get());
+            }
+
+            out.writeLong(checked.getChecksum().getValue());
+            out.flush();
+            fileOut.getFD().sync();
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return file;
+    }
+
+    /**
+     * Reads a snapshot file.
+     *
+     * @return The snapshot.
+     * @throws IOException If the file can't be read, is not a snapshot or fails its checksum.
+     */
+    static LedgerSnapshot read(Path file) throws IOException {
+        CheckedInputStream checked = new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(file), 1 << 16), new CRC32C());
+        try (DataInputStream in = new DataInputStream(checked)) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a ledger snapshot: " + file);
+            }
+            int generation = in.readInt();
+            int clientIdCounter = in.readInt();
+            int transactionCount = in.readInt();
+
+            int clientCount = in.readInt();
+            List<InMemoryLedger.ClientRecord> clients = new ArrayList<>(clientCount);
+            for (int i = 0; i < clientCount; i++) {
+                clients.add(new InMemoryLedger.ClientRecord(in.readInt(), in.readUTF()));
+            }
+
+            int accountCount = in.readInt();
+            List<InMemoryLedger.AccountRecord> accounts = new ArrayList<>(accountCount);
+            for (int i = 0; i < accountCount; i++) {
+                String accountNumber = in.readUTF();
+                String bankName = in.readUTF();
+                long createdAt = in.readLong();
+                Currency currency = Currency.getInstance(in.readUTF());
+                int ownerId = in.readInt();
+                long balance = in.readLong();
+                accounts.add(new InMemoryLedger.AccountRecord(accountNumber, bankName.isEmpty() ? null : bankName,
+                        createdAt == NO_DATE ? null : LocalDate.ofEpochDay(createdAt), currency, ownerId, balance));
+            }
+
+            long expected = checked.getChecksum().getValue();
+            if (in.readLong() != expected) {
+                throw new IOException("Ledger snapshot is corrupt: " + file);
+            }
+            return new LedgerSnapshot(generation, clientIdCounter, transactionCount, clients, accounts);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package org.valoshka.cleverBank.dao.memory;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * An append-only log file of CRC-checked records, written through a {@link FileChannel}.
+ * <p>
+ * A record is {@code [int length][int crc32c][payload]}. Appending only writes the record into the channel;
+ * {@link #sync(long)} makes it durable. Threads that sync while another thread is forcing the channel wait for it
+ * and usually find their records already forced, so one fsync covers every record written before it started.
+ * Positions passed to {@link #sync(long)} grow across files, so the log can move on to a new file at a checkpoint.
+ */
+final class WriteAheadLog implements Closeable {
+
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 64 * 1024;
+
+    private final Path directory;
+    private final Object writeLock = new Object();
+    private final Object syncLock = new Object();
+
+    private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(MAX_RECORD_BYTES));
+    private final ThreadLocal<CRC32C> checksums = ThreadLocal.withInitial(CRC32C::new);
+
+    private FileChannel channel;
+    private int generation;
+    private volatile long written;
+    private volatile long durable;
+
+    /**
+     * Opens the log file of a generation for appending.
+     *
+     * @param directory  The directory of the log files.
+     * @param generation The generation to append to.
+     * @throws IOException If the file can't be opened.
+     */
+    WriteAheadLog(Path directory, int generation) throws IOException {
+        this.directory = directory;
+        this.generation = generation;
+        this.channel = open(directory, generation);
+    }
+
+    /**
+     * @return The path of the log file of a generation.
+     */
+    static Path fileOf(Path directory, int generation) {
+        return directory.resolve(String.format("wal-%08d.log", generation));
+    }
+
+    /**
+     * @return The generation of a log file name, or -1 if it is not a log file.
+     */
+    static int generationOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.matches("wal-\\d{8}\\.log")) {
+            return -1;
+        }
+        return Integer.parseInt(name.substring(4, 12));
+    }
+
+    private static FileChannel open(Path directory, int generation) throws IOException {
+        FileChannel channel = FileChannel.open(fileOf(directory, generation),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return channel;
+    }
+
+    /**
+     * Returns an empty buffer for the payload of one record on this thread; pass it to {@link #append(ByteBuffer)}.
+     */
+    ByteBuffer buffer() {
+        ByteBuffer buffer = buffers.get();
+        buffer.clear();
+        buffer.position(HEADER_BYTES);
+        return buffer;
+    }
+
+    /**
+     * Writes a record into the log file, without forcing it to the disk.
+     *
+     * @param buffer A buffer from {@link #buffer()} holding the payload.
+     * @return The log position after the record, for {@link #sync(long)}.
+     * @throws IOException If the record can't be written.
+     */
+    long append(ByteBuffer buffer) throws IOException {
+        int length = buffer.position() - HEADER_BYTES;
+        CRC32C checksum = checksums.get();
+        checksum.reset();
+        checksum.update(buffer.array(), HEADER_BYTES, length);
+        buffer.putInt(0, length);
+        buffer.putInt(4, (int) checksum.getValue());
+        buffer.flip();
+
+        synchronized (writeLock) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            written += HEADER_BYTES + length;
+            return written;
+        }
+    }
+
+    /**
+     * Waits until the log is durable up to a position, forcing the file if no other thread is doing it already.
+     *
+     * @param position A position returned by {@link #append(ByteBuffer)}.
+     * @throws IOException If the file can't be forced.
+     */
+    void sync(long position) throws IOException {
+        if (durable >= position) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (durable >= position) {
+                return;
+            }
+            long target = written;
+            channel.force(false);
+            durable = target;
+        }
+    }
+
+    /**
+     * Forces the current file and continues in the file of the next generation.
+     *
+     * @return The new generation.
+     * @throws IOException If a file can't be forced or opened.
+     */
+    int rotate() throws IOException {
+        synchronized (writeLock) {
+            synchronized (syncLock) {
+                FileChannel next = open(directory, generation + 1);
+                channel.force(false);
+                channel.close();
+                channel = next;
+                generation++;
+                durable = written;
+                return generation;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            synchronized (syncLock) {
+                channel.force(false);
+                channel.close();
+                durable = written;
+            }
+        }
+    }
+
+    /**
+     * Reads the records of a log file in order and cuts off a torn or corrupt tail left by a crash.
+     *
+     * @param file    The log file.
+     * @param handler Receives the payload of each valid record.
+     * @return The number of valid records.
+     * @throws IOException If the file can't be read or truncated.
+     */
+    static long replay(Path file, Consumer<ByteBuffer> handler) throws IOException {
+        long valid = 0;
+        long records = 0;
+        CRC32C checksum = new CRC32C();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length < 0 || length > MAX_RECORD_BYTES) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                int crc;
+                try {
+                    crc = in.readInt();
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+                checksum.reset();
+                checksum.update(payload);
+                if ((int) checksum.getValue() != crc) {
+                    break;
+                }
+                handler.accept(ByteBuffer.wrap(payload));
+                valid += HEADER_BYTES + length;
+                records++;
+            }
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            if (channel.size() > valid) {
+                System.out.println("Cutting off " + (channel.size() - valid) + " bytes of a torn record in " + file);
+                channel.truncate(valid);
+                channel.force(false);
+            }
+        }
+        return records;
+    }
+
+    static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
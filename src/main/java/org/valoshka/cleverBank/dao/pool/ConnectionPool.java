@@ -0,0 +1,369 @@
+package org.valoshka.cleverBank.dao.pool;
+
+import org.valoshka.cleverBank.metrics.Counter;
+import org.valoshka.cleverBank.metrics.LatencyHistogram;
+import org.valoshka.cleverBank.metrics.Metrics;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * A bounded JDBC connection pool exposed as a {@link DataSource}.
+ * <p>
+ * At most {@code maxSize} connections are handed out at a time; callers beyond that wait up to
+ * {@code acquireTimeoutMillis}. Idle connections are reused most-recently-returned first, validated
+ * when they were idle for longer than {@code validationIntervalMillis}, and evicted down to
+ * {@code minSize} after {@code idleTimeoutMillis}. A housekeeping thread keeps the minimum size
+ * filled and reports connections that were not returned within {@code leakDetectionThresholdMillis}.
+ * Each connection keeps up to {@code statementCacheSize} prepared statements open between checkouts,
+ * warmed with the queries registered by {@link #prepareOnConnect(String...)} when the connection is opened.
+ */
+public class ConnectionPool implements DataSource {
+
+    private static final LatencyHistogram waitTimer = Metrics.histogram("pool.wait");
+    private static final LatencyHistogram acquireTimer = Metrics.histogram("pool.acquire");
+    private static final Counter timeoutCounter = Metrics.counter("pool.timeouts");
+    private static final Counter statementHitCounter = Metrics.counter("pool.statementCache.hits");
+    private static final Counter statementMissCounter = Metrics.counter("pool.statementCache.misses");
+    private static final Counter statementEvictionCounter = Metrics.counter("pool.statementCache.evictions");
+
+    private static final Set<String> warmStatements = new CopyOnWriteArraySet<>();
+
+    private final PoolConfig config;
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final Set<PooledConnection> active = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService housekeeper;
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder leaks = new LongAdder();
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+    private final LongAdder statementCacheEvictions = new LongAdder();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+    private volatile boolean closed;
+
+    /**
+     * Creates a pool and starts its housekeeping thread. Physical connections are opened lazily,
+     * so the database does not have to be reachable when the pool is created.
+     *
+     * @param config The pool settings.
+     */
+    public ConnectionPool(PoolConfig config) {
+        this.config = config;
+        this.permits = new Semaphore(config.getMaxSize(), true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.housekeeper.scheduleWithFixedDelay(this::housekeep, 0,
+                config.getHousekeepingPeriodMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection from the pool, waiting up to the configured acquire timeout.
+     * Closing the returned connection gives it back to the pool.
+     *
+     * @return A pooled database connection.
+     * @throws SQLException If the pool is closed, the timeout elapses or a new connection cannot be opened.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed.");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(config.getAcquireTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                timeouts.increment();
+                timeoutCounter.increment();
+                throw new SQLTimeoutException("Timed out after " + config.getAcquireTimeoutMillis()
+                        + " ms waiting for a connection (" + getStats() + ").");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection.", e);
+        }
+        long waited = System.nanoTime() - start;
+        waitTimer.record(waited);
+        totalWaitNanos.addAndGet(waited);
+        maxWaitNanos.accumulate(waited);
+        acquired.increment();
+
+        try {
+            PooledConnection pooledConnection = takeIdle();
+            if (pooledConnection == null) {
+                pooledConnection = open();
+            }
+            active.add(pooledConnection);
+            Throwable trace = config.getLeakDetectionThresholdMillis() > 0
+                    ? new Throwable("Connection borrowed here")
+                    : null;
+            Connection connection = pooledConnection.checkout(trace);
+            acquireTimer.recordSince(start);
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Not supported: all connections of the pool use the configured credentials.
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pooled connections always use the configured credentials.");
+    }
+
+    /**
+     * Takes the most recently returned idle connection, discarding the ones that fail validation.
+     */
+    private PooledConnection takeIdle() {
+        PooledConnection pooledConnection;
+        while ((pooledConnection = idle.pollFirst()) != null) {
+            if (isUsable(pooledConnection)) {
+                return pooledConnection;
+            }
+            pooledConnection.closePhysical();
+        }
+        return null;
+    }
+
+    private boolean isUsable(PooledConnection pooledConnection) {
+        long idleFor = System.currentTimeMillis() - pooledConnection.getLastReturnedAt();
+        if (idleFor < config.getValidationIntervalMillis()) {
+            return true;
+        }
+        try {
+            return pooledConnection.getPhysical().isValid(config.getValidationTimeoutSeconds());
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection open() throws SQLException {
+        Properties info = new Properties();
+        if (config.getUsername() != null) {
+            info.setProperty("user", config.getUsername());
+        }
+        if (config.getPassword() != null) {
+            info.setProperty("password", config.getPassword());
+        }
+        info.setProperty("prepareThreshold", String.valueOf(config.getPrepareThreshold()));
+        Connection physical = DriverManager.getConnection(config.getJdbcUrl(), info);
+        PooledConnection pooledConnection = new PooledConnection(this, physical, config.getStatementCacheSize());
+        if (pooledConnection.getStatementCache() != null) {
+            pooledConnection.getStatementCache().warm(warmStatements);
+        }
+        return pooledConnection;
+    }
+
+    /**
+     * Registers queries that every connection prepares as soon as it is opened, so that even the first
+     * execution on a connection skips parsing and planning. The queries are executed once with null
+     * parameters in a transaction that is rolled back, so they must be harmless with nulls: selects and
+     * updates or deletes by key. Connections opened before a query is registered prepare it on first use.
+     *
+     * @param sqls The SQL texts, exactly as the DAOs pass them to {@code prepareStatement}.
+     */
+    public static void prepareOnConnect(String... sqls) {
+        warmStatements.addAll(Arrays.asList(sqls));
+    }
+
+    void statementCacheHit() {
+        statementCacheHits.increment();
+        statementHitCounter.increment();
+    }
+
+    void statementCacheMiss() {
+        statementCacheMisses.increment();
+        statementMissCounter.increment();
+    }
+
+    void statementCacheEviction() {
+        statementCacheEvictions.increment();
+        statementEvictionCounter.increment();
+    }
+
+    /**
+     * Takes a connection back from a caller. Connections that are broken or cannot be reset are discarded.
+     *
+     * @param pooledConnection The connection being returned.
+     */
+    void release(PooledConnection pooledConnection) {
+        active.remove(pooledConnection);
+        try {
+            if (closed || pooledConnection.isBroken() || !reset(pooledConnection.getPhysical())) {
+                pooledConnection.closePhysical();
+            } else {
+                pooledConnection.returned();
+                idle.offerFirst(pooledConnection);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean reset(Connection physical) {
+        try {
+            if (physical.isClosed()) {
+                return false;
+            }
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            physical.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private void housekeep() {
+        try {
+            evictIdle();
+            fillToMinimum();
+            detectLeaks();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void evictIdle() {
+        long now = System.currentTimeMillis();
+        for (PooledConnection pooledConnection : idle) {
+            if (idle.size() + active.size() <= config.getMinSize()) {
+                return;
+            }
+            if (now - pooledConnection.getLastReturnedAt() > config.getIdleTimeoutMillis()
+                    && idle.remove(pooledConnection)) {
+                pooledConnection.closePhysical();
+            }
+        }
+    }
+
+    private void fillToMinimum() {
+        while (!closed && idle.size() + active.size() < config.getMinSize() && permits.tryAcquire()) {
+            try {
+                idle.offerLast(open());
+            } catch (SQLException e) {
+                System.out.println("Connection pool can't open a connection: " + e.getMessage());
+                return;
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    private void detectLeaks() {
+        long threshold = config.getLeakDetectionThresholdMillis();
+        if (threshold <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (PooledConnection pooledConnection : active) {
+            if (now - pooledConnection.getBorrowedAt() > threshold && pooledConnection.markLeakReported()) {
+                leaks.increment();
+                System.err.println("Possible connection leak: connection held for more than " + threshold + " ms.");
+                Throwable trace = pooledConnection.getBorrowTrace();
+                if (trace != null) {
+                    trace.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a snapshot of the pool counters.
+     *
+     * @return The current pool statistics.
+     */
+    public PoolStats getStats() {
+        return new PoolStats(active.size(), idle.size(), permits.getQueueLength(), acquired.sum(),
+                timeouts.sum(), leaks.sum(), totalWaitNanos.get(), maxWaitNanos.get(),
+                statementCacheHits.sum(), statementCacheMisses.sum(), statementCacheEvictions.sum());
+    }
+
+    /**
+     * Returns the maximum number of connections this pool hands out at a time.
+     *
+     * @return The configured maximum pool size.
+     */
+    public int getMaxSize() {
+        return config.getMaxSize();
+    }
+
+    /**
+     * Closes all idle connections and stops housekeeping. Borrowed connections are closed when returned.
+     */
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooledConnection;
+        while ((pooledConnection = idle.pollFirst()) != null) {
+            pooledConnection.closePhysical();
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+}
@@ -0,0 +1,81 @@
+package org.valoshka.cleverBank.dao.pool;
+
+import lombok.Getter;
+
+import java.util.Properties;
+
+/**
+ * Settings of a {@link ConnectionPool}, read from the "database.pool.*" keys of the database properties.
+ */
+public class PoolConfig {
+
+    @Getter
+    private final String jdbcUrl;
+
+    @Getter
+    private final String username;
+
+    @Getter
+    private final String password;
+
+    @Getter
+    private final int minSize;
+
+    @Getter
+    private final int maxSize;
+
+    @Getter
+    private final long acquireTimeoutMillis;
+
+    @Getter
+    private final long idleTimeoutMillis;
+
+    @Getter
+    private final long validationIntervalMillis;
+
+    @Getter
+    private final int validationTimeoutSeconds;
+
+    @Getter
+    private final long leakDetectionThresholdMillis;
+
+    @Getter
+    private final long housekeepingPeriodMillis;
+
+    @Getter
+    private final int statementCacheSize;
+
+    @Getter
+    private final int prepareThreshold;
+
+    /**
+     * Reads the pool settings from the given properties, falling back to defaults for missing keys.
+     *
+     * @param properties The database properties.
+     */
+    public PoolConfig(Properties properties) {
+        this.jdbcUrl = properties.getProperty("database.connection.url");
+        this.username = properties.getProperty("database.connection.username");
+        this.password = properties.getProperty("database.connection.password");
+        this.minSize = intProperty(properties, "database.pool.minSize", 2);
+        this.maxSize = Math.max(1, intProperty(properties, "database.pool.maxSize", 10));
+        this.acquireTimeoutMillis = longProperty(properties, "database.pool.acquireTimeoutMillis", 5_000);
+        this.idleTimeoutMillis = longProperty(properties, "database.pool.idleTimeoutMillis", 600_000);
+        this.validationIntervalMillis = longProperty(properties, "database.pool.validationIntervalMillis", 5_000);
+        this.validationTimeoutSeconds = intProperty(properties, "database.pool.validationTimeoutSeconds", 2);
+        this.leakDetectionThresholdMillis = longProperty(properties, "database.pool.leakDetectionThresholdMillis", 60_000);
+        this.housekeepingPeriodMillis = longProperty(properties, "database.pool.housekeepingPeriodMillis", 30_000);
+        this.statementCacheSize = Math.max(0, intProperty(properties, "database.pool.statementCacheSize", 64));
+        this.prepareThreshold = intProperty(properties, "database.pool.prepareThreshold", 1);
+    }
+
+    private static int intProperty(Properties properties, String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    private static long longProperty(Properties properties, String key, long defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null || value.isBlank() ? defaultValue : Long.parseLong(value.trim());
+    }
+}
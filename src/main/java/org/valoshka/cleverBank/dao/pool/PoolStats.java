@@ -0,0 +1,86 @@
+package org.valoshka.cleverBank.dao.pool;
+
+import lombok.Getter;
+
+/**
+ * An immutable snapshot of the state and counters of a {@link ConnectionPool}.
+ */
+public class PoolStats {
+
+    @Getter
+    private final int active;
+
+    @Getter
+    private final int idle;
+
+    @Getter
+    private final int waiting;
+
+    @Getter
+    private final long acquired;
+
+    @Getter
+    private final long timeouts;
+
+    @Getter
+    private final long leaks;
+
+    @Getter
+    private final long totalWaitNanos;
+
+    @Getter
+    private final long maxWaitNanos;
+
+    @Getter
+    private final long statementCacheHits;
+
+    @Getter
+    private final long statementCacheMisses;
+
+    @Getter
+    private final long statementCacheEvictions;
+
+    PoolStats(int active, int idle, int waiting, long acquired, long timeouts, long leaks,
+              long totalWaitNanos, long maxWaitNanos,
+              long statementCacheHits, long statementCacheMisses, long statementCacheEvictions) {
+        this.active = active;
+        this.idle = idle;
+        this.waiting = waiting;
+        this.acquired = acquired;
+        this.timeouts = timeouts;
+        this.leaks = leaks;
+        this.totalWaitNanos = totalWaitNanos;
+        this.maxWaitNanos = maxWaitNanos;
+        this.statementCacheHits = statementCacheHits;
+        this.statementCacheMisses = statementCacheMisses;
+        this.statementCacheEvictions = statementCacheEvictions;
+    }
+
+    /**
+     * Returns the average time a caller waited for a connection.
+     *
+     * @return The average wait time in milliseconds, or 0 if no connection was acquired yet.
+     */
+    public double getAverageWaitMillis() {
+        return acquired == 0 ? 0 : totalWaitNanos / (double) acquired / 1_000_000;
+    }
+
+    /**
+     * Returns the share of {@code prepareStatement} calls served by the per-connection statement caches.
+     *
+     * @return The hit ratio between 0 and 1, or 0 if no statement was prepared yet.
+     */
+    public double getStatementCacheHitRatio() {
+        long lookups = statementCacheHits + statementCacheMisses;
+        return lookups == 0 ? 0 : statementCacheHits / (double) lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("active=%d, idle=%d, waiting=%d, acquired=%d, timeouts=%d, leaks=%d, avgWait=%.3fms, maxWait=%.3fms, " +
+                        "stmtCache=%d/%d hits (%.1f%%), evictions=%d",
+                active, idle, waiting, acquired, timeouts, leaks, getAverageWaitMillis(), maxWaitNanos / 1_000_000.0,
+                statementCacheHits, statementCacheHits + statementCacheMisses, getStatementCacheHitRatio() * 100,
+                statementCacheEvictions);
+    }
+}
@@ -0,0 +1,165 @@
+package org.valoshka.cleverBank.dao.pool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A physical connection owned by a {@link ConnectionPool} together with its bookkeeping.
+ * Callers never see this class: every checkout gets a fresh proxy whose {@code close()}
+ * hands the physical connection back to the pool instead of closing it.
+ * Prepared statements of the connection are served from its {@link StatementCache} when one is configured.
+ */
+class PooledConnection {
+
+    private final ConnectionPool pool;
+    private final Connection physical;
+    private final StatementCache statementCache;
+
+    private volatile long lastReturnedAt;
+    private volatile long borrowedAt;
+    private volatile Throwable borrowTrace;
+    private volatile boolean leakReported;
+    private volatile boolean broken;
+
+    /**
+     * @param statementCacheSize The number of prepared statements to keep open, or 0 to prepare them on every call.
+     */
+    PooledConnection(ConnectionPool pool, Connection physical, int statementCacheSize) {
+        this.pool = pool;
+        this.physical = physical;
+        this.statementCache = statementCacheSize > 0 ? new StatementCache(this, statementCacheSize) : null;
+        this.lastReturnedAt = System.currentTimeMillis();
+    }
+
+    ConnectionPool getPool() {
+        return pool;
+    }
+
+    Connection getPhysical() {
+        return physical;
+    }
+
+    StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    long getLastReturnedAt() {
+        return lastReturnedAt;
+    }
+
+    long getBorrowedAt() {
+        return borrowedAt;
+    }
+
+    Throwable getBorrowTrace() {
+        return borrowTrace;
+    }
+
+    boolean isBroken() {
+        return broken;
+    }
+
+    boolean markLeakReported() {
+        if (leakReported) {
+            return false;
+        }
+        leakReported = true;
+        return true;
+    }
+
+    /**
+     * Marks the connection as borrowed and wraps it into a handle for the caller.
+     *
+     * @param trace The stack trace of the borrower, or null if leak detection is off.
+     * @return A connection handle that returns the physical connection to the pool on close.
+     */
+    Connection checkout(Throwable trace) {
+        this.borrowedAt = System.currentTimeMillis();
+        this.borrowTrace = trace;
+        this.leakReported = false;
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new Handle());
+    }
+
+    void returned() {
+        if (statementCache != null) {
+            statementCache.releaseAll();
+        }
+        this.lastReturnedAt = System.currentTimeMillis();
+        this.borrowTrace = null;
+    }
+
+    /**
+     * Closes the physical connection, ignoring errors since the connection is being discarded anyway.
+     */
+    void closePhysical() {
+        if (statementCache != null) {
+            statementCache.clear();
+        }
+        try {
+            physical.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Marks the connection as broken if the error says the connection itself failed.
+     */
+    void failed(SQLException e) {
+        String sqlState = e.getSQLState();
+        if (sqlState != null && sqlState.startsWith("08")) {
+            broken = true;
+        }
+    }
+
+    private class Handle implements InvocationHandler {
+        private boolean closed;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        pool.release(PooledConnection.this);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || physical.isClosed();
+                case "toString":
+                    return "Pooled(" + physical + ")";
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Connection is already returned to the pool.");
+            }
+            try {
+                if (statementCache != null && method.getName().equals("prepareStatement") && StatementCache.isCacheable(args)) {
+                    return statementCache.prepare((Connection) proxy, args);
+                }
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException sqlException) {
+                    failed(sqlException);
+                }
+                throw cause;
+            } catch (SQLException e) {
+                failed(e);
+                throw e;
+            }
+        }
+    }
+}
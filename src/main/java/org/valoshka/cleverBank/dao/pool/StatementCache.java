@@ -0,0 +1,299 @@
+package org.valoshka.cleverBank.dao.pool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The prepared statements of one {@link PooledConnection}, kept open between checkouts.
+ * <p>
+ * Statements are keyed by their SQL text and generated keys flag and evicted least-recently-used first
+ * beyond {@code maxSize}. A caller gets a handle whose {@code close()} clears the parameters and hands the
+ * statement back to the cache, so the next {@code prepareStatement} of the same SQL reuses the statement and
+ * the driver executes its server-side prepared statement instead of parsing and planning the query again.
+ * A statement that is already handed out is not shared; a second caller gets an uncached statement.
+ */
+class StatementCache {
+
+    private final PooledConnection owner;
+    private final int maxSize;
+    private final LinkedHashMap<String, Entry> entries;
+    private final List<Entry> uncached = new ArrayList<>();
+
+    StatementCache(PooledConnection owner, int maxSize) {
+        this.owner = owner;
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= StatementCache.this.maxSize) {
+                    return false;
+                }
+                evict(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Tells whether a {@code prepareStatement} call can be served from the cache:
+     * the plain form and the form with a generated keys flag are cached, column index and name arrays are not.
+     */
+    static boolean isCacheable(Object[] args) {
+        return args.length == 1 || (args.length == 2 && args[1] instanceof Integer);
+    }
+
+    /**
+     * Returns a handle on a cached statement for the SQL, preparing and caching it on a miss.
+     *
+     * @param connection The connection handle of the caller, returned by {@link Statement#getConnection()}.
+     * @param args       The arguments of the {@code prepareStatement} call.
+     * @return The statement handle.
+     * @throws SQLException If the statement can't be prepared.
+     */
+    synchronized PreparedStatement prepare(Connection connection, Object[] args) throws SQLException {
+        String sql = (String) args[0];
+        int autoGeneratedKeys = args.length == 2 ? (Integer) args[1] : Statement.NO_GENERATED_KEYS;
+        String key = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? "keys:" + sql : sql;
+
+        Entry entry = entries.get(key);
+        if (entry != null && !entry.inUse) {
+            owner.getPool().statementCacheHit();
+            entry.inUse = true;
+            return entry.checkout(connection);
+        }
+        owner.getPool().statementCacheMiss();
+        PreparedStatement statement = owner.getPhysical().prepareStatement(sql, autoGeneratedKeys);
+        if (entry != null) {
+            Entry extra = new Entry(null, statement);
+            extra.inUse = true;
+            uncached.add(extra);
+            return extra.checkout(connection);
+        }
+        entry = new Entry(key, statement);
+        entry.inUse = true;
+        entries.put(key, entry);
+        return entry.checkout(connection);
+    }
+
+    /**
+     * Prepares the statements and executes each once with null parameters in a transaction that is rolled back,
+     * which makes the driver create the server-side prepared statements with the parameter types the server
+     * expects. Statements that fail this are left out of the cache and prepared on first use instead.
+     *
+     * @param sqls The SQL texts registered with {@link ConnectionPool#prepareOnConnect(String...)}.
+     */
+    synchronized void warm(Collection<String> sqls) {
+        if (sqls.isEmpty()) {
+            return;
+        }
+        Connection physical = owner.getPhysical();
+        try {
+            physical.setAutoCommit(false);
+            for (String sql : sqls) {
+                if (entries.containsKey(sql) || entries.size() >= maxSize) {
+                    continue;
+                }
+                PreparedStatement statement = physical.prepareStatement(sql);
+                try {
+                    ParameterMetaData parameters = statement.getParameterMetaData();
+                    for (int i = 1; i <= parameters.getParameterCount(); i++) {
+                        statement.setNull(i, parameters.getParameterType(i));
+                    }
+                    statement.execute();
+                    physical.rollback();
+                    statement.clearParameters();
+                    entries.put(sql, new Entry(sql, statement));
+                } catch (SQLException e) {
+                    physical.rollback();
+                    closeQuietly(statement);
+                    System.out.println("Can't warm up statement \"" + sql + "\": " + e.getMessage());
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Statement warm-up failed: " + e.getMessage());
+        } finally {
+            try {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Takes back the statements a caller left open when it returned the connection.
+     */
+    synchronized void releaseAll() {
+        for (Entry entry : new ArrayList<>(entries.values())) {
+            if (entry.inUse) {
+                entry.release();
+            }
+        }
+        for (Entry entry : new ArrayList<>(uncached)) {
+            entry.release();
+        }
+    }
+
+    /**
+     * Closes all statements, e.g. because the physical connection is being closed.
+     */
+    synchronized void clear() {
+        List<Entry> all = new ArrayList<>(entries.values());
+        entries.clear();
+        all.addAll(uncached);
+        uncached.clear();
+        for (Entry entry : all) {
+            closeQuietly(entry.statement);
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private void evict(Entry entry) {
+        owner.getPool().statementCacheEviction();
+        entry.evicted = true;
+        if (!entry.inUse) {
+            closeQuietly(entry.statement);
+        }
+    }
+
+    private synchronized void release(Entry entry) {
+        entry.release();
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * A cached statement. An entry without a key is an uncached statement handed out while the cached one
+     * was in use; it is closed when it is released.
+     */
+    private final class Entry {
+        private final String key;
+        private final PreparedStatement statement;
+        private boolean inUse;
+        private boolean evicted;
+        private boolean dirty;
+        private Handle handle;
+
+        private Entry(String key, PreparedStatement statement) {
+            this.key = key;
+            this.statement = statement;
+        }
+
+        private PreparedStatement checkout(Connection connection) {
+            handle = new Handle(this, connection);
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    handle);
+        }
+
+        /**
+         * Resets the statement for the next caller, or closes it if it is not cached or can't be reset.
+         */
+        private void release() {
+            inUse = false;
+            if (handle != null) {
+                handle.closed = true;
+                handle = null;
+            }
+            if (key == null || evicted) {
+                uncached.remove(this);
+                closeQuietly(statement);
+                return;
+            }
+            try {
+                ResultSet resultSet = statement.getResultSet();
+                if (resultSet != null) {
+                    resultSet.close();
+                }
+                statement.clearParameters();
+                statement.clearBatch();
+                if (dirty) {
+                    statement.setFetchSize(0);
+                    statement.setMaxRows(0);
+                    statement.setQueryTimeout(0);
+                    dirty = false;
+                }
+                statement.clearWarnings();
+            } catch (SQLException e) {
+                entries.remove(key);
+                closeQuietly(statement);
+            }
+        }
+    }
+
+    private final class Handle implements InvocationHandler {
+        private final Entry entry;
+        private final Connection connection;
+        private boolean closed;
+
+        private Handle(Entry entry, Connection connection) {
+            this.entry = entry;
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        release(entry);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || entry.statement.isClosed();
+                case "getConnection":
+                    return connection;
+                case "toString":
+                    return "Cached(" + entry.statement + ")";
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "setFetchSize":
+                case "setMaxRows":
+                case "setLargeMaxRows":
+                case "setQueryTimeout":
+                    entry.dirty = true;
+                    break;
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Statement is already closed.");
+            }
+            try {
+                return method.invoke(entry.statement, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException sqlException) {
+                    owner.failed(sqlException);
+                }
+                throw cause;
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.valoshka.cleverBank.dao.trace;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters of one SQL shape, i.e. one statement with its literals replaced by "?".
+ */
+public final class SqlStats {
+
+    private final String shape;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder roundTrips = new LongAdder();
+
+    SqlStats(String shape) {
+        this.shape = shape;
+    }
+
+    void record(long nanos, long rowCount, long trips, boolean failed) {
+        calls.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        rows.add(rowCount);
+        roundTrips.add(trips);
+        if (failed) {
+            errors.increment();
+        }
+    }
+
+    public String getShape() {
+        return shape;
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getTotalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalNanos.sum());
+    }
+
+    long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public double getMeanMillis() {
+        long n = calls.sum();
+        return n == 0 ? 0 : totalNanos.sum() / (n * 1_000_000.0);
+    }
+
+    public double getMaxMillis() {
+        return maxNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * @return The rows read by queries plus the rows changed by updates.
+     */
+    public long getRows() {
+        return rows.sum();
+    }
+
+    /**
+     * @return The executions plus the extra fetches of cursor-based queries.
+     */
+    public long getRoundTrips() {
+        return roundTrips.sum();
+    }
+}
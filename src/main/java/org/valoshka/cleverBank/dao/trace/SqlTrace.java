@@ -0,0 +1,191 @@
+package org.valoshka.cleverBank.dao.trace;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Array;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Collects the statistics of the statements run through a {@link TracingDataSource}, per SQL shape,
+ * and appends statements slower than "database.trace.slowQueryMillis" to "database.trace.slowQueryLog".
+ * <p>
+ * Bind parameters in the slow-query log are shown as they were set, except strings that look like
+ * account numbers, which keep only their last four characters.
+ */
+public final class SqlTrace {
+
+    private static final int MAX_CACHED_SHAPES = 10_000;
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w$])-?\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\?(?:\\s*,\\s*\\?)+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern ACCOUNT_NUMBER = Pattern.compile("(?=(?:[^0-9]*[0-9]){6})[A-Z0-9 ]{8,40}");
+
+    private static final Map<String, SqlStats> stats = new ConcurrentHashMap<>();
+    private static final Map<String, String> shapes = new ConcurrentHashMap<>();
+
+    private static volatile int reportTopN = 20;
+
+    private final long slowQueryNanos;
+    private final Path slowQueryLog;
+
+    /**
+     * @param properties The database properties with the "database.trace.*" settings.
+     */
+    SqlTrace(Properties properties) {
+        this.slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(
+                Long.parseLong(properties.getProperty("database.trace.slowQueryMillis", "200").trim()));
+        this.slowQueryLog = Paths.get(properties.getProperty("database.trace.slowQueryLog", "logs/slow-queries.log"));
+        reportTopN = Integer.parseInt(properties.getProperty("database.trace.reportTopN", "20").trim());
+    }
+
+    /**
+     * Records one execution of a statement.
+     *
+     * @param sql        The SQL as prepared.
+     * @param parameters The bind parameters by index, or null for plain statements.
+     * @param nanos      The time spent executing and fetching.
+     * @param rows       The rows read or changed.
+     * @param roundTrips The round trips to the database.
+     * @param failed     True if the statement threw.
+     */
+    void record(String sql, Object[] parameters, long nanos, long rows, long roundTrips, boolean failed) {
+        String shape = shapeOf(sql);
+        stats.computeIfAbsent(shape, SqlStats::new).record(nanos, rows, roundTrips, failed);
+        if (nanos >= slowQueryNanos) {
+            logSlowQuery(shape, parameters, nanos, rows);
+        }
+    }
+
+    /**
+     * Normalizes SQL to its shape: single spaces, literals replaced by "?" and parameter lists collapsed,
+     * so statements that differ only in values share their statistics.
+     */
+    static String shapeOf(String sql) {
+        String shape = shapes.get(sql);
+        if (shape != null) {
+            return shape;
+        }
+        shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = PARAMETER_LIST.matcher(shape).replaceAll("?, ...");
+        shape = WHITESPACE.matcher(shape).replaceAll(" ").trim();
+        if (shapes.size() < MAX_CACHED_SHAPES) {
+            shapes.put(sql, shape);
+        }
+        return shape;
+    }
+
+    private synchronized void logSlowQuery(String shape, Object[] parameters, long nanos, long rows) {
+        try {
+            Path parent = slowQueryLog.getParent();
+            if (parent != null) {
+                parent.toFile().mkdirs();
+            }
+            try (Writer writer = new FileWriter(slowQueryLog.toFile(), StandardCharsets.UTF_8, true)) {
+                writer.write(LocalDateTime.now() + " " + String.format("%.1f", nanos / 1_000_000.0) + " ms "
+                        + rows + " rows: " + shape);
+                if (parameters != null) {
+                    writer.write(" -- parameters: " + describe(parameters));
+                }
+                writer.write(System.lineSeparator());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.err.println("Error writing slow query log.");
+        }
+    }
+
+    /**
+     * Formats bind parameters from index 1 on, redacting account numbers.
+     */
+    static String describe(Object[] parameters) {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 1; i < parameters.length; i++) {
+            if (i > 1) {
+                builder.append(", ");
+            }
+            builder.append(redact(parameters[i]));
+        }
+        return builder.append(']').toString();
+    }
+
+    static String redact(Object parameter) {
+        if (parameter == null) {
+            return "null";
+        }
+        if (parameter instanceof Array) {
+            return "<array>";
+        }
+        if (parameter instanceof String value) {
+            if (ACCOUNT_NUMBER.matcher(value).matches()) {
+                return "'****" + value.substring(value.length() - 4) + "'";
+            }
+            return "'" + value + "'";
+        }
+        return parameter.toString();
+    }
+
+    /**
+     * Lists the statements with the highest total time.
+     *
+     * @param limit The number of statements to list.
+     * @return The statistics, highest total time first.
+     */
+    public static List<SqlStats> top(int limit) {
+        List<SqlStats> sorted = new ArrayList<>(stats.values());
+        sorted.sort(Comparator.comparingLong(SqlStats::getTotalNanos).reversed());
+        return sorted.subList(0, Math.min(limit, sorted.size()));
+    }
+
+    /**
+     * Formats the statements with the highest total time as a text table.
+     *
+     * @param limit The number of statements to list.
+     * @return The report, or an empty string if nothing was traced.
+     */
+    public static String report(int limit) {
+        List<SqlStats> top = top(limit);
+        if (top.isEmpty()) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%10s %8s %10s %10s %10s %10s %8s  %s%n",
+                "total ms", "calls", "mean ms", "max ms", "rows", "trips", "errors", "sql"));
+        for (SqlStats sqlStats : top) {
+            builder.append(String.format("%10d %8d %10.2f %10.2f %10d %10d %8d  %s%n",
+                    sqlStats.getTotalMillis(), sqlStats.getCalls(), sqlStats.getMeanMillis(), sqlStats.getMaxMillis(),
+                    sqlStats.getRows(), sqlStats.getRoundTrips(), sqlStats.getErrors(), sqlStats.getShape()));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Formats the "database.trace.reportTopN" statements with the highest total time as a text table.
+     *
+     * @return The report, or an empty string if nothing was traced.
+     */
+    public static String report() {
+        return report(reportTopN);
+    }
+
+    /**
+     * Clears all statistics.
+     */
+    public static void reset() {
+        stats.clear();
+    }
+}
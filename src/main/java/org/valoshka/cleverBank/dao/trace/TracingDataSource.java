@@ -0,0 +1,277 @@
+package org.valoshka.cleverBank.dao.trace;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * A {@link DataSource} that wraps the connections of another data source, and their statements and result sets,
+ * in proxies that report every execution to {@link SqlTrace}.
+ * <p>
+ * An execution is measured from the execute call until its result set is read to the end or closed, so the rows
+ * of cursor-based queries fetched later are counted with it. Round trips are the execution plus one per
+ * fetch-size rows read from a cursor after the first fetch; a batch counts as one round trip.
+ */
+public class TracingDataSource implements DataSource {
+
+    private final DataSource target;
+    private final SqlTrace trace;
+
+    /**
+     * @param target     The data source to trace.
+     * @param properties The database properties with the "database.trace.*" settings.
+     */
+    public TracingDataSource(DataSource target, Properties properties) {
+        this.target = target;
+        this.trace = new SqlTrace(properties);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(target.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(target.getConnection(username, password));
+    }
+
+    private Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(connection));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+        private final Connection connection;
+
+        ConnectionHandler(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = TracingDataSource.invoke(connection, method, args);
+            switch (method.getName()) {
+                case "prepareStatement":
+                    return wrapStatement(PreparedStatement.class, (Statement) result, (String) args[0]);
+                case "prepareCall":
+                    return wrapStatement(CallableStatement.class, (Statement) result, (String) args[0]);
+                case "createStatement":
+                    return wrapStatement(Statement.class, (Statement) result, null);
+                default:
+                    return result;
+            }
+        }
+
+        private Object wrapStatement(Class<?> type, Statement statement, String sql) {
+            return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                    new StatementHandler(statement, sql));
+        }
+    }
+
+    private class StatementHandler implements InvocationHandler {
+        private final Statement statement;
+        private final String sql;
+        private Object[] parameters = new Object[8];
+        private int parameterCount;
+        private Execution pending;
+
+        StatementHandler(Statement statement, String sql) {
+            this.statement = statement;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index
+                    && sql != null) {
+                bind(index, name.equals("setNull") ? null : args[1]);
+                return TracingDataSource.invoke(statement, method, args);
+            }
+            if (name.equals("clearParameters")) {
+                Arrays.fill(parameters, null);
+                parameterCount = 0;
+                return TracingDataSource.invoke(statement, method, args);
+            }
+            if (name.equals("close")) {
+                finishPending();
+                return TracingDataSource.invoke(statement, method, args);
+            }
+            if (!name.startsWith("execute")) {
+                return TracingDataSource.invoke(statement, method, args);
+            }
+
+            finishPending();
+            String executed = args != null && args.length > 0 && args[0] instanceof String text ? text : sql;
+            Object[] bound = sql != null ? Arrays.copyOf(parameters, parameterCount + 1) : null;
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = TracingDataSource.invoke(statement, method, args);
+            } catch (Throwable e) {
+                trace.record(executed, bound, System.nanoTime() - start, 0, 1, true);
+                throw e;
+            }
+            if (result instanceof ResultSet resultSet) {
+                pending = new Execution(executed, bound, start, statement.getFetchSize());
+                return Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                        new ResultSetHandler(resultSet, pending));
+            }
+            trace.record(executed, bound, System.nanoTime() - start, updateCount(result), 1, false);
+            return result;
+        }
+
+        private void bind(int index, Object value) {
+            if (index >= parameters.length) {
+                parameters = Arrays.copyOf(parameters, Math.max(index + 1, parameters.length * 2));
+            }
+            parameters[index] = value;
+            parameterCount = Math.max(parameterCount, index);
+        }
+
+        private void finishPending() {
+            if (pending != null) {
+                pending.finish();
+                pending = null;
+            }
+        }
+
+        private long updateCount(Object result) {
+            if (result instanceof Integer count) {
+                return Math.max(count, 0);
+            }
+            if (result instanceof Long count) {
+                return Math.max(count, 0);
+            }
+            long total = 0;
+            if (result instanceof int[] counts) {
+                for (int count : counts) {
+                    total += Math.max(count, 0);
+                }
+            } else if (result instanceof long[] counts) {
+                for (long count : counts) {
+                    total += Math.max(count, 0);
+                }
+            }
+            return total;
+        }
+    }
+
+    /**
+     * A query whose result set is still being read.
+     */
+    private class Execution {
+        private final String sql;
+        private final Object[] parameters;
+        private final long start;
+        private final int fetchSize;
+        private long rows;
+        private boolean finished;
+
+        Execution(String sql, Object[] parameters, long start, int fetchSize) {
+            this.sql = sql;
+            this.parameters = parameters;
+            this.start = start;
+            this.fetchSize = fetchSize;
+        }
+
+        void finish() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            long extraFetches = fetchSize > 0 && rows > 0 ? (rows - 1) / fetchSize : 0;
+            trace.record(sql, parameters, System.nanoTime() - start, rows, 1 + extraFetches, false);
+        }
+    }
+
+    private static class ResultSetHandler implements InvocationHandler {
+        private final ResultSet resultSet;
+        private final Execution execution;
+
+        ResultSetHandler(ResultSet resultSet, Execution execution) {
+            this.resultSet = resultSet;
+            this.execution = execution;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = TracingDataSource.invoke(resultSet, method, args);
+            switch (method.getName()) {
+                case "next":
+                    if ((Boolean) result) {
+                        execution.rows++;
+                    } else {
+                        execution.finish();
+                    }
+                    break;
+                case "close":
+                    execution.finish();
+                    break;
+                default:
+                    break;
+            }
+            return result;
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return target.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        target.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        target.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return target.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return target.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return target.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || target.isWrapperFor(iface);
+    }
+}
@@ -0,0 +1,104 @@
+package org.valoshka.cleverBank.dao.utils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A utility class that exposes a query result as a lazily fetched {@link Stream}.
+ * <p>
+ * The PostgreSQL driver only uses a server-side cursor when autocommit is off and a fetch size is set,
+ * otherwise it reads the whole result into memory on the first {@code next()}. The stream owns the connection:
+ * closing the stream closes the result set, the statement and the connection, which rolls back the read-only
+ * transaction when the connection goes back to the pool.
+ */
+public class CursorStream {
+
+    /**
+     * Default number of rows fetched per round trip if "database.fetchSize" is not set.
+     */
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+
+    /**
+     * Reads the fetch size from the database properties.
+     *
+     * @param properties The database properties.
+     * @return The value of "database.fetchSize", or {@link #DEFAULT_FETCH_SIZE}.
+     */
+    public static int fetchSize(Properties properties) {
+        return Integer.parseInt(properties.getProperty("database.fetchSize", String.valueOf(DEFAULT_FETCH_SIZE)));
+    }
+
+    /**
+     * Executes the query through a server-side cursor and streams the mapped rows.
+     * The stream must be closed, preferably with try-with-resources, to give the connection back.
+     *
+     * @param connection The connection to run the query on; owned by the stream from now on.
+     * @param sql        The query.
+     * @param fetchSize  The number of rows fetched per round trip.
+     * @param mapper     Maps each row to an object.
+     * @param parameters The query parameters, bound with {@link PreparedStatement#setObject(int, Object)}.
+     * @param <T>        The type of the streamed objects.
+     * @return A sequential stream of the mapped rows.
+     * @throws SQLException If the query can't be started; the connection is closed in that case.
+     */
+    public static <T> Stream<T> open(Connection connection, String sql, int fetchSize, RowMapper<T> mapper,
+                                     Object... parameters) throws SQLException {
+        PreparedStatement preparedStatement = null;
+        try {
+            connection.setAutoCommit(false);
+            preparedStatement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            preparedStatement.setFetchSize(fetchSize);
+            for (int i = 0; i < parameters.length; i++) {
+                preparedStatement.setObject(i + 1, parameters[i]);
+            }
+            ResultSet resultSet = preparedStatement.executeQuery();
+
+            PreparedStatement statement = preparedStatement;
+            return StreamSupport.stream(new RowSpliterator<>(resultSet, mapper), false)
+                    .onClose(() -> close(resultSet, statement, connection));
+        } catch (SQLException e) {
+            close(null, preparedStatement, connection);
+            throw e;
+        }
+    }
+
+    private static void close(ResultSet resultSet, PreparedStatement preparedStatement, Connection connection) {
+        try (connection; preparedStatement; resultSet) {
+            // resources are closed in reverse order
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static class RowSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+        private final ResultSet resultSet;
+        private final RowMapper<T> mapper;
+
+        RowSpliterator(ResultSet resultSet, RowMapper<T> mapper) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.resultSet = resultSet;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            try {
+                if (!resultSet.next()) {
+                    return false;
+                }
+                action.accept(mapper.map(resultSet));
+                return true;
+            } catch (SQLException e) {
+                throw new IllegalStateException("Reading the next row failed", e);
+            }
+        }
+    }
+}
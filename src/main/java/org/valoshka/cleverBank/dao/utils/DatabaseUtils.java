@@ -10,6 +10,18 @@ import java.sql.SQLException;
  */
 public class DatabaseUtils {
 
+    /**
+     * Builds the query used by {@link #recordExists}. It only depends on the table and the column,
+     * so the pooled connections can cache and pre-warm it like any other constant query.
+     *
+     * @param tableName  The name of the database table to check.
+     * @param columnName The name of the column to check for the value.
+     * @return The SQL text with one parameter for the value.
+     */
+    public static String recordExistsSql(String tableName, String columnName) {
+        return "SELECT EXISTS (SELECT 1 FROM " + tableName + " WHERE " + columnName + " = ?)";
+    }
+
     /**
      * Checks if a record with the given value exists in the specified table and column.
      *
@@ -20,13 +32,11 @@ public class DatabaseUtils {
      * @return True if a record with the given value exists, false otherwise.
      */
     public static boolean recordExists(Connection connection, String tableName, String columnName, String value) {
-        String sql = "SELECT COUNT(*) FROM " + tableName + " WHERE " + columnName + " = ?";
-        try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(recordExistsSql(tableName, columnName))) {
             preparedStatement.setString(1, value);
             try (ResultSet resultSet = preparedStatement.executeQuery()) {
                 if (resultSet.next()) {
-                    int count = resultSet.getInt(1);
-                    return count > 0;
+                    return resultSet.getBoolean(1);
                 }
             }
         } catch (SQLException e) {
@@ -0,0 +1,22 @@
+package org.valoshka.cleverBank.dao.utils;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps the current row of a result set to an object.
+ *
+ * @param <T> The type of the mapped object.
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+
+    /**
+     * Maps the row the result set is currently positioned on.
+     *
+     * @param resultSet The result set positioned on a row.
+     * @return The mapped object.
+     * @throws SQLException If a column can't be read.
+     */
+    T map(ResultSet resultSet) throws SQLException;
+}
@@ -0,0 +1,19 @@
+package org.valoshka.cleverBank.enums;
+
+/**
+ * What the check writer does with a new check when its queue is full.
+ */
+public enum BackpressurePolicy {
+    /**
+     * Wait until the queue has room.
+     */
+    BLOCK,
+    /**
+     * Skip the check and append the transaction to the retry log instead.
+     */
+    DROP_TO_RETRY_LOG,
+    /**
+     * Render and write the check on the calling thread.
+     */
+    CALLER_RUNS
+}
@@ -0,0 +1,15 @@
+package org.valoshka.cleverBank.enums;
+
+/**
+ * Where rendered transaction checks are stored.
+ */
+public enum CheckStorageMode {
+    /**
+     * One "checks/check_ID.txt" file per check.
+     */
+    FILES,
+    /**
+     * Appended to rolling segment files of the check journal.
+     */
+    JOURNAL
+}
@@ -0,0 +1,15 @@
+package org.valoshka.cleverBank.enums;
+
+/**
+ * The file format of account statements.
+ */
+public enum StatementFormat {
+    /**
+     * A framed text table like the transaction checks, "statement_ACCOUNT_FROM_TO.txt".
+     */
+    TEXT,
+    /**
+     * Comma-separated values with a header line, "statement_ACCOUNT_FROM_TO.csv".
+     */
+    CSV
+}
@@ -0,0 +1,88 @@
+package org.valoshka.cleverBank.jobs;
+
+import org.valoshka.cleverBank.dao.ConnectionManager;
+import org.valoshka.cleverBank.dao.DaoFactory;
+import org.valoshka.cleverBank.dao.DailyBalanceDAO;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closes the days that ended since the last run by writing their closing balances to "daily_balance",
+ * see {@link DailyBalanceDAO}. Each day only reads its own transactions, so a run costs as much as the days
+ * it closes, whatever the age of the accounts.
+ * <p>
+ * Usage: {@code EndOfDayJob [lastDay]}, closing every day up to and including lastDay (yesterday by default).
+ * A day is only closed {@value #GRACE_MINUTES} minutes after its end, so transactions stamped just before
+ * midnight have committed. The in-memory storage engine keeps no daily balances.
+ */
+public class EndOfDayJob {
+
+    private static final long GRACE_MINUTES = 5;
+
+    private static final DailyBalanceDAO dailyBalanceDAO = new DailyBalanceDAO();
+
+    private EndOfDayJob() {
+    }
+
+    public static void main(String[] args) {
+        LocalDate lastDay = args.length > 0 ? LocalDate.parse(args[0]) : LocalDate.now().minusDays(1);
+        closeThrough(lastDay);
+        ConnectionManager.shutdown();
+    }
+
+    /**
+     * Closes every day after the last closed day up to a day, oldest first. On the first run only the given day
+     * is closed. Days that haven't ended yet are left open, and the first failing day stops the run.
+     *
+     * @param lastDay The last day to close.
+     * @return The number of days closed.
+     */
+    public static synchronized int closeThrough(LocalDate lastDay) {
+        if (DaoFactory.isInMemory()) {
+            System.out.println("Daily balances are not kept by the in-memory storage engine");
+            return 0;
+        }
+        LocalDate latestEnded = LocalDateTime.now().minusMinutes(GRACE_MINUTES).toLocalDate().minusDays(1);
+        if (lastDay.isAfter(latestEnded)) {
+            lastDay = latestEnded;
+        }
+
+        Optional<LocalDate> lastClosedDay = dailyBalanceDAO.lastClosedDay();
+        LocalDate day = lastClosedDay.map(closed -> closed.plusDays(1)).orElse(lastDay);
+        int closedDays = 0;
+        for (; !day.isAfter(lastDay); day = day.plusDays(1)) {
+            int accounts = dailyBalanceDAO.closeDay(day);
+            if (accounts < 0) {
+                break;
+            }
+            System.out.println("Day " + day + " closed: " + accounts + " account balances");
+            closedDays++;
+        }
+        return closedDays;
+    }
+
+    /**
+     * Runs the job every day shortly after midnight on a daemon thread, and once right away for the days missed.
+     *
+     * @return The scheduler; shut it down to stop the job.
+     */
+    public static ScheduledExecutorService schedule() {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "end-of-day");
+            thread.setDaemon(true);
+            return thread;
+        });
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime firstRun = now.toLocalDate().plusDays(1).atStartOfDay().plusMinutes(GRACE_MINUTES);
+        scheduler.execute(() -> closeThrough(LocalDate.now().minusDays(1)));
+        scheduler.scheduleAtFixedRate(() -> closeThrough(LocalDate.now().minusDays(1)),
+                Duration.between(now, firstRun).toMillis(), TimeUnit.DAYS.toMillis(1), TimeUnit.MILLISECONDS);
+        return scheduler;
+    }
+}
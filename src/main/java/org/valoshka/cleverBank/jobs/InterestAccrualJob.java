@@ -0,0 +1,184 @@
+package org.valoshka.cleverBank.jobs;
+
+import org.valoshka.cleverBank.dao.ConnectionManager;
+import org.valoshka.cleverBank.dao.DaoFactory;
+import org.valoshka.cleverBank.dao.InterestAccrualDAO;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Accrues the monthly interest of every account, see {@link InterestAccrualDAO}.
+ * <p>
+ * The accounts are split into ranges of "interest.chunkSize" account numbers, found by skipping along the primary
+ * key, and the ranges are accrued in parallel by "interest.workers" threads, each range in its own database
+ * transaction. A period is accrued once: a failed or interrupted run is resumed by running it again, and skips the
+ * accounts already accrued. Interest deposits are recorded as transactions but get no check files.
+ * <p>
+ * Usage: {@code InterestAccrualJob [period]}, with the period as "2023-09" (last month by default).
+ * Settings are read from "interest.properties"; a system property with the same key overrides the file.
+ */
+public class InterestAccrualJob {
+
+    private static final Properties properties = load();
+
+    private static final InterestAccrualDAO interestAccrualDAO = new InterestAccrualDAO();
+
+    private InterestAccrualJob() {
+    }
+
+    public static void main(String[] args) {
+        YearMonth period = args.length > 0 ? YearMonth.parse(args[0]) : YearMonth.now().minusMonths(1);
+        accrue(period);
+        ConnectionManager.shutdown();
+    }
+
+    /**
+     * Accrues the interest of a period on all accounts, printing the timing of every range.
+     *
+     * @param period The accrued month.
+     * @return The number of accounts accrued by this run, or -1 if some range failed and the run has to be resumed.
+     */
+    public static synchronized int accrue(YearMonth period) {
+        if (DaoFactory.isInMemory()) {
+            System.out.println("Interest accrual needs the jdbc storage engine");
+            return -1;
+        }
+        BigDecimal monthlyRate = new BigDecimal(properties.getProperty("interest.annualRatePercent", "0"))
+                .divide(BigDecimal.valueOf(1200), 10, RoundingMode.HALF_EVEN);
+        int workerCount = Integer.parseInt(properties.getProperty("interest.workers", "4"));
+        int chunkSize = Integer.parseInt(properties.getProperty("interest.chunkSize", "1000"));
+
+        Optional<BigDecimal> rate = interestAccrualDAO.openRun(period, monthlyRate);
+        if (rate.isEmpty()) {
+            return 0;
+        }
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "interest-accrual-" + threadCounter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        long start = System.nanoTime();
+        List<Future<Integer>> chunks = new ArrayList<>();
+        boolean complete = true;
+        try {
+            String after = "";
+            while (true) {
+                Optional<String> upTo = interestAccrualDAO.nextBoundary(after, chunkSize);
+                String from = after;
+                chunks.add(workers.submit(() -> accrueChunk(period, rate.get(), from, upTo.orElse(null))));
+                if (upTo.isEmpty()) {
+                    break;
+                }
+                after = upTo.get();
+            }
+        } catch (SQLException | ClassNotFoundException e) {
+            e.printStackTrace();
+            System.out.println("Splitting the accounts into ranges failed");
+            complete = false;
+        }
+
+        int accounts = 0;
+        int failedChunks = 0;
+        try {
+            for (Future<Integer> chunk : chunks) {
+                int accrued = chunk.get();
+                if (accrued < 0) {
+                    failedChunks++;
+                } else {
+                    accounts += accrued;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            complete = false;
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+            complete = false;
+        } finally {
+            workers.shutdownNow();
+        }
+
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        System.out.println("Interest for " + period + ": " + accounts + " accounts in " + chunks.size()
+                + " ranges, " + failedChunks + " failed, " + millis + " ms");
+        if (!complete || failedChunks > 0) {
+            System.out.println("Run the accrual of " + period + " again to resume it");
+            return -1;
+        }
+        interestAccrualDAO.finishRun(period);
+        return accounts;
+    }
+
+    private static int accrueChunk(YearMonth period, BigDecimal rate, String after, String upTo) {
+        long start = System.nanoTime();
+        int accounts = interestAccrualDAO.accrueChunk(period, rate, after, upTo);
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        interestAccrualDAO.recordChunk(period, after, upTo, accounts, millis);
+        System.out.println("Interest range after '" + after + "' up to '" + (upTo == null ? "" : upTo) + "': "
+                + accounts + " accounts, " + millis + " ms");
+        return accounts;
+    }
+
+    /**
+     * Accrues the last month shortly after every month starts, on a daemon thread.
+     *
+     * @return The scheduler; shut it down to stop the job.
+     */
+    public static ScheduledExecutorService schedule() {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "interest-accrual-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduleNext(scheduler);
+        return scheduler;
+    }
+
+    private static void scheduleNext(ScheduledExecutorService scheduler) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime nextRun = YearMonth.from(now).plusMonths(1).atDay(1).atStartOfDay().plusMinutes(30);
+        scheduler.schedule(() -> {
+            accrue(YearMonth.now().minusMonths(1));
+            scheduleNext(scheduler);
+        }, Duration.between(now, nextRun).toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private static Properties load() {
+        Properties loaded = new Properties();
+        try (InputStream inputStream = InterestAccrualJob.class.getClassLoader().getResourceAsStream("interest.properties")) {
+            if (inputStream != null) {
+                loaded.load(inputStream);
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading interest properties file");
+            e.printStackTrace();
+        }
+        for (String name : loaded.stringPropertyNames()) {
+            String override = System.getProperty(name);
+            if (override != null) {
+                loaded.setProperty(name, override);
+            }
+        }
+        return loaded;
+    }
+}
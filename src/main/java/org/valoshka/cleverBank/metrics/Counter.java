@@ -0,0 +1,45 @@
+package org.valoshka.cleverBank.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A counter of events that many threads can increment without contention.
+ */
+public final class Counter implements CounterMBean {
+
+    private final String name;
+    private final LongAdder count = new LongAdder();
+
+    Counter(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Counts one event if metrics are enabled.
+     */
+    public void increment() {
+        if (Metrics.ENABLED) {
+            count.increment();
+        }
+    }
+
+    /**
+     * Counts a number of events if metrics are enabled.
+     *
+     * @param events The number of events.
+     */
+    public void add(long events) {
+        if (Metrics.ENABLED) {
+            count.add(events);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+}
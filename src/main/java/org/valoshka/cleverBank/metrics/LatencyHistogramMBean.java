@@ -0,0 +1,26 @@
+package org.valoshka.cleverBank.metrics;
+
+/**
+ * The JMX view of a {@link LatencyHistogram}; latencies are in microseconds.
+ */
+public interface LatencyHistogramMBean {
+
+    long getCount();
+
+    double getMeanMicros();
+
+    long getP50Micros();
+
+    long getP90Micros();
+
+    long getP99Micros();
+
+    long getP999Micros();
+
+    long getMaxMicros();
+
+    /**
+     * Clears the recorded values.
+     */
+    void reset();
+}
@@ -0,0 +1,151 @@
+package org.valoshka.cleverBank.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The registry of the latency histograms and counters of the application, configured by "metrics.properties".
+ * A system property with the same key, e.g. {@code -Dmetrics.enabled=true}, overrides the file.
+ * <p>
+ * {@link #ENABLED} is a constant, so with metrics switched off the JIT removes every timing and counting call.
+ * Switched on, every metric is registered as an MBean under "org.valoshka.cleverBank", and if
+ * "metrics.dumpIntervalSeconds" is positive, a text table of all metrics is printed periodically.
+ * <p>
+ * Timing a piece of code:
+ * <pre>{@code
+ * private static final LatencyHistogram loadTimer = Metrics.histogram("deposit.load");
+ *
+ * long start = Metrics.start();
+ * ...
+ * loadTimer.recordSince(start);
+ * }</pre>
+ */
+public final class Metrics {
+
+    private static final Properties properties = load();
+
+    /**
+     * True if metrics are recorded; fixed when the class is loaded.
+     */
+    public static final boolean ENABLED = Boolean.parseBoolean(properties.getProperty("metrics.enabled", "false").trim());
+
+    private static final String DOMAIN = "org.valoshka.cleverBank";
+
+    private static final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private static final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    static {
+        long dumpIntervalSeconds = Long.parseLong(properties.getProperty("metrics.dumpIntervalSeconds", "0").trim());
+        if (ENABLED && dumpIntervalSeconds > 0) {
+            ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "metrics-dump");
+                thread.setDaemon(true);
+                return thread;
+            });
+            dumper.scheduleAtFixedRate(() -> System.out.print(dump()),
+                    dumpIntervalSeconds, dumpIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * @return The current {@link System#nanoTime()} if metrics are enabled, 0 otherwise.
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Returns the latency histogram with a name, creating and registering it on first use.
+     *
+     * @param name The name, e.g. "transfer.total".
+     * @return The histogram.
+     */
+    public static LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> register(new LatencyHistogram(key), "Latency", key));
+    }
+
+    /**
+     * Returns the counter with a name, creating and registering it on first use.
+     *
+     * @param name The name, e.g. "transfer.failed".
+     * @return The counter.
+     */
+    public static Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> register(new Counter(key), "Counter", key));
+    }
+
+    private static <T> T register(T metric, String type, String name) {
+        if (!ENABLED) {
+            return metric;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(metric, new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name)));
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+        return metric;
+    }
+
+    /**
+     * Formats all metrics that recorded something as a text table; latencies are in microseconds.
+     *
+     * @return The table, or an empty string if metrics are disabled.
+     */
+    public static String dump() {
+        if (!ENABLED) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%-40s %10s %10s %10s %10s %10s %10s %10s%n",
+                "latency (us)", "count", "mean", "p50", "p90", "p99", "p99.9", "max"));
+        for (LatencyHistogram histogram : new TreeMap<>(histograms).values()) {
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            builder.append(String.format("%-40s %10d %10.1f %10d %10d %10d %10d %10d%n",
+                    histogram.getName(), histogram.getCount(), histogram.getMeanMicros(), histogram.getP50Micros(),
+                    histogram.getP90Micros(), histogram.getP99Micros(), histogram.getP999Micros(), histogram.getMaxMicros()));
+        }
+        for (Counter counter : new TreeMap<>(counters).values()) {
+            if (counter.getCount() == 0) {
+                continue;
+            }
+            builder.append(String.format("%-40s %10d%n", counter.getName(), counter.getCount()));
+        }
+        return builder.toString();
+    }
+
+    private static Properties load() {
+        Properties loaded = new Properties();
+        try (InputStream inputStream = Metrics.class.getClassLoader().getResourceAsStream("metrics.properties")) {
+            if (inputStream != null) {
+                loaded.load(inputStream);
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading metrics properties file");
+            e.printStackTrace();
+        }
+        for (String name : loaded.stringPropertyNames()) {
+            String override = System.getProperty(name);
+            if (override != null) {
+                loaded.setProperty(name, override);
+            }
+        }
+        return loaded;
+    }
+}
@@ -0,0 +1,46 @@
+package org.valoshka.cleverBank.models;
+
+import lombok.Getter;
+import org.valoshka.cleverBank.enums.TransactionType;
+
+import java.time.LocalDateTime;
+
+/**
+ * A completed transaction as seen from one account: deposits and incoming transfers have a positive amount,
+ * withdrawals and outgoing transfers a negative one.
+ */
+public class AccountMovement {
+
+    /**
+     * Creates a movement.
+     *
+     * @param transactionId         The id of the transaction.
+     * @param dateTimeOfTransaction When the transaction happened.
+     * @param transactionType       The type of the transaction.
+     * @param counterpartyAccount   The other account of a transfer, or the account itself.
+     * @param amount                The signed amount.
+     */
+    public AccountMovement(int transactionId, LocalDateTime dateTimeOfTransaction, TransactionType transactionType,
+                           String counterpartyAccount, Money amount) {
+        this.transactionId = transactionId;
+        this.dateTimeOfTransaction = dateTimeOfTransaction;
+        this.transactionType = transactionType;
+        this.counterpartyAccount = counterpartyAccount;
+        this.amount = amount;
+    }
+
+    @Getter
+    private final int transactionId;
+
+    @Getter
+    private final LocalDateTime dateTimeOfTransaction;
+
+    @Getter
+    private final TransactionType transactionType;
+
+    @Getter
+    private final String counterpartyAccount;
+
+    @Getter
+    private final Money amount;
+}
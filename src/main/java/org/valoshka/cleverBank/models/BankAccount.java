@@ -24,7 +24,7 @@ public class BankAccount {
         this.accountNumber = accountNumber;
         this.bankName = bankName;
         this.createdAt = LocalDate.now();
-        this.balance = 0;
+        this.balance = Money.zero(currency);
         this.currency = currency;
     }
 
@@ -43,7 +43,7 @@ public class BankAccount {
 
     @Getter
     @Setter
-    private double balance;
+    private Money balance;
 
     @Getter
     @Setter
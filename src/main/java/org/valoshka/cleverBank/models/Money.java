@@ -0,0 +1,184 @@
+package org.valoshka.cleverBank.models;
+
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+import java.util.Objects;
+
+/**
+ * An immutable amount of money held as a whole number of minor units (kopecks, cents) together with its currency.
+ * <p>
+ * Arithmetic and comparison work on the {@code long} directly, so amounts are exact and nothing is parsed or boxed.
+ * The scale is fixed at two fraction digits, the scale of the {@code DECIMAL(18, 2)} balance and amount columns.
+ * Amounts of different currencies can't be added, subtracted or compared.
+ */
+public final class Money implements Comparable<Money> {
+
+    /**
+     * The number of fraction digits stored, matching the database columns.
+     */
+    public static final int SCALE = 2;
+
+    private static final long MINOR_UNITS_PER_UNIT = 100;
+
+    private Money(long minorUnits, Currency currency) {
+        this.minorUnits = minorUnits;
+        this.currency = Objects.requireNonNull(currency, "currency");
+    }
+
+    /**
+     * Creates an amount from minor units.
+     *
+     * @param minorUnits The amount in minor units, e.g. 15080 for 150.80.
+     * @param currency   The currency of the amount.
+     * @return The amount.
+     */
+    public static Money of(long minorUnits, Currency currency) {
+        return new Money(minorUnits, currency);
+    }
+
+    /**
+     * Creates an amount from a decimal value, e.g. a value read with {@link java.sql.ResultSet#getBigDecimal}.
+     *
+     * @param value    The amount in major units with at most two fraction digits.
+     * @param currency The currency of the amount.
+     * @return The amount.
+     * @throws ArithmeticException If the value has more than two fraction digits or doesn't fit in a long.
+     */
+    public static Money of(BigDecimal value, Currency currency) {
+        return new Money(value.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact(), currency);
+    }
+
+    /**
+     * Creates a zero amount.
+     *
+     * @param currency The currency of the amount.
+     * @return The zero amount.
+     */
+    public static Money zero(Currency currency) {
+        return new Money(0, currency);
+    }
+
+    /**
+     * Adds an amount of the same currency.
+     *
+     * @param other The amount to add.
+     * @return The sum.
+     * @throws IllegalArgumentException If the currencies differ.
+     * @throws ArithmeticException      If the sum overflows.
+     */
+    public Money plus(Money other) {
+        checkCurrency(other);
+        return new Money(Math.addExact(minorUnits, other.minorUnits), currency);
+    }
+
+    /**
+     * Subtracts an amount of the same currency.
+     *
+     * @param other The amount to subtract.
+     * @return The difference.
+     * @throws IllegalArgumentException If the currencies differ.
+     * @throws ArithmeticException      If the difference overflows.
+     */
+    public Money minus(Money other) {
+        checkCurrency(other);
+        return new Money(Math.subtractExact(minorUnits, other.minorUnits), currency);
+    }
+
+    /**
+     * Converts into another currency at an exchange rate, rounding half-even to two fraction digits.
+     *
+     * @param currency The currency to convert into.
+     * @param rate     The number of units of that currency one unit of this currency buys.
+     * @return The converted amount.
+     * @throws ArithmeticException If the converted amount doesn't fit in a long.
+     */
+    public Money convertTo(Currency currency, BigDecimal rate) {
+        return of(toBigDecimal().multiply(rate).setScale(SCALE, RoundingMode.HALF_EVEN), currency);
+    }
+
+    /**
+     * Compares with an amount of the same currency.
+     *
+     * @param other The amount to compare with.
+     * @return A negative number, zero or a positive number as this amount is less than, equal to or greater.
+     * @throws IllegalArgumentException If the currencies differ.
+     */
+    @Override
+    public int compareTo(Money other) {
+        checkCurrency(other);
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    /**
+     * @return True if the amount is below zero.
+     */
+    public boolean isNegative() {
+        return minorUnits < 0;
+    }
+
+    /**
+     * @return True if the amount is zero.
+     */
+    public boolean isZero() {
+        return minorUnits == 0;
+    }
+
+    /**
+     * @param other An amount, possibly of another currency.
+     * @return True if both amounts have the same currency.
+     */
+    public boolean isSameCurrency(Money other) {
+        return currency.equals(other.currency);
+    }
+
+    /**
+     * Converts to a decimal value with two fraction digits, for binding to a DECIMAL parameter.
+     *
+     * @return The amount in major units.
+     */
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    private void checkCurrency(Money other) {
+        if (!currency.equals(other.currency)) {
+            throw new IllegalArgumentException("Currency mismatch: " + currency + " and " + other.currency);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Money)) {
+            return false;
+        }
+        Money money = (Money) o;
+        return minorUnits == money.minorUnits && currency.equals(money.currency);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(minorUnits) + currency.hashCode();
+    }
+
+    /**
+     * Formats the amount with two fraction digits and without the currency, e.g. "150.80".
+     */
+    @Override
+    public String toString() {
+        long units = Math.abs(minorUnits / MINOR_UNITS_PER_UNIT);
+        long fraction = Math.abs(minorUnits % MINOR_UNITS_PER_UNIT);
+        return (minorUnits < 0 ? "-" : "") + units + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+
+    @Getter
+    private final long minorUnits;
+
+    @Getter
+    private final Currency currency;
+}
@@ -3,15 +3,27 @@ package org.valoshka.cleverBank.models;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
-import org.valoshka.cleverBank.dao.BankAccountDAO;
+import org.valoshka.cleverBank.concurrency.AccountLockManager;
+import org.valoshka.cleverBank.concurrency.GroupCommitter;
+import org.valoshka.cleverBank.dao.DaoFactory;
+import org.valoshka.cleverBank.dao.ExchangeRates;
+import org.valoshka.cleverBank.dao.HotAccounts;
 import org.valoshka.cleverBank.dao.TransactionDAO;
 import org.valoshka.cleverBank.enums.TransactionStatus;
 import org.valoshka.cleverBank.enums.TransactionType;
+import org.valoshka.cleverBank.metrics.Counter;
+import org.valoshka.cleverBank.metrics.LatencyHistogram;
+import org.valoshka.cleverBank.metrics.Metrics;
 import org.valoshka.cleverBank.statements.BankStatement;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Currency;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * Represents a financial transaction in the banking system.
@@ -20,168 +32,244 @@ import java.util.Optional;
 @NoArgsConstructor
 public class Transaction {
 
+    private static final PostingMetrics depositMetrics = new PostingMetrics("deposit");
+    private static final PostingMetrics withdrawalMetrics = new PostingMetrics("withdrawal");
+
+    private static final LatencyHistogram transferTimer = Metrics.histogram("transfer.total");
+    private static final LatencyHistogram transferLockTimer = Metrics.histogram("transfer.lock");
+    private static final LatencyHistogram transferPostingTimer = Metrics.histogram("transfer.posting");
+    private static final LatencyHistogram transferCheckTimer = Metrics.histogram("transfer.check");
+    private static final Counter transferCompleted = Metrics.counter("transfer.completed");
+    private static final Counter transferFailed = Metrics.counter("transfer.failed");
+    private static final Counter lockBusy = Metrics.counter("posting.lockBusy");
+
     /**
      * Creates a new transaction with the specified details.
      *
      * @param transactionType  The type of the transaction (e.g., DEPOSIT, WITHDRAWAL, TRANSFER).
      * @param sourceAccount    The source bank account for the transaction.
      * @param targetAccount    The target bank account for the transaction.
-     * @param amount           The amount of money involved in the transaction.
-     * @param currency         The currency used for the transaction.
+     * @param amount           The amount of money involved in the transaction, in the currency of the transaction.
      */
-    public Transaction(TransactionType transactionType, BankAccount sourceAccount, BankAccount targetAccount, double amount, Currency currency) {
+    public Transaction(TransactionType transactionType, BankAccount sourceAccount, BankAccount targetAccount, Money amount) {
         this.dateTimeOfTransaction = LocalDateTime.now();
         this.transactionType = transactionType;
         this.sourceAccount = sourceAccount;
         this.targetAccount = targetAccount;
         this.amount = amount;
-        this.currency = currency;
     }
 
     /**
      * Performs a deposit or withdrawal transaction for the specified target account.
+     * The balance update and the ledger row are applied atomically in one database transaction,
+     * see {@link TransactionDAO#post(String, Money, TransactionType)}, and postings to the same account
+     * are serialized by the {@link AccountLockManager}, except postings to a {@link HotAccounts hot account},
+     * which only lock one of its shards in the database. With group commit enabled the posting is applied
+     * together with concurrent ones by the {@link GroupCommitter} instead.
      *
      * @param targetAccountNumber The account number of the target account.
-     * @param amount              The amount of money to deposit or withdraw.
+     * @param amount              The amount of money to deposit or withdraw, in the currency of the account.
      * @param transactionType     The type of the transaction (DEPOSIT or WITHDRAWAL).
      * @return True if the transaction is successful, false otherwise.
      */
-    public static boolean depositAndWithdrawal(String targetAccountNumber, double amount, TransactionType transactionType) {
-        if (amount < 0) {
+    public static boolean depositAndWithdrawal(String targetAccountNumber, Money amount, TransactionType transactionType) {
+        if (amount.isNegative()) {
             System.out.println("Your amount should be more than Zero");
             return false;
         }
+        PostingMetrics metrics = metricsOf(transactionType);
+        long start = Metrics.start();
+        try {
+            if (GroupCommitter.isEnabled()) {
+                return report(GroupCommitter.getInstance()
+                        .apply(TransferRequest.posting(transactionType, targetAccountNumber, amount)));
+            }
+            AccountLockManager lockManager = AccountLockManager.getInstance();
+            List<String> lockedAccountNumbers = lockedAccountNumbers(targetAccountNumber);
+            if (!lockManager.lockAll(lockedAccountNumbers)) {
+                lockBusy.increment();
+                System.out.println("Account is busy, try again later");
+                return false;
+            }
+            metrics.lock.recordSince(start);
+
+            Optional<Transaction> optionalTransaction;
+            try {
+                long phase = Metrics.start();
+                TransactionDAO transactionDAO = DaoFactory.getTransactionDAO();
+                optionalTransaction = transactionDAO.post(targetAccountNumber, amount, transactionType);
+                metrics.posting.recordSince(phase);
+            } finally {
+                lockManager.unlockAll(lockedAccountNumbers);
+            }
 
-        BankAccountDAO bankAccountDAO = new BankAccountDAO();
-        Optional<BankAccount> optionalAccount = bankAccountDAO.get(targetAccountNumber);
-
-        if (optionalAccount.isPresent()) {
-            BankAccount targetAccount = optionalAccount.get();
-            synchronized (targetAccount) {
-                try {
-                    double currentBalance = targetAccount.getBalance();
-                    double newBalance = (transactionType == TransactionType.DEPOSIT)
-                            ? currentBalance + amount
-                            : currentBalance - amount;
-
-                    if (newBalance < 0 && transactionType == TransactionType.WITHDRAWAL) {
-                        System.out.println("Insufficient funds");
-                        return false;
-                    }
-
-                    targetAccount.setBalance(newBalance);
-
-                    // Firstly update account
-                    // We are working with target account balance!
-                    bankAccountDAO.update(targetAccount, new String[]{String.valueOf(targetAccount.getBalance())});
-
-                    Transaction transaction = new Transaction(
-                            transactionType,
-                            targetAccount,
-                            targetAccount,
-                            amount,
-                            targetAccount.getCurrency());
-                    transaction.setTransactionStatus(TransactionStatus.COMPLETED);
-
-                    TransactionDAO transactionDAO = new TransactionDAO();
-                    int transactionId = transactionDAO.save(transaction);
-                    transaction.setId(transactionId);
-
-                    //save transaction check to folder
-                    BankStatement.saveTransactionCheck(transaction);
-
-                    Thread.sleep(100);
-                    return true;
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                    return false;
-                }
+            if (optionalTransaction.isEmpty()) {
+                System.out.println("Account doesn't exist");
+                return false;
             }
-        } else {
-            System.out.println("Account doesn't exist");
-            return false;
+            Transaction transaction = optionalTransaction.get();
+            if (transaction.getTransactionStatus() == TransactionStatus.FAILED) {
+                metrics.failed.increment();
+                boolean sameCurrency = transaction.getTargetAccount().getCurrency().equals(amount.getCurrency());
+                System.out.println(sameCurrency ? "Insufficient funds" : "Currency mismatch");
+                return false;
+            }
+
+            //save transaction check to folder
+            long phase = Metrics.start();
+            BankStatement.saveTransactionCheck(transaction);
+            metrics.check.recordSince(phase);
+            metrics.completed.increment();
+            return true;
+        } finally {
+            metrics.total.recordSince(start);
         }
     }
 
     /**
      * Performs a transfer transaction between two bank accounts.
+     * The debit, the credit and the ledger row are applied atomically in one database transaction,
+     * see {@link TransactionDAO#transfer(String, String, Money)}, while both accounts are locked
+     * in the {@link AccountLockManager}; a {@link HotAccounts hot account} is not locked there.
+     * If the target account holds another currency, the amount is converted at the rate of the
+     * {@link ExchangeRates} snapshot. With group commit enabled the transfer is applied
+     * together with concurrent postings by the {@link GroupCommitter} instead.
      *
      * @param sourceAccountNumber The account number of the source account.
      * @param targetAccountNumber The account number of the target account.
-     * @param amount              The amount of money to transfer.
+     * @param amount              The amount of money to transfer, in the currency of the source account.
      * @return True if the transaction is successful, false otherwise.
      */
-    public static boolean transfer(String sourceAccountNumber, String targetAccountNumber, double amount) {
-        if (amount < 0) {
+    public static boolean transfer(String sourceAccountNumber, String targetAccountNumber, Money amount) {
+        if (amount.isNegative()) {
             System.out.println("Your amount should be more than Zero");
             return false;
         }
+        if (sourceAccountNumber.equals(targetAccountNumber)) {
+            System.out.println("Source and target accounts should be different");
+            return false;
+        }
+        long start = Metrics.start();
+        try {
+            if (GroupCommitter.isEnabled()) {
+                return report(GroupCommitter.getInstance()
+                        .apply(new TransferRequest(sourceAccountNumber, targetAccountNumber, amount)));
+            }
+
+            AccountLockManager lockManager = AccountLockManager.getInstance();
+            List<String> lockedAccountNumbers = lockedAccountNumbers(sourceAccountNumber, targetAccountNumber);
+            if (!lockManager.lockAll(lockedAccountNumbers)) {
+                lockBusy.increment();
+                System.out.println("Account is busy, try again later");
+                return false;
+            }
+            transferLockTimer.recordSince(start);
+
+            Optional<Transaction> optionalTransaction;
+            try {
+                long phase = Metrics.start();
+                TransactionDAO transactionDAO = DaoFactory.getTransactionDAO();
+                optionalTransaction = transactionDAO.transfer(sourceAccountNumber, targetAccountNumber, amount);
+                transferPostingTimer.recordSince(phase);
+            } finally {
+                lockManager.unlockAll(lockedAccountNumbers);
+            }
+
+            if (optionalTransaction.isEmpty()) {
+                System.out.println("Account doesn't exist");
+                return false;
+            }
+
+            Transaction transaction = optionalTransaction.get();
+
+            //save transaction check to folder
+            long phase = Metrics.start();
+            BankStatement.saveTransactionCheck(transaction);
+            transferCheckTimer.recordSince(phase);
 
-        int transactionId;
-        BankAccountDAO bankAccountDAO = new BankAccountDAO();
-        TransactionDAO transactionDAO = new TransactionDAO();
-        Optional<BankAccount> optionalSourceAccount = bankAccountDAO.get(sourceAccountNumber);
-        Optional<BankAccount> optionalTargetAccount = bankAccountDAO.get(targetAccountNumber);
-
-        if (optionalSourceAccount.isPresent() && optionalTargetAccount.isPresent()) {
-            BankAccount sourceAccount = optionalSourceAccount.get();
-            BankAccount targetAccount = optionalTargetAccount.get();
-            synchronized (targetAccount) {
-                try {
-                    double newBalanceSourceAccount = sourceAccount.getBalance() - amount;
-                    double newBalanceTargetAccount = targetAccount.getBalance() + amount;
-
-                    if (newBalanceSourceAccount < 0) {
-                        System.out.println("Insufficient funds");
-                        Transaction transaction = new Transaction(
-                                TransactionType.TRANSFER,
-                                sourceAccount,
-                                targetAccount,
-                                amount,
-                                targetAccount.getCurrency());
-                        transaction.setTransactionStatus(TransactionStatus.FAILED);
-
-                        transactionId = transactionDAO.save(transaction);
-                        transaction.setId(transactionId);
-
-                        //save transaction check to folder
-                        BankStatement.saveTransactionCheck(transaction);
-                        return false;
-                    }
-
-                    sourceAccount.setBalance(newBalanceSourceAccount);
-                    targetAccount.setBalance(newBalanceTargetAccount);
-
-                    // Firstly update account
-                    // We are working with target account balance!
-                    bankAccountDAO.update(sourceAccount, new String[]{String.valueOf(sourceAccount.getBalance())});
-                    bankAccountDAO.update(targetAccount, new String[]{String.valueOf(targetAccount.getBalance())});
-
-                    Transaction transaction = new Transaction(
-                            TransactionType.TRANSFER,
-                            sourceAccount,
-                            targetAccount,
-                            amount,
-                            targetAccount.getCurrency());
-                    transaction.setTransactionStatus(TransactionStatus.COMPLETED);
-
-                    transactionId = transactionDAO.save(transaction);
-                    transaction.setId(transactionId);
-
-                    //save transaction check to folder
-                    BankStatement.saveTransactionCheck(transaction);
-
-                    Thread.sleep(100);
-                    return true;
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                    return false;
-                }
+            if (transaction.getTransactionStatus() == TransactionStatus.FAILED) {
+                transferFailed.increment();
+                System.out.println(transaction.getFailureReason());
+                return false;
             }
+            transferCompleted.increment();
+            return true;
+        } finally {
+            transferTimer.recordSince(start);
+        }
+    }
+
+
+    /**
+     * @return The accounts to lock in the {@link AccountLockManager}: all but the hot ones, whose
+     * postings don't conflict on a single row.
+     */
+    private static List<String> lockedAccountNumbers(String... accountNumbers) {
+        return Stream.of(accountNumbers)
+                .filter(accountNumber -> !HotAccounts.isHot(accountNumber))
+                .distinct()
+                .toList();
+    }
+
+    /**
+     * Prints why a posting applied by the {@link GroupCommitter} failed.
+     *
+     * @return True if the posting completed.
+     */
+    private static boolean report(TransferResult result) {
+        boolean completed = result.getStatus() == TransactionStatus.COMPLETED;
+        TransactionType transactionType = result.getRequest().getTransactionType();
+        if (transactionType == TransactionType.TRANSFER) {
+            (completed ? transferCompleted : transferFailed).increment();
         } else {
-            System.out.println("Account doesn't exist");
-            return false;
+            PostingMetrics metrics = metricsOf(transactionType);
+            (completed ? metrics.completed : metrics.failed).increment();
         }
+        if (!completed) {
+            System.out.println(result.getReason());
+        }
+        return completed;
+    }
+
+    /**
+     * Validates and applies a batch of transfers, deposits and withdrawals, see {@link TransactionDAO#transferBatch(List)}.
+     * All accounts of the batch but the hot ones are locked in the {@link AccountLockManager} while it is applied,
+     * and a check is saved for every recorded transaction.
+     *
+     * @param requests The postings to apply, in order.
+     * @return One COMPLETED or FAILED result per request, in the order of the requests.
+     */
+    public static List<TransferResult> transferBatch(List<TransferRequest> requests) {
+        Set<String> accountNumbers = new HashSet<>();
+        for (TransferRequest request : requests) {
+            accountNumbers.add(request.getSourceAccountNumber());
+            accountNumbers.add(request.getTargetAccountNumber());
+        }
+        accountNumbers.removeIf(HotAccounts::isHot);
+
+        AccountLockManager lockManager = AccountLockManager.getInstance();
+        if (!lockManager.lockAll(accountNumbers)) {
+            System.out.println("Accounts are busy, try again later");
+            return requests.stream()
+                    .map(request -> TransferResult.failed(request, "Accounts are busy", null))
+                    .toList();
+        }
+
+        List<TransferResult> results;
+        try {
+            TransactionDAO transactionDAO = DaoFactory.getTransactionDAO();
+            results = transactionDAO.transferBatch(requests);
+        } finally {
+            lockManager.unlockAll(accountNumbers);
+        }
+
+        //save transaction checks to folder
+        for (TransferResult result : results) {
+            if (result.getTransaction() != null) {
+                BankStatement.saveTransactionCheck(result.getTransaction());
+            }
+        }
+        return results;
     }
 
 
@@ -211,10 +299,78 @@ public class Transaction {
 
     @Getter
     @Setter
-    private double amount;
+    private Money amount;
+
+    /**
+     * The amount credited to the target account of a transfer between accounts in different currencies,
+     * in the currency of the target account; null if nothing was converted.
+     */
+    @Getter
+    @Setter
+    private Money convertedAmount;
 
+    /**
+     * The exchange rate the amount was converted at; null if nothing was converted.
+     */
     @Getter
     @Setter
-    private Currency currency;
+    private BigDecimal exchangeRate;
+
+    /**
+     * @return The currency of the transaction amount.
+     */
+    public Currency getCurrency() {
+        return amount.getCurrency();
+    }
+
+    /**
+     * @return The amount credited to the target account: the converted amount if the transfer was converted,
+     * the amount otherwise.
+     */
+    public Money getCreditedAmount() {
+        return convertedAmount != null ? convertedAmount : amount;
+    }
+
+    /**
+     * Tells why a FAILED transfer did not apply, from the currencies of its accounts.
+     *
+     * @return "Currency mismatch" if the amount is not in the currency of the source account,
+     * "No exchange rate" if it could not be converted into the currency of the target account,
+     * "Insufficient funds" otherwise.
+     */
+    public String getFailureReason() {
+        if (!sourceAccount.getCurrency().equals(amount.getCurrency())) {
+            return "Currency mismatch";
+        }
+        if (!targetAccount.getCurrency().equals(amount.getCurrency()) && exchangeRate == null) {
+            return "No exchange rate";
+        }
+        return "Insufficient funds";
+    }
+
+    private static PostingMetrics metricsOf(TransactionType transactionType) {
+        return transactionType == TransactionType.DEPOSIT ? depositMetrics : withdrawalMetrics;
+    }
+
+    /**
+     * The latency histograms of the phases of a deposit or a withdrawal, and the counts of its outcomes.
+     */
+    private static final class PostingMetrics {
+        private final LatencyHistogram lock;
+        private final LatencyHistogram posting;
+        private final LatencyHistogram check;
+        private final LatencyHistogram total;
+        private final Counter completed;
+        private final Counter failed;
+
+        private PostingMetrics(String posting) {
+            this.lock = Metrics.histogram(posting + ".lock");
+            this.posting = Metrics.histogram(posting + ".posting");
+            this.check = Metrics.histogram(posting + ".check");
+            this.total = Metrics.histogram(posting + ".total");
+            this.completed = Metrics.counter(posting + ".completed");
+            this.failed = Metrics.counter(posting + ".failed");
+        }
+    }
 }
 
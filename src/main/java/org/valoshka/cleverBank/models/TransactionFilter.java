@@ -0,0 +1,43 @@
+package org.valoshka.cleverBank.models;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.valoshka.cleverBank.enums.TransactionStatus;
+import org.valoshka.cleverBank.enums.TransactionType;
+
+import java.time.LocalDateTime;
+
+/**
+ * Narrows the transaction history of an account read with {@code TransactionDAO.history}.
+ * Every criterion that is not set, left null, matches all transactions.
+ */
+public class TransactionFilter {
+
+    /**
+     * Only transactions of this type.
+     */
+    @Getter
+    @Setter
+    private TransactionType transactionType;
+
+    /**
+     * Only transactions with this status.
+     */
+    @Getter
+    @Setter
+    private TransactionStatus transactionStatus;
+
+    /**
+     * Only transactions at or after this moment.
+     */
+    @Getter
+    @Setter
+    private LocalDateTime from;
+
+    /**
+     * Only transactions before this moment.
+     */
+    @Getter
+    @Setter
+    private LocalDateTime to;
+}
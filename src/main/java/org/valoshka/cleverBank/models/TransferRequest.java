@@ -0,0 +1,56 @@
+package org.valoshka.cleverBank.models;
+
+import lombok.Getter;
+import org.valoshka.cleverBank.enums.TransactionType;
+
+/**
+ * A single posting of a batch passed to {@link Transaction#transferBatch(java.util.List)}:
+ * a transfer, or a deposit or withdrawal whose source and target are the same account.
+ */
+public class TransferRequest {
+
+    /**
+     * Creates a transfer request.
+     *
+     * @param sourceAccountNumber The account number of the source account.
+     * @param targetAccountNumber The account number of the target account.
+     * @param amount              The amount of money to transfer.
+     */
+    public TransferRequest(String sourceAccountNumber, String targetAccountNumber, Money amount) {
+        this(TransactionType.TRANSFER, sourceAccountNumber, targetAccountNumber, amount);
+    }
+
+    private TransferRequest(TransactionType transactionType, String sourceAccountNumber, String targetAccountNumber, Money amount) {
+        this.transactionType = transactionType;
+        this.sourceAccountNumber = sourceAccountNumber;
+        this.targetAccountNumber = targetAccountNumber;
+        this.amount = amount;
+    }
+
+    /**
+     * Creates a deposit or withdrawal request.
+     *
+     * @param transactionType DEPOSIT or WITHDRAWAL.
+     * @param accountNumber   The account number.
+     * @param amount          The amount of money to deposit or withdraw.
+     * @return The request.
+     */
+    public static TransferRequest posting(TransactionType transactionType, String accountNumber, Money amount) {
+        if (transactionType == TransactionType.TRANSFER) {
+            throw new IllegalArgumentException("A transfer needs a source and a target account");
+        }
+        return new TransferRequest(transactionType, accountNumber, accountNumber, amount);
+    }
+
+    @Getter
+    private final TransactionType transactionType;
+
+    @Getter
+    private final String sourceAccountNumber;
+
+    @Getter
+    private final String targetAccountNumber;
+
+    @Getter
+    private final Money amount;
+}
@@ -0,0 +1,74 @@
+package org.valoshka.cleverBank.models;
+
+import lombok.Getter;
+import org.valoshka.cleverBank.enums.TransactionStatus;
+
+/**
+ * The outcome of one {@link TransferRequest} of a batch.
+ */
+public class TransferResult {
+
+    /**
+     * Creates a successful result.
+     *
+     * @param request     The request this result belongs to.
+     * @param transaction The recorded transaction.
+     * @return A COMPLETED result.
+     */
+    public static TransferResult completed(TransferRequest request, Transaction transaction) {
+        return new TransferResult(request, TransactionStatus.COMPLETED, null, transaction, false);
+    }
+
+    /**
+     * Creates a failed result.
+     *
+     * @param request     The request this result belongs to.
+     * @param reason      Why the transfer was not applied.
+     * @param transaction The recorded FAILED transaction, or null if nothing was recorded.
+     * @return A FAILED result.
+     */
+    public static TransferResult failed(TransferRequest request, String reason, Transaction transaction) {
+        return new TransferResult(request, TransactionStatus.FAILED, reason, transaction, false);
+    }
+
+    /**
+     * Creates the result of a request whose batch could not be committed. Nothing of the batch was recorded,
+     * and the request may succeed on its own.
+     *
+     * @param request The request this result belongs to.
+     * @param message The database error.
+     * @return A FAILED result.
+     */
+    public static TransferResult databaseError(TransferRequest request, String message) {
+        return new TransferResult(request, TransactionStatus.FAILED, "Database error: " + message, null, true);
+    }
+
+    private TransferResult(TransferRequest request, TransactionStatus status, String reason, Transaction transaction,
+                           boolean databaseError) {
+        this.request = request;
+        this.status = status;
+        this.reason = reason;
+        this.transaction = transaction;
+        this.databaseError = databaseError;
+    }
+
+    @Getter
+    private final TransferRequest request;
+
+    @Getter
+    private final TransactionStatus status;
+
+    @Getter
+    private final String reason;
+
+    @Getter
+    private final Transaction transaction;
+
+    @Getter
+    private final boolean databaseError;
+
+    @Override
+    public String toString() {
+        return status + (reason == null ? "" : " (" + reason + ")");
+    }
+}
@@ -0,0 +1,135 @@
+package org.valoshka.cleverBank.statements;
+
+import org.valoshka.cleverBank.dao.DaoFactory;
+import org.valoshka.cleverBank.enums.StatementFormat;
+import org.valoshka.cleverBank.models.AccountMovement;
+import org.valoshka.cleverBank.models.BankAccount;
+import org.valoshka.cleverBank.models.Money;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * A utility class for creating account statements: the opening balance, every movement of a period and
+ * the closing balance.
+ * <p>
+ * Movements are streamed from the database and written one by one, so memory use doesn't depend on the
+ * length of the statement.
+ */
+public class AccountStatement {
+
+    private static final String FOLDER_PATH = "statements";
+
+    /**
+     * Writes the statement of an account for a period to the "statements" folder
+     * as "statement_ACCOUNT_FROM_TO.txt" or ".csv".
+     *
+     * @param accountNumber The account number.
+     * @param from          The first day of the period.
+     * @param to            The last day of the period, inclusive.
+     * @param format        The format of the statement.
+     * @return The path of the statement file, or an empty Optional if the statement couldn't be written;
+     * a partly written file is deleted then.
+     */
+    public static Optional<Path> save(String accountNumber, LocalDate from, LocalDate to, StatementFormat format) {
+        Path file = Paths.get(FOLDER_PATH, "statement_" + accountNumber + "_" + from + "_" + to +
+                (format == StatementFormat.CSV ? ".csv" : ".txt"));
+        try {
+            Files.createDirectories(file.getParent());
+            boolean written;
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                written = write(accountNumber, from, to, format, writer);
+            }
+            if (!written) {
+                Files.deleteIfExists(file);
+                return Optional.empty();
+            }
+            System.out.println("Statement saved to: " + file);
+            return Optional.of(file);
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            System.err.println("Error saving statement.");
+            deletePartialFile(file);
+            return Optional.empty();
+        }
+    }
+
+    private static void deletePartialFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Can't delete the partial statement " + file);
+        }
+    }
+
+    /**
+     * Writes the statement of an account for a period.
+     * Movements in another currency than the account's, which cross-currency transfers recorded before
+     * conversions were supported left on the source side, are left out of the statement and its totals
+     * and reported on the console.
+     *
+     * @param accountNumber The account number.
+     * @param from          The first day of the period.
+     * @param to            The last day of the period, inclusive.
+     * @param format        The format of the statement.
+     * @param out           The destination; it is flushed but not closed.
+     * @return False if the account doesn't exist or its balance can't be read.
+     * @throws IOException If the destination can't be written.
+     */
+    public static boolean write(String accountNumber, LocalDate from, LocalDate to, StatementFormat format,
+                                Writer out) throws IOException {
+        Optional<BankAccount> account = DaoFactory.getBankAccountDAO().get(accountNumber);
+        if (account.isEmpty()) {
+            System.out.println("Account not found: " + accountNumber);
+            return false;
+        }
+        LocalDateTime start = from.atStartOfDay();
+        LocalDateTime end = to.plusDays(1).atStartOfDay();
+
+        Optional<Money> openingBalance = DaoFactory.getTransactionDAO().balanceAt(accountNumber, start);
+        if (openingBalance.isEmpty()) {
+            return false;
+        }
+
+        StatementWriter writer = format == StatementFormat.CSV ? new CsvStatementWriter(out) : new TextStatementWriter(out);
+        Money zero = Money.zero(openingBalance.get().getCurrency());
+        Money credits = zero;
+        Money debits = zero;
+        long skipped = 0;
+
+        writer.begin(account.get(), from, to, openingBalance.get());
+        try (Stream<AccountMovement> movements = DaoFactory.getTransactionDAO().streamMovements(accountNumber, start, end)) {
+            Iterator<AccountMovement> iterator = movements.iterator();
+            while (iterator.hasNext()) {
+                AccountMovement movement = iterator.next();
+                if (!movement.getAmount().isSameCurrency(zero)) {
+                    skipped++;
+                    System.out.println("Skipping transaction " + movement.getTransactionId() + " of " + accountNumber +
+                            " in " + movement.getAmount().getCurrency() + ": the account holds " + zero.getCurrency());
+                    continue;
+                }
+                writer.movement(movement);
+                if (movement.getAmount().isNegative()) {
+                    debits = debits.plus(movement.getAmount());
+                } else {
+                    credits = credits.plus(movement.getAmount());
+                }
+            }
+        }
+        writer.end(credits, debits, openingBalance.get().plus(credits).plus(debits));
+        if (skipped > 0) {
+            System.out.println(skipped + " movements in another currency were left out of the statement of " + accountNumber);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,89 @@
+package org.valoshka.cleverBank.statements;
+
+
+import de.vandermeer.asciitable.AsciiTable;
+import de.vandermeer.asciitable.AsciiTableException;
+import de.vandermeer.asciithemes.TA_GridThemes;
+import org.valoshka.cleverBank.enums.TransactionType;
+import org.valoshka.cleverBank.models.Money;
+import org.valoshka.cleverBank.models.Transaction;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Renders transaction checks by building an {@link AsciiTable} for every check.
+ * This is the reference layout; {@link CompiledCheckRenderer} produces the same bytes without the table
+ * and falls back to this renderer for values it can't lay out itself.
+ */
+public class AsciiTableCheckRenderer implements CheckRenderer {
+
+    @Override
+    public byte[] render(Transaction transaction) {
+        return createCheckTemplate(transaction).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Creates a check template for a given transaction.
+     *
+     * @param transaction The transaction for which to create a check template.
+     * @return The check template as a formatted string.
+     */
+    String createCheckTemplate(Transaction transaction) {
+        String name = String.format("%44s", "Банковский чек\n");
+        String overallCheck;
+
+        try {
+            AsciiTable at = new AsciiTable();
+
+            at.addRule();
+            at.addRow("Чек:", transaction.getId());
+            at.addRule();
+            at.addRow(transaction.getDateTimeOfTransaction().toLocalDate(), transaction.getDateTimeOfTransaction().toLocalTime());
+            at.addRule();
+            at.addRow("Тип транзакции:", transaction.getTransactionType());
+            at.addRule();
+
+            if (transaction.getTransactionType() == TransactionType.TRANSFER) {
+                addSourceAccountInfoToTable(at, transaction);
+            }
+
+            at.addRow("Банк получателя:", transaction.getTargetAccount().getBankName());
+            at.addRule();
+            at.addRow("Счёт получателя:", transaction.getSourceAccount().getAccountNumber());
+            at.addRule();
+            at.addRow("Сумма:", transaction.getAmount() + " " + transaction.getCurrency().getSymbol());
+            at.addRule();
+            if (transaction.getConvertedAmount() != null) {
+                Money convertedAmount = transaction.getConvertedAmount();
+                at.addRow("Сумма зачисления:", convertedAmount + " " + convertedAmount.getCurrency().getSymbol());
+                at.addRule();
+                at.addRow("Курс:", transaction.getExchangeRate().toPlainString());
+                at.addRule();
+            }
+
+            at.getContext().setWidth(74);
+            at.getContext().setGridTheme(TA_GridThemes.OUTSIDE);
+
+            overallCheck = name + at.render();
+
+        } catch (NullPointerException | AsciiTableException e) {
+            e.printStackTrace();
+            return "Can't create check template";
+        }
+
+        return overallCheck;
+    }
+
+    /**
+     * Adds source account information to the ASCII table.
+     *
+     * @param at           The ASCII table to which to add source account information.
+     * @param transaction  The transaction containing source account details.
+     */
+    private void addSourceAccountInfoToTable(AsciiTable at, Transaction transaction) {
+        at.addRow("Банк отправителя:", transaction.getSourceAccount().getBankName());
+        at.addRule();
+        at.addRow("Банк отправителя:", transaction.getSourceAccount().getBankName());
+        at.addRule();
+    }
+}
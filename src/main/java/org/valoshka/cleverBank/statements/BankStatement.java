@@ -1,16 +1,17 @@
 package org.valoshka.cleverBank.statements;
 
 
-import de.vandermeer.asciitable.AsciiTable;
-import de.vandermeer.asciitable.AsciiTableException;
-import de.vandermeer.asciithemes.TA_GridThemes;
-import org.valoshka.cleverBank.enums.TransactionType;
+import org.valoshka.cleverBank.enums.CheckStorageMode;
+import org.valoshka.cleverBank.metrics.LatencyHistogram;
+import org.valoshka.cleverBank.metrics.Metrics;
 import org.valoshka.cleverBank.models.Transaction;
+import org.valoshka.cleverBank.statements.journal.CheckJournal;
 
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Properties;
 
 /**
  * A utility class for creating and saving bank transaction checks.
@@ -18,106 +19,130 @@ import java.nio.file.Paths;
 public class BankStatement {
     // How to get the generated id of transaction? Using date and time! It's unique! I'm genius
 
+    private static final String FOLDER_PATH = "checks";
+
+    private static final CheckRenderer renderer = new CompiledCheckRenderer();
+
+    private static final LatencyHistogram renderTimer = Metrics.histogram("check.render");
+    private static final LatencyHistogram writeTimer = Metrics.histogram("check.write");
+
+    private static final CheckStorageMode storageMode = CheckStorageMode.valueOf(
+            CheckProperties.get().getProperty("check.storage", "FILES").trim());
+
+    private static volatile boolean folderReady;
+
+    private static CheckJournal journal;
+
     /**
-     * Saves a transaction check to a file in the "checks" folder.
+     * Queues a transaction check to be saved to the "checks" folder by the {@link CheckWriter}.
+     * The caller doesn't wait for the check to be rendered or written.
      *
      * @param transaction The transaction for which to create and save a check.
      */
     public static void saveTransactionCheck(Transaction transaction) {
-        String checkTemplate;
-        checkTemplate = createCheckTemplate(transaction);
-        saveCheck(checkTemplate, transaction.getId());
+        CheckWriter.getInstance().submit(transaction);
     }
 
     /**
-     * Saves a check template to a file with a given check ID.
+     * Renders a transaction check and writes it to a file in the "checks" folder on the calling thread.
      *
-     * @param templateCheck The check template to save.
-     * @param checkId       The unique ID of the check.
+     * @param transaction The transaction for which to create and save a check.
      */
-    private static void saveCheck(String templateCheck, int checkId) {
-        String folderPath = "checks";
-
-        Path folder = Paths.get(folderPath);
+    static void writeTransactionCheck(Transaction transaction) {
+        long start = Metrics.start();
+        byte[] checkTemplate = renderer.render(transaction);
+        renderTimer.recordSince(start);
+
+        start = Metrics.start();
+        if (storageMode == CheckStorageMode.JOURNAL) {
+            appendToJournal(checkTemplate, transaction.getId());
+        } else {
+            saveCheck(checkTemplate, transaction.getId());
+        }
+        writeTimer.recordSince(start);
+    }
 
-        if (!folder.toFile().exists()) {
-            boolean created = folder.toFile().mkdirs();
-            if (created) {
-                System.out.println("Folder created: " + folderPath);
-            } else {
-                System.err.println("Failed to create folder: " + folderPath);
+    /**
+     * Appends a check template to the check journal, opening the journal on first use.
+     *
+     * @param templateCheck The rendered check to save, encoded as UTF-8.
+     * @param checkId       The unique ID of the check.
+     */
+    private static synchronized void appendToJournal(byte[] templateCheck, int checkId) {
+        try {
+            if (journal == null) {
+                Properties properties = CheckProperties.get();
+                journal = new CheckJournal(
+                        Paths.get(properties.getProperty("check.journal.directory", "checks/journal")),
+                        Integer.parseInt(properties.getProperty("check.journal.segmentSizeBytes", "67108864")));
             }
+            journal.append(checkId, templateCheck);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.err.println("Error saving check to journal.");
         }
+    }
 
-        String fileName = String.format("check_%d.txt", checkId);
-
-        String filePath = Paths.get(folderPath, fileName).toString();
-
-        try (FileWriter writer = new FileWriter(filePath)) {
-            writer.write(templateCheck);
-            System.out.println("Check saved to: " + filePath);
+    /**
+     * Flushes and closes the check journal if it was opened.
+     */
+    static synchronized void closeStorage() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close();
         } catch (IOException e) {
             e.printStackTrace();
-            System.err.println("Error saving check.");
         }
+        journal = null;
     }
 
     /**
-     * Creates a check template for a given transaction.
+     * Saves a check template to a file with a given check ID.
      *
-     * @param transaction The transaction for which to create a check template.
-     * @return The check template as a formatted string.
+     * @param templateCheck The rendered check to save, encoded as UTF-8.
+     * @param checkId       The unique ID of the check.
      */
-    private static String createCheckTemplate(Transaction transaction) {
-        String name = String.format("%44s", "Банковский чек\n");
-        String overallCheck;
-
-        try {
-            AsciiTable at = new AsciiTable();
-
-            at.addRule();
-            at.addRow("Чек:", transaction.getId());
-            at.addRule();
-            at.addRow(transaction.getDateTimeOfTransaction().toLocalDate(), transaction.getDateTimeOfTransaction().toLocalTime());
-            at.addRule();
-            at.addRow("Тип транзакции:", transaction.getTransactionType());
-            at.addRule();
-
-            if (transaction.getTransactionType() == TransactionType.TRANSFER) {
-                addSourceAccountInfoToTable(at, transaction);
-            }
+    private static void saveCheck(byte[] templateCheck, int checkId) {
+        ensureFolder();
 
-            at.addRow("Банк получателя:", transaction.getTargetAccount().getBankName());
-            at.addRule();
-            at.addRow("Счёт получателя:", transaction.getSourceAccount().getAccountNumber());
-            at.addRule();
-            at.addRow("Сумма:", transaction.getAmount() + " " + transaction.getCurrency().getSymbol());
-            at.addRule();
+        String fileName = "check_" + checkId + ".txt";
 
-            at.getContext().setWidth(74);
-            at.getContext().setGridTheme(TA_GridThemes.OUTSIDE);
+        String filePath = Paths.get(FOLDER_PATH, fileName).toString();
 
-            overallCheck = name + at.render();
-
-        } catch (NullPointerException | AsciiTableException e) {
+        try (FileOutputStream outputStream = new FileOutputStream(filePath)) {
+            outputStream.write(templateCheck);
+            System.out.println("Check saved to: " + filePath);
+        } catch (IOException e) {
             e.printStackTrace();
-            return "Can't create check template";
+            System.err.println("Error saving check.");
         }
-
-        return overallCheck;
     }
 
     /**
-     * Adds source account information to the ASCII table.
-     *
-     * @param at           The ASCII table to which to add source account information.
-     * @param transaction  The transaction containing source account details.
+     * Creates the "checks" folder if needed; the file system is only asked once per run.
      */
-    private static void addSourceAccountInfoToTable(AsciiTable at, Transaction transaction) {
-        at.addRow("Банк отправителя:", transaction.getSourceAccount().getBankName());
-        at.addRule();
-        at.addRow("Банк отправителя:", transaction.getSourceAccount().getBankName());
-        at.addRule();
+    private static void ensureFolder() {
+        if (folderReady) {
+            return;
+        }
+        synchronized (BankStatement.class) {
+            if (folderReady) {
+                return;
+            }
+            Path folder = Paths.get(FOLDER_PATH);
+
+            if (!folder.toFile().exists()) {
+                boolean created = folder.toFile().mkdirs();
+                if (created) {
+                    System.out.println("Folder created: " + FOLDER_PATH);
+                } else {
+                    System.err.println("Failed to create folder: " + FOLDER_PATH);
+                }
+            }
+            folderReady = true;
+        }
     }
 
 }
@@ -0,0 +1,40 @@
+package org.valoshka.cleverBank.statements;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Holds the settings of check rendering and storage loaded from "checks.properties".
+ * A system property with the same key, e.g. {@code -Dcheck.storage=JOURNAL}, overrides the file.
+ */
+final class CheckProperties {
+
+    private static final Properties properties = load();
+
+    private CheckProperties() {
+    }
+
+    static Properties get() {
+        return properties;
+    }
+
+    private static Properties load() {
+        Properties loaded = new Properties();
+        try (InputStream inputStream = CheckProperties.class.getClassLoader().getResourceAsStream("checks.properties")) {
+            if (inputStream != null) {
+                loaded.load(inputStream);
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading checks properties file");
+            e.printStackTrace();
+        }
+        for (String name : loaded.stringPropertyNames()) {
+            String override = System.getProperty(name);
+            if (override != null) {
+                loaded.setProperty(name, override);
+            }
+        }
+        return loaded;
+    }
+}
@@ -0,0 +1,17 @@
+package org.valoshka.cleverBank.statements;
+
+import org.valoshka.cleverBank.models.Transaction;
+
+/**
+ * Renders the text of a transaction check.
+ */
+public interface CheckRenderer {
+
+    /**
+     * Renders the check of a transaction.
+     *
+     * @param transaction The transaction for which to create a check.
+     * @return The check text encoded as UTF-8.
+     */
+    byte[] render(Transaction transaction);
+}
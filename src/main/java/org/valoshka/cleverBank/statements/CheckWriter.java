@@ -0,0 +1,246 @@
+package org.valoshka.cleverBank.statements;
+
+import org.valoshka.cleverBank.concurrency.VirtualThreads;
+import org.valoshka.cleverBank.enums.BackpressurePolicy;
+import org.valoshka.cleverBank.metrics.Counter;
+import org.valoshka.cleverBank.metrics.LatencyHistogram;
+import org.valoshka.cleverBank.metrics.Metrics;
+import org.valoshka.cleverBank.models.Transaction;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes transaction checks in the background so that postings don't wait for disk I/O.
+ * <p>
+ * Checks are queued in a bounded in-memory queue and rendered and saved by worker threads
+ * (virtual threads where available). When the queue is full the configured {@link BackpressurePolicy}
+ * decides what happens. The queue is drained before the JVM exits.
+ */
+public class CheckWriter {
+
+    private static final LatencyHistogram submitTimer = Metrics.histogram("check.submit");
+    private static final LatencyHistogram lagTimer = Metrics.histogram("check.queueLag");
+    private static final Counter droppedCounter = Metrics.counter("check.dropped");
+
+    private static final CheckWriter instance = new CheckWriter(CheckProperties.get());
+
+    private final BlockingQueue<PendingCheck> queue;
+    private final BackpressurePolicy policy;
+    private final Path retryLog;
+    private final long shutdownTimeoutMillis;
+    private final List<Thread> workers = new ArrayList<>();
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+    private final AtomicLong lastLagNanos = new AtomicLong();
+    private final LongAccumulator maxLagNanos = new LongAccumulator(Math::max, 0);
+
+    private volatile boolean running = true;
+
+    private CheckWriter(Properties properties) {
+        this.queue = new ArrayBlockingQueue<>(Integer.parseInt(properties.getProperty("check.writer.queueCapacity", "10000")));
+        this.policy = BackpressurePolicy.valueOf(properties.getProperty("check.writer.backpressure", "BLOCK").trim());
+        this.retryLog = Paths.get(properties.getProperty("check.writer.retryLog", "checks/retry.log"));
+        this.shutdownTimeoutMillis = Long.parseLong(properties.getProperty("check.writer.shutdownTimeoutMillis", "10000"));
+
+        int workerCount = Integer.parseInt(properties.getProperty("check.writer.workers", "2"));
+        ThreadFactory threadFactory = VirtualThreads.factory("check-writer");
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = threadFactory.newThread(this::drain);
+            workers.add(worker);
+            worker.start();
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "check-writer-shutdown"));
+    }
+
+    /**
+     * Returns the check writer shared by the application.
+     *
+     * @return The shared check writer.
+     */
+    public static CheckWriter getInstance() {
+        return instance;
+    }
+
+    /**
+     * Queues the check of a transaction for writing.
+     *
+     * @param transaction The transaction to write a check for.
+     */
+    public void submit(Transaction transaction) {
+        PendingCheck check = new PendingCheck(transaction, System.nanoTime());
+        if (!running) {
+            write(check);
+            return;
+        }
+        if (queue.offer(check)) {
+            submitTimer.recordSince(check.enqueuedAt);
+            return;
+        }
+        switch (policy) {
+            case BLOCK -> {
+                try {
+                    queue.put(check);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    logForRetry(transaction);
+                }
+            }
+            case DROP_TO_RETRY_LOG -> logForRetry(transaction);
+            case CALLER_RUNS -> {
+                callerRuns.increment();
+                write(check);
+            }
+        }
+        submitTimer.recordSince(check.enqueuedAt);
+    }
+
+    private void drain() {
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingCheck check = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (check != null) {
+                    write(check);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void write(PendingCheck check) {
+        long lag = System.nanoTime() - check.enqueuedAt;
+        lastLagNanos.set(lag);
+        maxLagNanos.accumulate(lag);
+        lagTimer.record(lag);
+        try {
+            BankStatement.writeTransactionCheck(check.transaction);
+            written.increment();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            logForRetry(check.transaction);
+        }
+    }
+
+    /**
+     * Records a transaction whose check was not written, so the check can be regenerated later.
+     */
+    private synchronized void logForRetry(Transaction transaction) {
+        dropped.increment();
+        droppedCounter.increment();
+        try {
+            Path parent = retryLog.getParent();
+            if (parent != null) {
+                parent.toFile().mkdirs();
+            }
+            try (FileWriter writer = new FileWriter(retryLog.toFile(), true)) {
+                writer.write(transaction.getId() + ";" + transaction.getDateTimeOfTransaction() + ";"
+                        + transaction.getTransactionType() + ";" + transaction.getTransactionStatus() + System.lineSeparator());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.err.println("Error writing check retry log.");
+        }
+    }
+
+    /**
+     * Stops accepting work into the queue and waits until the workers have written every queued check.
+     * Checks submitted afterwards are written on the calling thread.
+     */
+    public void shutdown() {
+        running = false;
+        long deadline = System.currentTimeMillis() + shutdownTimeoutMillis;
+        for (Thread worker : workers) {
+            try {
+                worker.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        PendingCheck check;
+        while ((check = queue.poll()) != null) {
+            write(check);
+        }
+        BankStatement.closeStorage();
+    }
+
+    /**
+     * Returns the number of checks waiting to be written.
+     *
+     * @return The current queue depth.
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Returns how long the most recently written check waited in the queue.
+     *
+     * @return The lag of the last check in milliseconds.
+     */
+    public double getLastLagMillis() {
+        return lastLagNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * Returns the longest time a check waited in the queue.
+     *
+     * @return The maximum lag in milliseconds.
+     */
+    public double getMaxLagMillis() {
+        return maxLagNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * Returns the number of checks written so far.
+     *
+     * @return The written check count.
+     */
+    public long getWritten() {
+        return written.sum();
+    }
+
+    /**
+     * Returns the number of checks sent to the retry log instead of being written.
+     *
+     * @return The dropped check count.
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Returns the number of checks written on the posting thread because the queue was full.
+     *
+     * @return The caller-runs count.
+     */
+    public long getCallerRuns() {
+        return callerRuns.sum();
+    }
+
+    private static final class PendingCheck {
+        private final Transaction transaction;
+        private final long enqueuedAt;
+
+        private PendingCheck(Transaction transaction, long enqueuedAt) {
+            this.transaction = transaction;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package org.valoshka.cleverBank.statements;
+
+import org.valoshka.cleverBank.enums.TransactionType;
+import org.valoshka.cleverBank.models.BankAccount;
+import org.valoshka.cleverBank.models.Money;
+import org.valoshka.cleverBank.models.Transaction;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Arrays;
+
+/**
+ * Renders transaction checks from a layout compiled once, byte for byte like {@link AsciiTableCheckRenderer}.
+ * <p>
+ * The title, the frame lines and the labels with their padding are prepared when the class loads.
+ * Rendering only copies them and the values into a per-thread character buffer and encodes that buffer
+ * into a per-thread byte buffer, so the returned array is the only allocation for ordinary checks.
+ * Values that the table would wrap or reformat (longer than their column, or with unusual whitespace)
+ * are rendered by the AsciiTable renderer instead.
+ */
+public class CompiledCheckRenderer implements CheckRenderer {
+
+    private static final int INNER_WIDTH = 72;
+    private static final int LABEL_WIDTH = 36;
+    private static final int VALUE_WIDTH = 35;
+
+    private static final char[] TITLE = String.format("%44s", "Банковский чек\n").toCharArray();
+    private static final char[] TOP = frame('┌', '─', '┐');
+    private static final char[] RULE = frame('│', ' ', '│');
+    private static final char[] BOTTOM = frame('└', '─', '┘');
+
+    private static final char[] CHECK_LABEL = label("Чек:");
+    private static final char[] TYPE_LABEL = label("Тип транзакции:");
+    private static final char[] SOURCE_BANK_LABEL = label("Банк отправителя:");
+    private static final char[] TARGET_BANK_LABEL = label("Банк получателя:");
+    private static final char[] TARGET_ACCOUNT_LABEL = label("Счёт получателя:");
+    private static final char[] AMOUNT_LABEL = label("Сумма:");
+    private static final char[] CONVERTED_AMOUNT_LABEL = label("Сумма зачисления:");
+    private static final char[] RATE_LABEL = label("Курс:");
+
+    private static final ThreadLocal<Buffers> buffers = ThreadLocal.withInitial(Buffers::new);
+
+    private final CheckRenderer fallback = new AsciiTableCheckRenderer();
+
+    @Override
+    public byte[] render(Transaction transaction) {
+        if (!canRender(transaction)) {
+            return fallback.render(transaction);
+        }
+        Buffers buffers = CompiledCheckRenderer.buffers.get();
+        CharBuffer out = buffers.chars;
+        out.clear();
+
+        out.put(TITLE);
+        out.put(TOP);
+        out.put('\n');
+
+        out.put(CHECK_LABEL);
+        value(out, putInt(out, transaction.getId(), 1));
+        line(out, RULE);
+
+        LocalDateTime dateTime = transaction.getDateTimeOfTransaction();
+        out.put('│');
+        int dateLength = putDate(out, dateTime.toLocalDate());
+        pad(out, LABEL_WIDTH - dateLength);
+        out.put(' ');
+        value(out, putTime(out, dateTime.toLocalTime()));
+        line(out, RULE);
+
+        out.put(TYPE_LABEL);
+        value(out, put(out, transaction.getTransactionType().name()));
+        line(out, RULE);
+
+        if (transaction.getTransactionType() == TransactionType.TRANSFER) {
+            String sourceBank = transaction.getSourceAccount().getBankName();
+            out.put(SOURCE_BANK_LABEL);
+            value(out, put(out, sourceBank));
+            line(out, RULE);
+            out.put(SOURCE_BANK_LABEL);
+            value(out, put(out, sourceBank));
+            line(out, RULE);
+        }
+
+        out.put(TARGET_BANK_LABEL);
+        value(out, put(out, transaction.getTargetAccount().getBankName()));
+        line(out, RULE);
+
+        out.put(TARGET_ACCOUNT_LABEL);
+        value(out, put(out, transaction.getSourceAccount().getAccountNumber()));
+        line(out, RULE);
+
+        out.put(AMOUNT_LABEL);
+        value(out, putAmount(out, transaction.getAmount()));
+
+        if (transaction.getConvertedAmount() != null) {
+            line(out, RULE);
+            out.put(CONVERTED_AMOUNT_LABEL);
+            value(out, putAmount(out, transaction.getConvertedAmount()));
+            line(out, RULE);
+            out.put(RATE_LABEL);
+            value(out, put(out, transaction.getExchangeRate().toPlainString()));
+        }
+        out.put('\n');
+        out.put(BOTTOM);
+
+        return buffers.encode();
+    }
+
+    /**
+     * Checks that every value is present and lays out as a single padded line in its column.
+     */
+    private boolean canRender(Transaction transaction) {
+        BankAccount source = transaction.getSourceAccount();
+        BankAccount target = transaction.getTargetAccount();
+        if (transaction.getDateTimeOfTransaction() == null || transaction.getTransactionType() == null
+                || source == null || target == null || transaction.getAmount() == null) {
+            return false;
+        }
+        if (transaction.getDateTimeOfTransaction().getYear() < 0 || transaction.getDateTimeOfTransaction().getYear() > 9999) {
+            return false;
+        }
+        if (transaction.getTransactionType() == TransactionType.TRANSFER && !fits(source.getBankName())) {
+            return false;
+        }
+        if (transaction.getConvertedAmount() != null && (!amountFits(transaction.getConvertedAmount())
+                || transaction.getExchangeRate() == null || !fits(transaction.getExchangeRate().toPlainString()))) {
+            return false;
+        }
+        return fits(target.getBankName())
+                && fits(source.getAccountNumber())
+                && amountFits(transaction.getAmount());
+    }
+
+    private static boolean fits(String value) {
+        if (value == null || value.isEmpty() || value.length() > VALUE_WIDTH) {
+            return false;
+        }
+        char previous = ' ';
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < ' ' || Character.isSurrogate(c) || c == '<' || c == '&'
+                    || (Character.isWhitespace(c) && (c != ' ' || previous == ' '))) {
+                return false;
+            }
+            previous = c;
+        }
+        return previous != ' ';
+    }
+
+    private static boolean amountFits(Money amount) {
+        String symbol = amount.getCurrency().getSymbol();
+        long units = Math.abs(amount.getMinorUnits() / 100);
+        int length = (amount.isNegative() ? 1 : 0) + digitCount(units) + 3 + 1 + symbol.length();
+        return length <= VALUE_WIDTH && fits(symbol);
+    }
+
+    private static void line(CharBuffer out, char[] frame) {
+        out.put('\n');
+        out.put(frame);
+        out.put('\n');
+    }
+
+    private static void value(CharBuffer out, int length) {
+        pad(out, VALUE_WIDTH - length);
+        out.put('│');
+    }
+
+    private static void pad(CharBuffer out, int count) {
+        for (int i = 0; i < count; i++) {
+            out.put(' ');
+        }
+    }
+
+    private static int put(CharBuffer out, String value) {
+        out.put(value);
+        return value.length();
+    }
+
+    /**
+     * Writes an amount the way {@link Money#toString()} does, followed by the currency symbol.
+     */
+    private static int putAmount(CharBuffer out, Money amount) {
+        int start = out.position();
+        if (amount.isNegative()) {
+            out.put('-');
+        }
+        putLong(out, Math.abs(amount.getMinorUnits() / 100), 1);
+        out.put('.');
+        putLong(out, Math.abs(amount.getMinorUnits() % 100), 2);
+        out.put(' ');
+        out.put(amount.getCurrency().getSymbol());
+        return out.position() - start;
+    }
+
+    private static int putInt(CharBuffer out, int value, int minDigits) {
+        return putLong(out, value, minDigits);
+    }
+
+    private static int putLong(CharBuffer out, long value, int minDigits) {
+        int start = out.position();
+        if (value < 0) {
+            out.put('-');
+            value = -value;
+        }
+        int digits = Math.max(minDigits, digitCount(value));
+        int end = out.position() + digits;
+        for (int i = end - 1; i >= out.position(); i--) {
+            out.put(i, (char) ('0' + value % 10));
+            value /= 10;
+        }
+        out.position(end);
+        return end - start;
+    }
+
+    private static int digitCount(long value) {
+        int count = 1;
+        while (value >= 10) {
+            value /= 10;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Writes a date the way {@link LocalDate#toString()} does for years 0 to 9999.
+     */
+    private static int putDate(CharBuffer out, LocalDate date) {
+        int start = out.position();
+        putInt(out, date.getYear(), 4);
+        out.put('-');
+        putInt(out, date.getMonthValue(), 2);
+        out.put('-');
+        putInt(out, date.getDayOfMonth(), 2);
+        return out.position() - start;
+    }
+
+    /**
+     * Writes a time the way {@link LocalTime#toString()} does.
+     */
+    private static int putTime(CharBuffer out, LocalTime time) {
+        int start = out.position();
+        putInt(out, time.getHour(), 2);
+        out.put(':');
+        putInt(out, time.getMinute(), 2);
+        int second = time.getSecond();
+        int nano = time.getNano();
+        if (second > 0 || nano > 0) {
+            out.put(':');
+            putInt(out, second, 2);
+            if (nano > 0) {
+                out.put('.');
+                if (nano % 1_000_000 == 0) {
+                    putInt(out, nano / 1_000_000, 3);
+                } else if (nano % 1000 == 0) {
+                    putInt(out, nano / 1000, 6);
+                } else {
+                    putInt(out, nano, 9);
+                }
+            }
+        }
+        return out.position() - start;
+    }
+
+    private static char[] frame(char left, char fill, char right) {
+        char[] frame = new char[INNER_WIDTH + 2];
+        Arrays.fill(frame, fill);
+        frame[0] = left;
+        frame[frame.length - 1] = right;
+        return frame;
+    }
+
+    private static char[] label(String text) {
+        char[] label = new char[LABEL_WIDTH + 2];
+        Arrays.fill(label, ' ');
+        label[0] = '│';
+        text.getChars(0, text.length(), label, 1);
+        return label;
+    }
+
+    /**
+     * The reusable buffers of one thread.
+     */
+    private static final class Buffers {
+        private final CharBuffer chars = CharBuffer.allocate(4096);
+        private final ByteBuffer bytes = ByteBuffer.allocate(4096 * 3);
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        private byte[] encode() {
+            chars.flip();
+            bytes.clear();
+            encoder.reset();
+            encoder.encode(chars, bytes, true);
+            encoder.flush(bytes);
+            return Arrays.copyOf(bytes.array(), bytes.position());
+        }
+    }
+}
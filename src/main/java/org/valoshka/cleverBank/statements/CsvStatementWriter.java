@@ -0,0 +1,64 @@
+package org.valoshka.cleverBank.statements;
+
+import org.valoshka.cleverBank.models.AccountMovement;
+import org.valoshka.cleverBank.models.BankAccount;
+import org.valoshka.cleverBank.models.Money;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
+
+/**
+ * Writes account statements as CSV: a header line, then an OPENING_BALANCE row, one row per movement
+ * and a CLOSING_BALANCE row. Amounts are signed and have two fraction digits.
+ */
+class CsvStatementWriter implements StatementWriter {
+
+    private final Writer out;
+    private LocalDate to;
+
+    CsvStatementWriter(Writer out) {
+        this.out = out;
+    }
+
+    @Override
+    public void begin(BankAccount account, LocalDate from, LocalDate to, Money openingBalance) throws IOException {
+        this.to = to;
+        out.write("trans_id,date_time,type,counterparty,amount,currency\n");
+        row("", from.atStartOfDay().toString(), "OPENING_BALANCE", account.getAccountNumber(), openingBalance);
+    }
+
+    @Override
+    public void movement(AccountMovement movement) throws IOException {
+        row(String.valueOf(movement.getTransactionId()), movement.getDateTimeOfTransaction().toString(),
+                movement.getTransactionType().name(), movement.getCounterpartyAccount(), movement.getAmount());
+    }
+
+    @Override
+    public void end(Money credits, Money debits, Money closingBalance) throws IOException {
+        row("", to.plusDays(1).atStartOfDay().toString(), "CLOSING_BALANCE", "", closingBalance);
+        out.flush();
+    }
+
+    private void row(String id, String dateTime, String type, String counterparty, Money amount) throws IOException {
+        out.write(id);
+        out.write(',');
+        out.write(dateTime);
+        out.write(',');
+        out.write(type);
+        out.write(',');
+        out.write(quote(counterparty));
+        out.write(',');
+        out.write(amount.toString());
+        out.write(',');
+        out.write(amount.getCurrency().getCurrencyCode());
+        out.write('\n');
+    }
+
+    private static String quote(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,38 @@
+package org.valoshka.cleverBank.statements;
+
+import org.valoshka.cleverBank.models.AccountMovement;
+import org.valoshka.cleverBank.models.BankAccount;
+import org.valoshka.cleverBank.models.Money;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+/**
+ * Writes one account statement piece by piece, so a statement never has to be held in memory.
+ */
+interface StatementWriter {
+
+    /**
+     * Writes the statement header.
+     *
+     * @param account        The account of the statement.
+     * @param from           The first day of the period.
+     * @param to             The last day of the period.
+     * @param openingBalance The balance at the start of the first day.
+     */
+    void begin(BankAccount account, LocalDate from, LocalDate to, Money openingBalance) throws IOException;
+
+    /**
+     * Writes one movement; movements come oldest first.
+     */
+    void movement(AccountMovement movement) throws IOException;
+
+    /**
+     * Writes the statement footer.
+     *
+     * @param credits        The sum of the positive movements.
+     * @param debits         The sum of the negative movements, as a negative amount.
+     * @param closingBalance The balance at the end of the last day.
+     */
+    void end(Money credits, Money debits, Money closingBalance) throws IOException;
+}
@@ -0,0 +1,77 @@
+package org.valoshka.cleverBank.statements;
+
+import org.valoshka.cleverBank.models.AccountMovement;
+import org.valoshka.cleverBank.models.BankAccount;
+import org.valoshka.cleverBank.models.Money;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Writes account statements as a framed text table in the style of the transaction checks.
+ * Every line has a fixed width, so lines are written as they come.
+ */
+class TextStatementWriter implements StatementWriter {
+
+    private static final int INNER_WIDTH = 92;
+    private static final int LABEL_WIDTH = 22;
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * The counterparty column holds a whole account number, up to 40 characters.
+     */
+    private static final String ROW_FORMAT = "│%-19s %-10s %-40.40s %20s│\n";
+
+    private final Writer out;
+
+    TextStatementWriter(Writer out) {
+        this.out = out;
+    }
+
+    @Override
+    public void begin(BankAccount account, LocalDate from, LocalDate to, Money openingBalance) throws IOException {
+        out.write(String.format("%54s%n", "Выписка по счёту"));
+        out.write(frame('┌', '─', '┐'));
+        field("Счёт:", account.getAccountNumber());
+        field("Банк:", account.getBankName());
+        field("Клиент:", account.getOwner() == null ? "" : account.getOwner().getName());
+        field("Период:", from + " — " + to);
+        field("Входящий остаток:", amountOf(openingBalance));
+        out.write(frame('├', '─', '┤'));
+        out.write(String.format(ROW_FORMAT, "Дата", "Операция", "Счёт контрагента", "Сумма"));
+        out.write(frame('├', '─', '┤'));
+    }
+
+    @Override
+    public void movement(AccountMovement movement) throws IOException {
+        out.write(String.format(ROW_FORMAT,
+                DATE_TIME.format(movement.getDateTimeOfTransaction()),
+                movement.getTransactionType().name(),
+                movement.getCounterpartyAccount(),
+                amountOf(movement.getAmount())));
+    }
+
+    @Override
+    public void end(Money credits, Money debits, Money closingBalance) throws IOException {
+        out.write(frame('├', '─', '┤'));
+        field("Поступления:", amountOf(credits));
+        field("Списания:", amountOf(debits));
+        field("Исходящий остаток:", amountOf(closingBalance));
+        out.write(frame('└', '─', '┘'));
+        out.flush();
+    }
+
+    private void field(String label, String value) throws IOException {
+        out.write(String.format("│%-" + LABEL_WIDTH + "s%-" + (INNER_WIDTH - LABEL_WIDTH) + "s│%n", label, value));
+    }
+
+    private static String amountOf(Money amount) {
+        return amount + " " + amount.getCurrency().getSymbol();
+    }
+
+    private static String frame(char left, char fill, char right) {
+        return left + String.valueOf(fill).repeat(INNER_WIDTH) + right + "\n";
+    }
+}
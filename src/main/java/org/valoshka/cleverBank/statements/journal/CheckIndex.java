@@ -0,0 +1,89 @@
+package org.valoshka.cleverBank.statements.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A fixed-width offset index of the {@link CheckJournal}, addressed directly by check id.
+ * <p>
+ * The entry of check {@code id} lives at byte {@code id * 16} and holds
+ * {@code [int segment sequence + 1][int payload length][long payload offset]}, so a lookup is one
+ * positional read. An all-zero entry means the check is not in the journal. Ids are dense database
+ * identities, and on file systems with sparse files unused ranges take no space.
+ */
+class CheckIndex {
+
+    static final int ENTRY_BYTES = 16;
+
+    private final FileChannel channel;
+
+    private CheckIndex(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    static CheckIndex open(Path path) throws IOException {
+        return new CheckIndex(FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE));
+    }
+
+    static CheckIndex openReadOnly(Path path) throws IOException {
+        return new CheckIndex(FileChannel.open(path, StandardOpenOption.READ));
+    }
+
+    void put(int checkId, int segmentSequence, long offset, int length) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(ENTRY_BYTES);
+        entry.putInt(segmentSequence + 1).putInt(length).putLong(offset).flip();
+        long position = (long) checkId * ENTRY_BYTES;
+        while (entry.hasRemaining()) {
+            position += channel.write(entry, position);
+        }
+    }
+
+    /**
+     * Reads the index entry of a check.
+     *
+     * @return The entry, or null if the check is not in the journal.
+     */
+    Entry get(int checkId) throws IOException {
+        long position = (long) checkId * ENTRY_BYTES;
+        if (checkId < 0 || position + ENTRY_BYTES > channel.size()) {
+            return null;
+        }
+        ByteBuffer entry = ByteBuffer.allocate(ENTRY_BYTES);
+        while (entry.hasRemaining()) {
+            if (channel.read(entry, position + entry.position()) < 0) {
+                return null;
+            }
+        }
+        entry.flip();
+        int segment = entry.getInt() - 1;
+        int length = entry.getInt();
+        long offset = entry.getLong();
+        return segment < 0 ? null : new Entry(segment, offset, length);
+    }
+
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    void close() throws IOException {
+        if (channel.isOpen()) {
+            channel.close();
+        }
+    }
+
+    static final class Entry {
+        final int segmentSequence;
+        final long offset;
+        final int length;
+
+        Entry(int segmentSequence, long offset, int length) {
+            this.segmentSequence = segmentSequence;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
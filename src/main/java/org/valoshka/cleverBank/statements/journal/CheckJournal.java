@@ -0,0 +1,170 @@
+package org.valoshka.cleverBank.statements.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+/**
+ * An append-only store of rendered transaction checks.
+ * <p>
+ * Instead of one file per check, checks are appended to rolling segment files in one directory.
+ * A new segment is started when the current one is full or the date changes. Every append also writes
+ * the check's position into a {@link CheckIndex}, so reading a check back by id costs two positional reads.
+ */
+public class CheckJournal {
+
+    private static final String INDEX_FILE = "checks.idx";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final CheckIndex index;
+    private final Map<Integer, Path> segments = new ConcurrentHashMap<>();
+
+    private JournalSegment current;
+    private int nextSequence;
+
+    /**
+     * Opens the journal in the given directory, creating it if needed. A segment left unsealed by a previous
+     * run is truncated to its last complete record; appends always go to a new segment.
+     *
+     * @param directory   The journal directory.
+     * @param segmentSize The maximum size of one segment file in bytes.
+     * @throws IOException If the directory or the index can't be opened.
+     */
+    public CheckJournal(Path directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+
+        int lastSequence = -1;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "segment-*.log")) {
+            for (Path file : files) {
+                int sequence = JournalSegment.sequenceOf(file);
+                if (sequence >= 0) {
+                    segments.put(sequence, file);
+                    lastSequence = Math.max(lastSequence, sequence);
+                }
+            }
+        }
+        if (lastSequence >= 0) {
+            JournalSegment.repair(segments.get(lastSequence));
+        }
+        this.nextSequence = lastSequence + 1;
+        this.index = CheckIndex.open(directory.resolve(INDEX_FILE));
+    }
+
+    /**
+     * Appends a rendered check.
+     *
+     * @param checkId The id of the check (the transaction id).
+     * @param check   The rendered check.
+     * @throws IOException If the check can't be written.
+     */
+    public synchronized void append(int checkId, byte[] check) throws IOException {
+        if (JournalSegment.RECORD_HEADER_BYTES + check.length > segmentSize) {
+            throw new IOException("Check " + checkId + " doesn't fit into a journal segment of " + segmentSize + " bytes.");
+        }
+        LocalDate today = LocalDate.now();
+        if (current == null || !current.hasRoomFor(check.length) || !current.getDate().equals(today)) {
+            rotate(today);
+        }
+        int offset = current.append(checkId, check);
+        index.put(checkId, current.getSequence(), offset, check.length);
+    }
+
+    private void rotate(LocalDate date) throws IOException {
+        if (current != null) {
+            current.seal();
+            index.force();
+        }
+        current = JournalSegment.create(directory, nextSequence++, date, segmentSize);
+        segments.put(current.getSequence(), current.getPath());
+    }
+
+    /**
+     * Reads a check back by id.
+     *
+     * @param checkId The id of the check.
+     * @return The rendered check, or an empty Optional if the journal doesn't contain it.
+     * @throws IOException If the index or the segment can't be read.
+     */
+    public Optional<byte[]> read(int checkId) throws IOException {
+        return read(index, segments::get, checkId);
+    }
+
+    /**
+     * Reads a check from a journal directory without opening the journal for writing,
+     * so it is safe to use while the application is appending to the same journal.
+     *
+     * @param directory The journal directory.
+     * @param checkId   The id of the check.
+     * @return The rendered check, or an empty Optional if the journal doesn't contain it.
+     * @throws IOException If the index or the segment can't be read.
+     */
+    public static Optional<byte[]> read(Path directory, int checkId) throws IOException {
+        Path indexFile = directory.resolve(INDEX_FILE);
+        if (!Files.exists(indexFile)) {
+            return Optional.empty();
+        }
+        CheckIndex readOnlyIndex = CheckIndex.openReadOnly(indexFile);
+        try {
+            return read(readOnlyIndex, sequence -> findSegment(directory, sequence), checkId);
+        } finally {
+            readOnlyIndex.close();
+        }
+    }
+
+    private static Path findSegment(Path directory, int sequence) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, String.format("segment-%08d-*.log", sequence))) {
+            for (Path file : files) {
+                return file;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    private static Optional<byte[]> read(CheckIndex index, IntFunction<Path> segments, int checkId) throws IOException {
+        CheckIndex.Entry entry = index.get(checkId);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        Path segment = segments.apply(entry.segmentSequence);
+        if (segment == null) {
+            return Optional.empty();
+        }
+        ByteBuffer check = ByteBuffer.allocate(entry.length);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            while (check.hasRemaining()) {
+                if (channel.read(check, entry.offset + check.position()) < 0) {
+                    throw new IOException("Journal segment " + segment + " is shorter than its index entry for check " + checkId + ".");
+                }
+            }
+        }
+        return Optional.of(check.array());
+    }
+
+    /**
+     * Seals the current segment and closes the index.
+     *
+     * @throws IOException If flushing fails.
+     */
+    public synchronized void close() throws IOException {
+        if (current != null) {
+            current.seal();
+            current = null;
+        }
+        index.force();
+        index.close();
+    }
+}
@@ -0,0 +1,45 @@
+package org.valoshka.cleverBank.statements.journal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+/**
+ * Command line tool that exports one check from the check journal back to the "check_ID.txt" layout.
+ * <p>
+ * Usage: {@code CheckJournalExport <checkId> [outputFolder] [journalFolder]}. Without an output folder
+ * the check is printed to standard output.
+ */
+public class CheckJournalExport {
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("Usage: CheckJournalExport <checkId> [outputFolder] [journalFolder]");
+            return;
+        }
+        int checkId = Integer.parseInt(args[0]);
+        Path journalFolder = Paths.get(args.length > 2 ? args[2] : "checks/journal");
+
+        try {
+            Optional<byte[]> check = CheckJournal.read(journalFolder, checkId);
+            if (check.isEmpty()) {
+                System.out.println("Check " + checkId + " not found in " + journalFolder);
+                return;
+            }
+            if (args.length > 1) {
+                Path output = Paths.get(args[1]).resolve("check_" + checkId + ".txt");
+                Files.createDirectories(output.getParent());
+                Files.write(output, check.get());
+                System.out.println("Check saved to: " + output);
+            } else {
+                System.out.write(check.get());
+                System.out.flush();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.err.println("Error exporting check.");
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package org.valoshka.cleverBank.statements.journal;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * One segment file of the {@link CheckJournal}.
+ * <p>
+ * A segment is a sequence of records {@code [int length][int checkId][length bytes of the rendered check]}.
+ * The writable segment is preallocated to its maximum size and written through a memory-mapped buffer;
+ * when it is sealed the file is truncated to the bytes actually written. A record with length 0 marks
+ * the end of a segment that was not sealed, e.g. after a crash.
+ */
+class JournalSegment {
+
+    static final int RECORD_HEADER_BYTES = 8;
+
+    private static final Pattern FILE_NAME = Pattern.compile("segment-(\\d{8})-(\\d{8})\\.log");
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final int sequence;
+    private final LocalDate date;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    private JournalSegment(int sequence, LocalDate date, Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.sequence = sequence;
+        this.date = date;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Creates a new writable segment and maps its whole capacity.
+     */
+    static JournalSegment create(Path directory, int sequence, LocalDate date, int capacity) throws IOException {
+        Path path = directory.resolve(fileName(sequence, date));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        return new JournalSegment(sequence, date, path, channel, buffer);
+    }
+
+    static String fileName(int sequence, LocalDate date) {
+        return String.format("segment-%08d-%s.log", sequence, DATE_FORMAT.format(date));
+    }
+
+    /**
+     * Parses the sequence number from a segment file name.
+     *
+     * @return The sequence number, or -1 if the name is not a segment file name.
+     */
+    static int sequenceOf(Path path) {
+        Matcher matcher = FILE_NAME.matcher(path.getFileName().toString());
+        return matcher.matches() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+
+    /**
+     * Truncates a segment that was left preallocated to the end of its last complete record.
+     */
+    static void repair(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int end = 0;
+            while (end + RECORD_HEADER_BYTES <= size) {
+                int length = buffer.getInt(end);
+                if (length <= 0 || end + RECORD_HEADER_BYTES + length > size) {
+                    break;
+                }
+                end += RECORD_HEADER_BYTES + length;
+            }
+            if (end < size) {
+                channel.truncate(end);
+            }
+        }
+    }
+
+    int getSequence() {
+        return sequence;
+    }
+
+    LocalDate getDate() {
+        return date;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    boolean hasRoomFor(int payloadLength) {
+        return buffer.remaining() >= RECORD_HEADER_BYTES + payloadLength;
+    }
+
+    /**
+     * Appends a record to the mapped tail.
+     *
+     * @return The offset of the payload inside the segment.
+     */
+    int append(int checkId, byte[] payload) {
+        int start = buffer.position();
+        buffer.putInt(start + 4, checkId);
+        buffer.position(start + RECORD_HEADER_BYTES);
+        buffer.put(payload);
+        // the length goes last so a torn record reads as the end of the segment
+        buffer.putInt(start, payload.length);
+        return start + RECORD_HEADER_BYTES;
+    }
+
+    /**
+     * Flushes the mapped tail and truncates the file to the written bytes.
+     */
+    void seal() throws IOException {
+        buffer.force();
+        channel.truncate(buffer.position());
+        channel.force(true);
+        channel.close();
+    }
+}
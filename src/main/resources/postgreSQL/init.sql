@@ -16,18 +16,147 @@ CREATE TABLE BankAccount
 
 );
 
+-- Sub-balances of the hot accounts listed in "database.hotAccounts": concurrent credits go to different shards
+-- instead of queueing on the BankAccount row. The balance of an account is its own plus the sum of its shards.
+CREATE TABLE account_shard
+(
+    account_number VARCHAR(40) REFERENCES BankAccount (account_number),
+    shard          SMALLINT,
+    balance        DECIMAL(18, 2) NOT NULL,
+    PRIMARY KEY (account_number, shard)
+
+);
+
 
 CREATE TYPE transaction_type AS ENUM ('WITHDRAWAL', 'TRANSFER', 'DEPOSIT');
 CREATE TYPE transaction_status AS ENUM ('COMPLETED', 'FAILED');
 CREATE TABLE Transaction
 (
-    trans_id        INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
-    trans_date_time TIMESTAMP,
-    trans_type      transaction_type,
-    trans_status    transaction_status,
-    source_account  VARCHAR(40) REFERENCES BankAccount (account_number),
-    target_account  VARCHAR(40) REFERENCES BankAccount (account_number),
-    amount          DECIMAL(18, 2),
-    currency        VARCHAR(3)
+    trans_id           INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    trans_date_time    TIMESTAMP,
+    trans_type         transaction_type,
+    trans_status       transaction_status,
+    source_account     VARCHAR(40) REFERENCES BankAccount (account_number),
+    target_account     VARCHAR(40) REFERENCES BankAccount (account_number),
+    amount             DECIMAL(18, 2),
+    currency           VARCHAR(3),
+    -- A transfer into an account in another currency credits the amount converted at the exchange rate
+    converted_amount   DECIMAL(18, 2),
+    converted_currency VARCHAR(3),
+    exchange_rate      DECIMAL(18, 8)
+
+);
+
+-- Statements and the history read the transactions of one account by time, from either side of a transaction;
+-- the indexes hold every column they read, so both are served by index-only scans
+CREATE INDEX transaction_source_time_idx ON Transaction (source_account, trans_date_time, trans_id)
+    INCLUDE (target_account, trans_type, trans_status, amount, currency,
+             converted_amount, converted_currency, exchange_rate);
+CREATE INDEX transaction_target_time_idx ON Transaction (target_account, trans_date_time, trans_id)
+    INCLUDE (source_account, trans_type, trans_status, amount, currency,
+             converted_amount, converted_currency, exchange_rate);
+-- Index-only scans skip the heap only for pages vacuum has marked all-visible; vacuum the insert-only ledger often
+ALTER TABLE Transaction SET (autovacuum_vacuum_insert_scale_factor = 0.01);
+-- The end-of-day job reads the transactions of one day
+CREATE INDEX transaction_time_idx ON Transaction (trans_date_time);
+
+-- Completed movements per account, signed: deposits and incoming transfers are positive
+CREATE VIEW account_movement AS
+SELECT source_account                                              AS account_number,
+       trans_id,
+       trans_date_time,
+       trans_type,
+       target_account                                              AS counterparty,
+       CASE WHEN trans_type = 'DEPOSIT' THEN amount ELSE -amount END AS amount,
+       currency
+FROM Transaction
+WHERE trans_status = 'COMPLETED'
+UNION ALL
+SELECT target_account,
+       trans_id,
+       trans_date_time,
+       trans_type,
+       source_account,
+       COALESCE(converted_amount, amount),
+       COALESCE(converted_currency, currency)
+FROM Transaction
+WHERE trans_status = 'COMPLETED'
+  AND trans_type = 'TRANSFER';
+
+-- Closing balance of an account at the end of a day, written by the end-of-day job for the accounts that moved
+CREATE TABLE daily_balance
+(
+    account_number  VARCHAR(40) REFERENCES BankAccount (account_number),
+    day             DATE,
+    closing_balance DECIMAL(18, 2) NOT NULL,
+    PRIMARY KEY (account_number, day)
+
+);
+
+-- Days closed by the end-of-day job
+CREATE TABLE daily_balance_run
+(
+    day       DATE PRIMARY KEY,
+    accounts  INT       NOT NULL,
+    closed_at TIMESTAMP NOT NULL
+
+);
+
+-- Monthly interest runs; a period is accrued once, an unfinished run is resumed with its rate
+CREATE TABLE interest_accrual_run
+(
+    period       CHAR(7) PRIMARY KEY,
+    monthly_rate DECIMAL(12, 10) NOT NULL,
+    started_at   TIMESTAMP       NOT NULL,
+    finished_at  TIMESTAMP
+
+);
+
+-- Accounts accrued in a period, written with their balance update
+CREATE TABLE interest_accrual
+(
+    period         CHAR(7) REFERENCES interest_accrual_run (period),
+    account_number VARCHAR(40) REFERENCES BankAccount (account_number),
+    amount         DECIMAL(18, 2) NOT NULL,
+    PRIMARY KEY (period, account_number)
+
+);
+
+-- Timing of every range of accounts processed by a run
+CREATE TABLE interest_accrual_chunk
+(
+    chunk_id      INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    period        CHAR(7) REFERENCES interest_accrual_run (period),
+    after_account VARCHAR(40) NOT NULL,
+    last_account  VARCHAR(40),
+    accounts      INT         NOT NULL,
+    millis        BIGINT      NOT NULL,
+    finished_at   TIMESTAMP   NOT NULL
+
+);
+
+-- Exchange rates: one unit of the base currency buys rate units of the quote currency
+CREATE TABLE exchange_rate
+(
+    base_currency  VARCHAR(3),
+    quote_currency VARCHAR(3),
+    rate           DECIMAL(18, 8) NOT NULL CHECK (rate > 0),
+    updated_at     TIMESTAMP      NOT NULL,
+    PRIMARY KEY (base_currency, quote_currency)
+
+);
+
+-- Tells the application instances to reload their rates after every change
+CREATE FUNCTION notify_exchange_rate() RETURNS TRIGGER AS
+$$
+BEGIN
+    PERFORM pg_notify('exchange_rate', '');
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
 
-);
\ No newline at end of file
+CREATE TRIGGER exchange_rate_changed
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE
+    ON exchange_rate
+    FOR EACH STATEMENT
+EXECUTE FUNCTION notify_exchange_rate();
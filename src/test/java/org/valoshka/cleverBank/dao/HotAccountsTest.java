@@ -0,0 +1,141 @@
+package org.valoshka.cleverBank.dao;
+
+import org.junit.jupiter.api.Test;
+import org.valoshka.cleverBank.enums.TransactionStatus;
+import org.valoshka.cleverBank.models.Money;
+import org.valoshka.cleverBank.models.Transaction;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Needs the PostgreSQL from postgreSQL/database.properties with the schema of postgreSQL/init.sql,
+ * and is skipped if it isn't running.
+ */
+class HotAccountsTest {
+
+    private static final Currency BYN = Currency.getInstance("BYN");
+    private static final String SUFFIX = Long.toString(System.nanoTime(), 36);
+    private static final String FIRST = "HOT-A-" + SUFFIX;
+    private static final String SECOND = "HOT-B-" + SUFFIX;
+    private static final int ROUNDS = 200;
+
+    static {
+        // The hot accounts are read once, on the first posting in this JVM; one shard makes every pair
+        // of opposite transfers meet on the same rows
+        System.setProperty("database.hotAccounts", FIRST + "," + SECOND);
+        System.setProperty("database.hotAccounts.shards", "1");
+    }
+
+    private final TransactionDAO transactionDAO = new TransactionDAO();
+
+    @Test
+    void opposingTransfersBetweenHotAccountsDontDeadlock() throws Exception {
+        assumeTrue(databaseIsRunning(), "PostgreSQL is not running");
+        createAccounts();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Optional<Transaction>>> transfers = new ArrayList<>();
+                transfers.add(executor.submit(() -> transferOnSignal(start, FIRST, SECOND)));
+                transfers.add(executor.submit(() -> transferOnSignal(start, SECOND, FIRST)));
+                start.countDown();
+
+                for (Future<Optional<Transaction>> transfer : transfers) {
+                    Optional<Transaction> transaction = transfer.get();
+                    assertTrue(transaction.isPresent(), "A transfer of round " + round + " was rolled back");
+                    assertEquals(TransactionStatus.COMPLETED, transaction.get().getTransactionStatus());
+                }
+            }
+            assertEquals(new BigDecimal("100.00"), balanceOf(FIRST));
+            assertEquals(new BigDecimal("100.00"), balanceOf(SECOND));
+        } finally {
+            executor.shutdownNow();
+            deleteAccounts();
+        }
+    }
+
+    private Optional<Transaction> transferOnSignal(CountDownLatch start, String source, String target)
+            throws InterruptedException {
+        start.await();
+        return transactionDAO.transfer(source, target, Money.of(1_00, BYN));
+    }
+
+    private boolean databaseIsRunning() {
+        try (Connection connection = transactionDAO.getConnection()) {
+            return connection.isValid(2);
+        } catch (SQLException | ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private void createAccounts() throws SQLException, ClassNotFoundException {
+        try (Connection connection = transactionDAO.getConnection()) {
+            int ownerId;
+            try (PreparedStatement preparedStatement = connection.prepareStatement(
+                    "INSERT INTO Client (name) VALUES (?) RETURNING client_id")) {
+                preparedStatement.setString(1, "Hot accounts " + SUFFIX);
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    resultSet.next();
+                    ownerId = resultSet.getInt(1);
+                }
+            }
+            try (PreparedStatement preparedStatement = connection.prepareStatement(
+                    "INSERT INTO BankAccount (account_number, bank_name, created_at, balance, currency, owner_id) " +
+                            "VALUES (?, 'Clever-Bank', CURRENT_DATE, 100.00, 'BYN', ?)")) {
+                for (String accountNumber : List.of(FIRST, SECOND)) {
+                    preparedStatement.setString(1, accountNumber);
+                    preparedStatement.setInt(2, ownerId);
+                    preparedStatement.executeUpdate();
+                }
+            }
+        }
+    }
+
+    private BigDecimal balanceOf(String accountNumber) throws SQLException, ClassNotFoundException {
+        try (Connection connection = transactionDAO.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(
+                     "SELECT " + HotAccounts.totalBalanceSql("ba") + " FROM BankAccount ba WHERE ba.account_number = ?")) {
+            preparedStatement.setString(1, accountNumber);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getBigDecimal(1);
+            }
+        }
+    }
+
+    private void deleteAccounts() throws SQLException, ClassNotFoundException {
+        try (Connection connection = transactionDAO.getConnection()) {
+            execute(connection, "DELETE FROM Transaction WHERE source_account IN (?, ?) OR target_account IN (?, ?)",
+                    FIRST, SECOND, FIRST, SECOND);
+            execute(connection, "DELETE FROM account_shard WHERE account_number IN (?, ?)", FIRST, SECOND);
+            execute(connection, "DELETE FROM BankAccount WHERE account_number IN (?, ?)", FIRST, SECOND);
+            execute(connection, "DELETE FROM Client WHERE name = ?", "Hot accounts " + SUFFIX);
+        }
+    }
+
+    private static void execute(Connection connection, String sql, String... parameters) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                preparedStatement.setString(i + 1, parameters[i]);
+            }
+            preparedStatement.executeUpdate();
+        }
+    }
+}
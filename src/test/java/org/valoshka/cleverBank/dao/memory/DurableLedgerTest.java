@@ -0,0 +1,225 @@
+package org.valoshka.cleverBank.dao.memory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.valoshka.cleverBank.enums.TransactionStatus;
+import org.valoshka.cleverBank.enums.TransactionType;
+import org.valoshka.cleverBank.models.Money;
+import org.valoshka.cleverBank.models.Transaction;
+import org.valoshka.cleverBank.models.TransactionFilter;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Currency;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DurableLedgerTest {
+
+    private static final Currency BYN = Currency.getInstance("BYN");
+    private static final LocalDateTime NOW = LocalDateTime.of(2023, 7, 1, 12, 30, 15, 123_000_000);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoversPostingsAndTransfersFromTheLog() throws IOException {
+        InMemoryLedger ledger = new InMemoryLedger();
+        DurableLedger durableLedger = DurableLedger.open(ledger, directory);
+        addAccounts(ledger);
+        ledger.post("A", money(100_00), TransactionType.DEPOSIT, NOW);
+        ledger.post("A", money(20_00), TransactionType.WITHDRAWAL, NOW.plusSeconds(1));
+        ledger.transfer("A", "B", money(30_00), NOW.plusSeconds(2));
+        ledger.post("B", money(1_000_00), TransactionType.WITHDRAWAL, NOW.plusSeconds(3));
+        ledger.transfer("B", "A", money(1_000_00), NOW.plusSeconds(4));
+        durableLedger.closeLog();
+
+        InMemoryLedger recovered = recover();
+        assertEquals(50_00, balanceOf(recovered, "A"));
+        assertEquals(30_00, balanceOf(recovered, "B"));
+        assertEquals(4, recovered.getTransactionCount());
+        assertTransaction(recovered, 1, TransactionType.DEPOSIT, TransactionStatus.COMPLETED, 100_00);
+        assertTransaction(recovered, 2, TransactionType.WITHDRAWAL, TransactionStatus.COMPLETED, 20_00);
+        assertTransaction(recovered, 3, TransactionType.TRANSFER, TransactionStatus.COMPLETED, 30_00);
+        assertTransaction(recovered, 4, TransactionType.TRANSFER, TransactionStatus.FAILED, 1_000_00);
+        assertEquals(NOW, recovered.getTransaction(1).orElseThrow().getDateTimeOfTransaction());
+    }
+
+    @Test
+    void dropsATornPostingWithItsBalanceChange() throws IOException {
+        InMemoryLedger ledger = new InMemoryLedger();
+        DurableLedger durableLedger = DurableLedger.open(ledger, directory);
+        addAccounts(ledger);
+        ledger.post("A", money(100_00), TransactionType.DEPOSIT, NOW);
+        ledger.post("A", money(5_00), TransactionType.DEPOSIT, NOW.plusSeconds(1));
+        durableLedger.closeLog();
+
+        Path log = WriteAheadLog.fileOf(directory, 0);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(log) - 5);
+        }
+
+        InMemoryLedger recovered = recover();
+        assertEquals(100_00, balanceOf(recovered, "A"));
+        assertEquals(1, recovered.getTransactionCount());
+        assertFalse(recovered.getTransaction(2).isPresent());
+    }
+
+    @Test
+    void continuesTheLogAfterACutOffTail() throws IOException {
+        InMemoryLedger ledger = new InMemoryLedger();
+        DurableLedger durableLedger = DurableLedger.open(ledger, directory);
+        addAccounts(ledger);
+        ledger.post("A", money(100_00), TransactionType.DEPOSIT, NOW);
+        ledger.post("A", money(5_00), TransactionType.DEPOSIT, NOW.plusSeconds(1));
+        durableLedger.closeLog();
+        Path log = WriteAheadLog.fileOf(directory, 0);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(log) - 5);
+        }
+
+        InMemoryLedger restarted = new InMemoryLedger();
+        DurableLedger reopened = DurableLedger.open(restarted, directory);
+        restarted.post("A", money(7_00), TransactionType.DEPOSIT, NOW.plusSeconds(2));
+        reopened.closeLog();
+
+        InMemoryLedger recovered = recover();
+        assertEquals(107_00, balanceOf(recovered, "A"));
+        assertEquals(2, recovered.getTransactionCount());
+        assertTransaction(recovered, 2, TransactionType.DEPOSIT, TransactionStatus.COMPLETED, 7_00);
+    }
+
+    @Test
+    void recoversFromASnapshotAndTheLogAfterIt() throws IOException {
+        InMemoryLedger ledger = new InMemoryLedger();
+        DurableLedger durableLedger = DurableLedger.open(ledger, directory);
+        addAccounts(ledger);
+        ledger.post("A", money(100_00), TransactionType.DEPOSIT, NOW);
+        durableLedger.checkpoint();
+        ledger.transfer("A", "B", money(40_00), NOW.plusSeconds(1));
+        ledger.post("B", money(2_50), TransactionType.DEPOSIT, NOW.plusSeconds(2));
+        durableLedger.closeLog();
+
+        assertTrue(Files.exists(LedgerSnapshot.fileOf(directory, 1)));
+        assertTrue(Files.exists(WriteAheadLog.fileOf(directory, 1)));
+
+        InMemoryLedger recovered = recover();
+        assertEquals(60_00, balanceOf(recovered, "A"));
+        assertEquals(42_50, balanceOf(recovered, "B"));
+        assertEquals(3, recovered.getTransactionCount());
+        assertTransaction(recovered, 1, TransactionType.DEPOSIT, TransactionStatus.COMPLETED, 100_00);
+        assertTransaction(recovered, 2, TransactionType.TRANSFER, TransactionStatus.COMPLETED, 40_00);
+        assertTransaction(recovered, 3, TransactionType.DEPOSIT, TransactionStatus.COMPLETED, 2_50);
+    }
+
+    @Test
+    void keepsTheHistoryBeforeACheckpoint() throws IOException {
+        InMemoryLedger ledger = new InMemoryLedger();
+        DurableLedger durableLedger = DurableLedger.open(ledger, directory);
+        addAccounts(ledger);
+        ledger.post("A", money(100_00), TransactionType.DEPOSIT, NOW);
+        ledger.transfer("A", "B", money(30_00), NOW.plusSeconds(1));
+        durableLedger.checkpoint();
+        ledger.transfer("B", "A", money(10_00), NOW.plusSeconds(2));
+        durableLedger.checkpoint();
+        ledger.post("A", money(5_00), TransactionType.WITHDRAWAL, NOW.plusSeconds(3));
+        durableLedger.closeLog();
+
+        InMemoryLedger recovered = recover();
+        assertEquals(75_00, balanceOf(recovered, "A"));
+        assertEquals(20_00, balanceOf(recovered, "B"));
+        assertEquals(4, recovered.getTransactionCount());
+
+        InMemoryTransactionDAO transactionDAO = new InMemoryTransactionDAO(recovered);
+        List<Transaction> history = transactionDAO.history("A", new TransactionFilter(), null, 10);
+        assertEquals(List.of(4, 3, 2, 1), history.stream().map(Transaction::getId).toList());
+        assertEquals(List.of(3, 2), transactionDAO.history("B", new TransactionFilter(), null, 10).stream()
+                .map(Transaction::getId).toList());
+
+        assertEquals(Optional.of(money(0)), transactionDAO.balanceAt("A", NOW));
+        assertEquals(Optional.of(money(100_00)), transactionDAO.balanceAt("A", NOW.plusSeconds(1)));
+        assertEquals(Optional.of(money(70_00)), transactionDAO.balanceAt("A", NOW.plusSeconds(2)));
+        assertEquals(Optional.of(money(30_00)), transactionDAO.balanceAt("B", NOW.plusSeconds(2)));
+    }
+
+    @Test
+    void keepsOnlyTheLatestSnapshotAndEveryLogFile() throws IOException {
+        InMemoryLedger ledger = new InMemoryLedger();
+        DurableLedger durableLedger = DurableLedger.open(ledger, directory);
+        addAccounts(ledger);
+        ledger.post("A", money(1_00), TransactionType.DEPOSIT, NOW);
+        durableLedger.checkpoint();
+        ledger.post("A", money(2_00), TransactionType.DEPOSIT, NOW.plusSeconds(1));
+        durableLedger.checkpoint();
+        durableLedger.closeLog();
+
+        assertFalse(Files.exists(LedgerSnapshot.fileOf(directory, 1)));
+        assertTrue(Files.exists(LedgerSnapshot.fileOf(directory, 2)));
+        for (int generation = 0; generation <= 2; generation++) {
+            assertTrue(Files.exists(WriteAheadLog.fileOf(directory, generation)));
+        }
+
+        InMemoryLedger recovered = recover();
+        assertEquals(3_00, balanceOf(recovered, "A"));
+        assertEquals(2, recovered.getTransactionCount());
+    }
+
+    @Test
+    void fallsBackToTheLogWhenTheSnapshotIsUnreadable() throws IOException {
+        InMemoryLedger ledger = new InMemoryLedger();
+        DurableLedger durableLedger = DurableLedger.open(ledger, directory);
+        addAccounts(ledger);
+        ledger.post("A", money(1_00), TransactionType.DEPOSIT, NOW);
+        durableLedger.checkpoint();
+        ledger.post("A", money(2_00), TransactionType.DEPOSIT, NOW.plusSeconds(1));
+        durableLedger.closeLog();
+
+        Path snapshot = LedgerSnapshot.fileOf(directory, 1);
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(snapshot) - 1);
+        }
+
+        InMemoryLedger recovered = recover();
+        assertEquals(3_00, balanceOf(recovered, "A"));
+        assertEquals(2, recovered.getTransactionCount());
+    }
+
+    private InMemoryLedger recover() throws IOException {
+        InMemoryLedger recovered = new InMemoryLedger();
+        DurableLedger.open(recovered, directory).closeLog();
+        return recovered;
+    }
+
+    private static void addAccounts(InMemoryLedger ledger) {
+        int ownerId = ledger.addClient("Owner");
+        LocalDate createdAt = NOW.toLocalDate();
+        ledger.addAccount(new InMemoryLedger.AccountRecord("A", "Clever-Bank", createdAt, BYN, ownerId, 0));
+        ledger.addAccount(new InMemoryLedger.AccountRecord("B", "Clever-Bank", createdAt, BYN, ownerId, 0));
+    }
+
+    private static Money money(long minorUnits) {
+        return Money.of(minorUnits, BYN);
+    }
+
+    private static long balanceOf(InMemoryLedger ledger, String accountNumber) {
+        return ledger.accounts.get(accountNumber).balance.get();
+    }
+
+    private static void assertTransaction(InMemoryLedger ledger, int id, TransactionType type,
+                                          TransactionStatus status, long minorUnits) {
+        Transaction transaction = ledger.getTransaction(id).orElseThrow();
+        assertEquals(id, transaction.getId());
+        assertEquals(type, transaction.getTransactionType());
+        assertEquals(status, transaction.getTransactionStatus());
+        assertEquals(money(minorUnits), transaction.getAmount());
+    }
+}
@@ -0,0 +1,74 @@
+package org.valoshka.cleverBank.dao.memory;
+
+import org.junit.jupiter.api.Test;
+import org.valoshka.cleverBank.enums.TransactionType;
+import org.valoshka.cleverBank.models.Money;
+import org.valoshka.cleverBank.models.Transaction;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.Currency;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InMemoryLedgerTest {
+
+    private static final Currency BYN = Currency.getInstance("BYN");
+    private static final LocalDateTime NOW = LocalDateTime.of(2023, 7, 1, 12, 0);
+
+    @Test
+    void undoesAPostingWhoseLogWriteFails() {
+        InMemoryLedger ledger = ledgerWithAccounts();
+        ledger.attach(new FailingLog());
+
+        assertThrows(UncheckedIOException.class,
+                () -> ledger.post("A", Money.of(5_00, BYN), TransactionType.DEPOSIT, NOW));
+        assertThrows(UncheckedIOException.class,
+                () -> ledger.post("A", Money.of(5_00, BYN), TransactionType.WITHDRAWAL, NOW));
+        assertEquals(10_00, ledger.accounts.get("A").balance.get());
+        assertFalse(ledger.getTransaction(1).isPresent());
+        assertFalse(ledger.getTransaction(2).isPresent());
+    }
+
+    @Test
+    void undoesATransferWhoseLogWriteFails() {
+        InMemoryLedger ledger = ledgerWithAccounts();
+        ledger.attach(new FailingLog());
+
+        assertThrows(UncheckedIOException.class,
+                () -> ledger.transfer("A", "B", Money.of(4_00, BYN), NOW));
+        assertEquals(10_00, ledger.accounts.get("A").balance.get());
+        assertEquals(0, ledger.accounts.get("B").balance.get());
+        assertFalse(ledger.getTransaction(1).isPresent());
+        assertTrue(ledger.historyOf("A").isEmpty());
+        assertTrue(ledger.historyOf("B").isEmpty());
+    }
+
+    private static InMemoryLedger ledgerWithAccounts() {
+        InMemoryLedger ledger = new InMemoryLedger();
+        int ownerId = ledger.addClient("Owner");
+        ledger.addAccount(new InMemoryLedger.AccountRecord("A", "Clever-Bank", NOW.toLocalDate(), BYN, ownerId, 10_00));
+        ledger.addAccount(new InMemoryLedger.AccountRecord("B", "Clever-Bank", NOW.toLocalDate(), BYN, ownerId, 0));
+        return ledger;
+    }
+
+    /**
+     * A log whose every transaction write fails, like a full disk.
+     */
+    private static final class FailingLog implements LedgerLog {
+
+        @Override
+        public void transactionRecorded(int id, Transaction transaction) {
+            throw new UncheckedIOException(new IOException("No space left on device"));
+        }
+
+        @Override
+        public void postingRecorded(int id, Transaction transaction) {
+            throw new UncheckedIOException(new IOException("No space left on device"));
+        }
+    }
+}
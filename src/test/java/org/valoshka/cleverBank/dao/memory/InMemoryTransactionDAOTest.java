@@ -0,0 +1,77 @@
+package org.valoshka.cleverBank.dao.memory;
+
+import org.junit.jupiter.api.Test;
+import org.valoshka.cleverBank.dao.TransactionDAO;
+import org.valoshka.cleverBank.enums.TransactionType;
+import org.valoshka.cleverBank.models.Money;
+import org.valoshka.cleverBank.models.Transaction;
+import org.valoshka.cleverBank.models.TransactionFilter;
+
+import java.time.LocalDateTime;
+import java.util.Currency;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class InMemoryTransactionDAOTest {
+
+    private static final Currency BYN = Currency.getInstance("BYN");
+    private static final LocalDateTime NOW = LocalDateTime.of(2023, 7, 1, 12, 0);
+
+    @Test
+    void pagesThroughTheHistoryNewestFirst() {
+        InMemoryLedger ledger = ledgerWithAccounts();
+        ledger.post("A", Money.of(100_00, BYN), TransactionType.DEPOSIT, NOW.plusSeconds(2));
+        ledger.transfer("A", "B", Money.of(10_00, BYN), NOW);
+        ledger.transfer("B", "A", Money.of(5_00, BYN), NOW.plusSeconds(2));
+        ledger.post("B", Money.of(1_00, BYN), TransactionType.DEPOSIT, NOW.plusSeconds(3));
+        ledger.post("A", Money.of(1_00, BYN), TransactionType.WITHDRAWAL, NOW.plusSeconds(1));
+        InMemoryTransactionDAO transactionDAO = new InMemoryTransactionDAO(ledger);
+        TransactionFilter filter = new TransactionFilter();
+
+        List<Transaction> first = transactionDAO.history("A", filter, null, 2);
+        assertEquals(List.of(3, 1), ids(first));
+        List<Transaction> second = transactionDAO.history("A", filter, TransactionDAO.historyKey(first.get(1)), 2);
+        assertEquals(List.of(5, 2), ids(second));
+        assertEquals(List.of(), ids(transactionDAO.history("A", filter, TransactionDAO.historyKey(second.get(1)), 2)));
+        assertEquals(List.of(4, 3, 2), ids(transactionDAO.history("B", filter, null, 10)));
+    }
+
+    @Test
+    void readsOnlyThePeriodAndTypeOfTheFilter() {
+        InMemoryLedger ledger = ledgerWithAccounts();
+        for (int second = 0; second < 5; second++) {
+            ledger.post("A", Money.of(1_00, BYN), TransactionType.DEPOSIT, NOW.plusSeconds(second));
+            ledger.transfer("A", "B", Money.of(1_00, BYN), NOW.plusSeconds(second));
+        }
+        InMemoryTransactionDAO transactionDAO = new InMemoryTransactionDAO(ledger);
+
+        TransactionFilter filter = new TransactionFilter();
+        filter.setFrom(NOW.plusSeconds(1));
+        filter.setTo(NOW.plusSeconds(4));
+        assertEquals(List.of(8, 7, 6, 5, 4, 3), ids(transactionDAO.history("A", filter, null, 10)));
+
+        filter.setTransactionType(TransactionType.TRANSFER);
+        assertEquals(List.of(8, 6, 4), ids(transactionDAO.history("B", filter, null, 10)));
+        assertEquals(List.of(4), ids(transactionDAO.history("B", filter, historyKey(NOW.plusSeconds(2), 6), 10)));
+
+        filter.setTo(NOW.plusSeconds(1));
+        assertEquals(List.of(), ids(transactionDAO.history("A", filter, null, 10)));
+    }
+
+    private static InMemoryLedger ledgerWithAccounts() {
+        InMemoryLedger ledger = new InMemoryLedger();
+        int ownerId = ledger.addClient("Owner");
+        ledger.addAccount(new InMemoryLedger.AccountRecord("A", "Clever-Bank", NOW.toLocalDate(), BYN, ownerId, 0));
+        ledger.addAccount(new InMemoryLedger.AccountRecord("B", "Clever-Bank", NOW.toLocalDate(), BYN, ownerId, 0));
+        return ledger;
+    }
+
+    private static String historyKey(LocalDateTime dateTime, int id) {
+        return dateTime + "/" + id;
+    }
+
+    private static List<Integer> ids(List<Transaction> transactions) {
+        return transactions.stream().map(Transaction::getId).toList();
+    }
+}
@@ -0,0 +1,127 @@
+package org.valoshka.cleverBank.dao.memory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysRecordsInOrder() throws IOException {
+        Path file = write("first", "second", "third");
+
+        assertEquals(List.of("first", "second", "third"), replay(file));
+    }
+
+    @Test
+    void cutsOffATornRecord() throws IOException {
+        Path file = write("first", "second", "third");
+        long size = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+
+        assertEquals(List.of("first", "second"), replay(file));
+        assertEquals(size - recordSize("third"), Files.size(file));
+    }
+
+    @Test
+    void cutsOffARecordThatFailsItsChecksum() throws IOException {
+        Path file = write("first", "second", "third");
+        long size = Files.size(file);
+        corrupt(file, size - recordSize("third") - 1);
+
+        assertEquals(List.of("first"), replay(file));
+        assertEquals(recordSize("first"), Files.size(file));
+    }
+
+    @Test
+    void appendsAfterTheRecoveredTail() throws IOException {
+        Path file = write("first", "second");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file) - 1);
+        }
+        replay(file);
+
+        try (WriteAheadLog log = new WriteAheadLog(directory, 0)) {
+            append(log, "third");
+        }
+        assertEquals(List.of("first", "third"), replay(file));
+    }
+
+    @Test
+    void rotatesIntoTheNextGeneration() throws IOException {
+        try (WriteAheadLog log = new WriteAheadLog(directory, 0)) {
+            append(log, "first");
+            assertEquals(1, log.rotate());
+            append(log, "second");
+        }
+
+        Path first = WriteAheadLog.fileOf(directory, 0);
+        Path second = WriteAheadLog.fileOf(directory, 1);
+        assertEquals(0, WriteAheadLog.generationOf(first));
+        assertEquals(1, WriteAheadLog.generationOf(second));
+        assertEquals(-1, WriteAheadLog.generationOf(directory.resolve("wal-1.log")));
+        assertEquals(List.of("first"), replay(first));
+        assertEquals(List.of("second"), replay(second));
+    }
+
+    @Test
+    void replaysAnEmptyFile() throws IOException {
+        Path file = Files.createFile(WriteAheadLog.fileOf(directory, 0));
+
+        assertTrue(replay(file).isEmpty());
+    }
+
+    private Path write(String... values) throws IOException {
+        try (WriteAheadLog log = new WriteAheadLog(directory, 0)) {
+            for (String value : values) {
+                append(log, value);
+            }
+        }
+        return WriteAheadLog.fileOf(directory, 0);
+    }
+
+    private static void append(WriteAheadLog log, String value) throws IOException {
+        ByteBuffer buffer = log.buffer();
+        WriteAheadLog.putString(buffer, value);
+        log.sync(log.append(buffer));
+    }
+
+    private static List<String> replay(Path file) throws IOException {
+        List<String> values = new ArrayList<>();
+        WriteAheadLog.replay(file, payload -> values.add(WriteAheadLog.getString(payload)));
+        return values;
+    }
+
+    /**
+     * @return The size of the record of a value: the length and checksum header, the string length and the string.
+     */
+    private static long recordSize(String value) {
+        return 8 + 2 + value.length();
+    }
+
+    private static void corrupt(Path file, long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1);
+            channel.read(buffer, position);
+            buffer.put(0, (byte) (buffer.get(0) ^ 0xFF));
+            buffer.rewind();
+            channel.write(buffer, position);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.valoshka.cleverBank.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MoneyTest {
+
+    private static final Currency BYN = Currency.getInstance("BYN");
+    private static final Currency USD = Currency.getInstance("USD");
+
+    @Test
+    void createsFromADecimalValue() {
+        assertEquals(Money.of(15080, BYN), Money.of(new BigDecimal("150.80"), BYN));
+        assertEquals(Money.of(15000, BYN), Money.of(new BigDecimal("150"), BYN));
+        assertEquals(Money.of(-5, BYN), Money.of(new BigDecimal("-0.05"), BYN));
+        assertEquals(Money.of(15080, BYN), Money.of(new BigDecimal("150.800"), BYN));
+    }
+
+    @Test
+    void rejectsMoreThanTwoFractionDigits() {
+        assertThrows(ArithmeticException.class, () -> Money.of(new BigDecimal("150.805"), BYN));
+    }
+
+    @Test
+    void rejectsValuesBeyondALong() {
+        assertThrows(ArithmeticException.class, () -> Money.of(new BigDecimal("1e17"), BYN));
+    }
+
+    @Test
+    void convertsRoundingHalfEven() {
+        BigDecimal rate = new BigDecimal("0.5");
+
+        assertEquals(Money.of(50, USD), Money.of(100, BYN).convertTo(USD, rate));
+        assertEquals(Money.of(2, USD), Money.of(5, BYN).convertTo(USD, rate));
+        assertEquals(Money.of(4, USD), Money.of(7, BYN).convertTo(USD, rate));
+        assertEquals(Money.of(3_16, USD), Money.of(10_00, BYN).convertTo(USD, new BigDecimal("0.3156")));
+        assertEquals(Money.of(-2, USD), Money.of(-5, BYN).convertTo(USD, rate));
+    }
+
+    @Test
+    void convertsIntoTheTargetCurrency() {
+        Money converted = Money.of(10_00, BYN).convertTo(USD, BigDecimal.ONE);
+
+        assertEquals(USD, converted.getCurrency());
+        assertEquals(10_00, converted.getMinorUnits());
+        assertFalse(converted.isSameCurrency(Money.zero(BYN)));
+    }
+
+    @Test
+    void addsAndSubtractsTheSameCurrency() {
+        assertEquals(Money.of(3_50, BYN), Money.of(1_25, BYN).plus(Money.of(2_25, BYN)));
+        assertEquals(Money.of(-1_00, BYN), Money.of(1_25, BYN).minus(Money.of(2_25, BYN)));
+        assertTrue(Money.of(-1, BYN).isNegative());
+        assertTrue(Money.zero(BYN).isZero());
+    }
+
+    @Test
+    void rejectsArithmeticAcrossCurrencies() {
+        assertThrows(IllegalArgumentException.class, () -> Money.of(1_00, BYN).plus(Money.of(1_00, USD)));
+        assertThrows(IllegalArgumentException.class, () -> Money.of(1_00, BYN).minus(Money.of(1_00, USD)));
+        assertThrows(IllegalArgumentException.class, () -> Money.of(1_00, BYN).compareTo(Money.of(1_00, USD)));
+    }
+
+    @Test
+    void rejectsOverflow() {
+        assertThrows(ArithmeticException.class, () -> Money.of(Long.MAX_VALUE, BYN).plus(Money.of(1, BYN)));
+    }
+
+    @Test
+    void formatsWithTwoFractionDigits() {
+        assertEquals("150.80", Money.of(15080, BYN).toString());
+        assertEquals("0.05", Money.of(5, BYN).toString());
+        assertEquals("-0.05", Money.of(-5, BYN).toString());
+        assertEquals("-12.30", Money.of(-1230, BYN).toString());
+        assertEquals(new BigDecimal("150.80"), Money.of(15080, BYN).toBigDecimal());
+    }
+}
@@ -0,0 +1,94 @@
+package org.valoshka.cleverBank.statements;
+
+import org.junit.jupiter.api.Test;
+import org.valoshka.cleverBank.enums.TransactionStatus;
+import org.valoshka.cleverBank.enums.TransactionType;
+import org.valoshka.cleverBank.models.BankAccount;
+import org.valoshka.cleverBank.models.Money;
+import org.valoshka.cleverBank.models.Transaction;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Currency;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class CompiledCheckRendererTest {
+
+    private static final Currency BYN = Currency.getInstance("BYN");
+    private static final Currency USD = Currency.getInstance("USD");
+
+    private final CheckRenderer reference = new AsciiTableCheckRenderer();
+    private final CheckRenderer compiled = new CompiledCheckRenderer();
+
+    @Test
+    void rendersADepositLikeTheTable() {
+        assertSameBytes(posting(TransactionType.DEPOSIT, Money.of(150_80, BYN)));
+    }
+
+    @Test
+    void rendersAWithdrawalLikeTheTable() {
+        Transaction transaction = posting(TransactionType.WITHDRAWAL, Money.of(5, BYN));
+        transaction.setId(1);
+        transaction.setDateTimeOfTransaction(LocalDateTime.of(2023, 1, 2, 3, 4, 5));
+        assertSameBytes(transaction);
+    }
+
+    @Test
+    void rendersATransferLikeTheTable() {
+        BankAccount source = new BankAccount("AS12 ASDG 1200 2132 ASDA 353A 2132", "Clever-Bank", BYN);
+        BankAccount target = new BankAccount("BS12 ASDG 1200 2132 ASDA 353A 2132", "Alfa-Bank", BYN);
+        assertSameBytes(transaction(TransactionType.TRANSFER, source, target, Money.of(1_234_567_89, BYN)));
+    }
+
+    @Test
+    void rendersAConvertedTransferLikeTheTable() {
+        BankAccount source = new BankAccount("AS12 ASDG 1200 2132 ASDA 353A 2132", "Clever-Bank", BYN);
+        BankAccount target = new BankAccount("BS12 ASDG 1200 2132 ASDA 353A 2132", "Alfa-Bank", USD);
+        Transaction transaction = transaction(TransactionType.TRANSFER, source, target, Money.of(100_00, BYN));
+        transaction.setConvertedAmount(Money.of(31_56, USD));
+        transaction.setExchangeRate(new BigDecimal("0.3156"));
+        assertSameBytes(transaction);
+    }
+
+    @Test
+    void rendersANegativeAmountLikeTheTable() {
+        assertSameBytes(posting(TransactionType.WITHDRAWAL, Money.of(-12_30, BYN)));
+    }
+
+    @Test
+    void rendersValuesTheLayoutCantHoldLikeTheTable() {
+        BankAccount account = new BankAccount("AS12 ASDG 1200 2132 ASDA 353A 2132",
+                "A bank whose name is longer than the value column", BYN);
+        assertSameBytes(transaction(TransactionType.DEPOSIT, account, account, Money.of(1_00, BYN)));
+
+        BankAccount spaced = new BankAccount("AS12  ASDG", "Clever-Bank", BYN);
+        assertSameBytes(transaction(TransactionType.DEPOSIT, spaced, spaced, Money.of(1_00, BYN)));
+    }
+
+    @Test
+    void rendersEveryCheckOfAThreadFromScratch() {
+        BankAccount source = new BankAccount("AS12 ASDG 1200 2132 ASDA 353A 2132", "Clever-Bank", BYN);
+        BankAccount target = new BankAccount("BS12", "Alfa-Bank", BYN);
+        assertSameBytes(transaction(TransactionType.TRANSFER, source, target, Money.of(1_00, BYN)));
+        assertSameBytes(posting(TransactionType.DEPOSIT, Money.of(2_00, BYN)));
+    }
+
+    private void assertSameBytes(Transaction transaction) {
+        assertArrayEquals(reference.render(transaction), compiled.render(transaction));
+    }
+
+    private static Transaction posting(TransactionType transactionType, Money amount) {
+        BankAccount account = new BankAccount("AS12 ASDG 1200 2132 ASDA 353A 2132", "Clever-Bank", amount.getCurrency());
+        return transaction(transactionType, account, account, amount);
+    }
+
+    private static Transaction transaction(TransactionType transactionType, BankAccount source, BankAccount target,
+                                           Money amount) {
+        Transaction transaction = new Transaction(transactionType, source, target, amount);
+        transaction.setId(123_456);
+        transaction.setDateTimeOfTransaction(LocalDateTime.of(2023, 7, 15, 18, 9, 41, 250_000_000));
+        transaction.setTransactionStatus(TransactionStatus.COMPLETED);
+        return transaction;
+    }
+}